@@ -86,6 +86,7 @@ create temporary function ST_SymmetricDiff as 'com.esri.hadoop.hive.ST_Symmetric
 create temporary function ST_SymDifference as 'com.esri.hadoop.hive.ST_SymmetricDiff';
 
 create temporary function ST_Aggr_ConvexHull as 'com.esri.hadoop.hive.ST_Aggr_ConvexHull';
+create temporary function ST_Aggr_Extent as 'com.esri.hadoop.hive.ST_Aggr_Extent';
 create temporary function ST_Aggr_Intersection as 'com.esri.hadoop.hive.ST_Aggr_Intersection';
 create temporary function ST_Aggr_Union as 'com.esri.hadoop.hive.ST_Aggr_Union';
 
@@ -0,0 +1,204 @@
+package com.esri.hadoop.hive;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.esri.core.geometry.Geometry.GeometryAccelerationDegree;
+import com.esri.core.geometry.Operator;
+import com.esri.core.geometry.OperatorSimpleRelation;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+/**
+ * Bounded pool of geometries accelerated for a relational operator.
+ *
+ * Geometries that are not constant can still repeat from row to row - for example
+ * the same polygon against all the points of a bin after a bin-based join, or an
+ * interned polygon (see {@link HiveGeometryOIHelper}).  The pool counts how often it
+ * sees each geometry instance and accelerates the geometry once it has been used
+ * often enough to pay off.  When the pool is full, the least recently used
+ * geometry is de-accelerated to release the memory of its index.
+ *
+ * Uses are counted in a fixed table by identity hash, which keeps no reference to
+ * the geometries, so geometries that are never accelerated can be collected.  Two
+ * geometries in the same slot reset each other's count, and a geometry with the
+ * same identity hash as a collected one may inherit its count - either way only
+ * the moment of acceleration changes, not the results.
+ */
+public class AcceleratedGeometryPool {
+
+	public static final String CONF_THRESHOLD = "esri.hive.acceleration.threshold";
+	public static final String CONF_CAPACITY = "esri.hive.acceleration.pool";
+
+	public static final int DEFAULT_THRESHOLD = 8;
+	public static final int DEFAULT_CAPACITY = 64;
+
+	// how many more candidates than accelerated geometries are counted
+	private static final int CANDIDATE_FACTOR = 64;
+
+	private final OperatorSimpleRelation operator;
+	private final GeometryAccelerationDegree degree;
+
+	private int threshold = DEFAULT_THRESHOLD;
+	private int capacity = DEFAULT_CAPACITY;
+
+	private long accelerations = 0;
+	private long deaccelerations = 0;
+
+	// identity hash and use count of the candidate in each slot, a count of 0 for none
+	private int [] candidateHashes = new int [DEFAULT_CAPACITY * CANDIDATE_FACTOR];
+	private int [] candidateCounts = new int [DEFAULT_CAPACITY * CANDIDATE_FACTOR];
+
+	private final LinkedHashMap<IdentityKey, OGCGeometry> accelerated =
+			new LinkedHashMap<IdentityKey, OGCGeometry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<IdentityKey, OGCGeometry> eldest) {
+			if (size() > capacity) {
+				deaccelerate(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	// reused for lookups
+	private final IdentityKey probe = new IdentityKey(null);
+
+	public AcceleratedGeometryPool(OperatorSimpleRelation operator, GeometryAccelerationDegree degree) {
+		this.operator = operator;
+		this.degree = degree;
+	}
+
+	/**
+	 * Sets the threshold and the capacity from the job configuration.  A capacity
+	 * of zero disables the pool.
+	 *
+	 * @param conf job configuration
+	 */
+	public void configure(Configuration conf) {
+		if (conf == null) {
+			return;
+		}
+
+		setLimits(conf.getInt(CONF_THRESHOLD, threshold), conf.getInt(CONF_CAPACITY, capacity));
+	}
+
+	public void setLimits(int threshold, int capacity) {
+		this.threshold = threshold;
+		this.capacity = capacity;
+
+		if (capacity <= 0) {
+			clear();
+		} else if (candidateCounts.length != capacity * CANDIDATE_FACTOR) {
+			candidateHashes = new int [capacity * CANDIDATE_FACTOR];
+			candidateCounts = new int [capacity * CANDIDATE_FACTOR];
+		}
+	}
+
+	/**
+	 * Records a use of the geometry, accelerating it when it has been used
+	 * <code>threshold</code> times.
+	 *
+	 * @param geometry geometry about to be used with the operator
+	 * @return true if the geometry is accelerated
+	 */
+	public boolean use(OGCGeometry geometry) {
+		if (capacity <= 0) {
+			return false;
+		}
+
+		probe.geometry = geometry;
+
+		try {
+			if (accelerated.get(probe) != null) {
+				return true;
+			}
+
+			int hash = System.identityHashCode(geometry);
+			int slot = (hash & Integer.MAX_VALUE) % candidateCounts.length;
+			if (candidateCounts[slot] == 0 || candidateHashes[slot] != hash) {
+				candidateHashes[slot] = hash;
+				candidateCounts[slot] = 0;
+			}
+
+			if (++candidateCounts[slot] < threshold) {
+				return false;
+			}
+
+			candidateCounts[slot] = 0;
+		} finally {
+			probe.geometry = null;
+		}
+
+		if (!operator.canAccelerateGeometry(geometry.getEsriGeometry())) {
+			return false;
+		}
+
+		if (operator.accelerateGeometry(geometry.getEsriGeometry(), geometry.getEsriSpatialReference(), degree)) {
+			accelerations++;
+			accelerated.put(new IdentityKey(geometry), geometry);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * De-accelerates all geometries in the pool and forgets the use counts
+	 */
+	public void clear() {
+		for (OGCGeometry geometry : accelerated.values()) {
+			deaccelerate(geometry);
+		}
+		accelerated.clear();
+		Arrays.fill(candidateCounts, 0);
+	}
+
+	public int size() {
+		return accelerated.size();
+	}
+
+	public long getAccelerationCount() {
+		return accelerations;
+	}
+
+	public long getDeaccelerationCount() {
+		return deaccelerations;
+	}
+
+	@Override
+	public String toString() {
+		return "AcceleratedGeometryPool(accelerated=" + accelerated.size() +
+				";accelerations=" + accelerations + ";deaccelerations=" + deaccelerations + ")";
+	}
+
+	private void deaccelerate(OGCGeometry geometry) {
+		Operator.deaccelerateGeometry(geometry.getEsriGeometry());
+		deaccelerations++;
+	}
+
+	/*
+	 * OGCGeometry.equals is a spatial comparison - the pool works on instances
+	 */
+	private static class IdentityKey {
+		OGCGeometry geometry;
+
+		IdentityKey(OGCGeometry geometry) {
+			this.geometry = geometry;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(geometry);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IdentityKey && ((IdentityKey) obj).geometry == geometry;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package com.esri.hadoop.hive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.esri.core.geometry.Envelope2D;
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.GeometryCursor;
+import com.esri.core.geometry.OperatorUnion;
+import com.esri.core.geometry.SimpleGeometryCursor;
+import com.esri.core.geometry.SpatialReference;
+
+/**
+ * Union of many geometries, computed as a cascade of small unions.
+ *
+ * Geometries are buffered until their estimated size exceeds the buffer budget.
+ * The buffer is then sorted along a Hilbert curve through the centers of the
+ * geometry envelopes, so that neighbours are unioned with neighbours, and unioned
+ * in groups of neighbours in a balanced tree.  Each union then only touches nearby
+ * geometries of similar size, instead of adding every geometry to one ever growing
+ * result.  Groups are unioned rather than pairs, since every union operation has a
+ * fixed cost of building the topology of its inputs.
+ *
+ * The result of a flush stays in the buffer and takes part in the next flush.  The
+ * budget bounds the geometries buffered since the last flush, not that result.
+ */
+public class CascadedUnion {
+
+	public static final String CONF_BUFFER_BYTES = "esri.hive.union.buffer.bytes";
+
+	public static final long DEFAULT_BUFFER_BYTES = 32L * 1024 * 1024;
+
+	// geometries unioned together at each node of the tree
+	private static final int FAN_IN = 32;
+
+	// bits per axis of the grid the Hilbert curve runs through
+	private static final int HILBERT_ORDER = 16;
+
+	private long bufferBytes;
+
+	private SpatialReference spatialRef = null;
+
+	private final OperatorUnion opUnion = OperatorUnion.local();
+
+	private final ArrayList<Geometry> geometries = new ArrayList<Geometry>();
+
+	// estimated size of the geometries added since the last flush, and of the result of that flush
+	private long pendingBytes = 0;
+	private long unionBytes = 0;
+
+	public CascadedUnion() {
+		this(DEFAULT_BUFFER_BYTES);
+	}
+
+	public CascadedUnion(long bufferBytes) {
+		this.bufferBytes = bufferBytes;
+	}
+
+	/**
+	 * Sets the buffer budget from the job configuration.
+	 *
+	 * @param conf configuration, for example from <code>MapredContext.getJobConf()</code>
+	 */
+	public void configure(Configuration conf) {
+		if (conf == null) {
+			return;
+		}
+
+		bufferBytes = conf.getLong(CONF_BUFFER_BYTES, bufferBytes);
+	}
+
+	public void setSpatialReference(SpatialReference spatialRef) {
+		this.spatialRef = spatialRef;
+	}
+
+	/**
+	 * @return true if no geometry was added since the last clear
+	 */
+	public boolean isEmpty() {
+		return geometries.isEmpty();
+	}
+
+	/**
+	 * @return estimated size in bytes of the geometries held
+	 */
+	public long estimateMemorySize() {
+		return pendingBytes + unionBytes;
+	}
+
+	/**
+	 * Adds a geometry to the union, unioning the buffer when it is over budget.
+	 *
+	 * @param geometry geometry to add
+	 */
+	public void add(Geometry geometry) {
+		geometries.add(geometry);
+		pendingBytes += GeometryUtils.estimateMemorySize(geometry);
+
+		if (pendingBytes > bufferBytes) {
+			flush();
+		}
+	}
+
+	/**
+	 * @return union of all geometries added since the last clear, or null if there are none
+	 */
+	public Geometry getUnion() {
+		if (geometries.isEmpty()) {
+			return null;
+		}
+
+		flush();
+		return geometries.get(0);
+	}
+
+	public void clear() {
+		geometries.clear();
+		pendingBytes = 0;
+		unionBytes = 0;
+	}
+
+	private void flush() {
+		Geometry [] sorted = sortAlongHilbertCurve();
+
+		// union groups of neighbours, one level of the tree at a time
+		int count = sorted.length;
+		while (count > 1) {
+			int unioned = 0;
+			for (int i = 0; i < count; i += FAN_IN) {
+				int end = Math.min(count, i + FAN_IN);
+				if (end - i == 1) {
+					sorted[unioned++] = sorted[i];
+				} else {
+					GeometryCursor group = new SimpleGeometryCursor(Arrays.copyOfRange(sorted, i, end));
+					sorted[unioned++] = opUnion.execute(group, spatialRef, null).next();
+				}
+			}
+			count = unioned;
+		}
+
+		geometries.clear();
+		geometries.add(sorted[0]);
+		pendingBytes = 0;
+		unionBytes = GeometryUtils.estimateMemorySize(sorted[0]);
+	}
+
+	private Geometry [] sortAlongHilbertCurve() {
+		int count = geometries.size();
+		double [] xs = new double[count];
+		double [] ys = new double[count];
+
+		Envelope2D envelope = new Envelope2D();
+		double xmin = Double.MAX_VALUE, ymin = Double.MAX_VALUE;
+		double xmax = -Double.MAX_VALUE, ymax = -Double.MAX_VALUE;
+
+		for (int i = 0; i < count; i++) {
+			Geometry geometry = geometries.get(i);
+			if (geometry.isEmpty()) {
+				continue;  // sorts first, at the corner of the grid
+			}
+			geometry.queryEnvelope2D(envelope);
+			xs[i] = (envelope.xmin + envelope.xmax) / 2;
+			ys[i] = (envelope.ymin + envelope.ymax) / 2;
+			xmin = Math.min(xmin, xs[i]);
+			xmax = Math.max(xmax, xs[i]);
+			ymin = Math.min(ymin, ys[i]);
+			ymax = Math.max(ymax, ys[i]);
+		}
+
+		int cells = (1 << HILBERT_ORDER) - 1;
+		double xscale = xmax > xmin ? cells / (xmax - xmin) : 0;
+		double yscale = ymax > ymin ? cells / (ymax - ymin) : 0;
+
+		// the key in the high bits and the index in the low bits, so that sorting needs no objects
+		long [] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			long key = 0;
+			if (!geometries.get(i).isEmpty()) {
+				key = getHilbertKey((int)((xs[i] - xmin) * xscale), (int)((ys[i] - ymin) * yscale));
+			}
+			keys[i] = key << 31 | i;
+		}
+		Arrays.sort(keys);
+
+		Geometry [] sorted = new Geometry[count];
+		for (int i = 0; i < count; i++) {
+			sorted[i] = geometries.get((int)(keys[i] & Integer.MAX_VALUE));
+		}
+		return sorted;
+	}
+
+	/**
+	 * Distance along the Hilbert curve of the cell at x, y of a grid with
+	 * 2^16 cells per axis.
+	 *
+	 * @param x column of the cell
+	 * @param y row of the cell
+	 * @return distance from the start of the curve
+	 */
+	static long getHilbertKey(int x, int y) {
+		int n = 1 << HILBERT_ORDER;
+		long key = 0;
+		for (int s = n / 2; s > 0; s /= 2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			key += (long)s * s * ((3 * rx) ^ ry);
+
+			// rotate the quadrant, so that the curve is continuous
+			if (ry == 0) {
+				if (rx == 1) {
+					x = n - 1 - x;
+					y = n - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return key;
+	}
+}
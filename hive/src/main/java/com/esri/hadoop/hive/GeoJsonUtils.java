@@ -0,0 +1,552 @@
+package com.esri.hadoop.hive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.MultiPath;
+import com.esri.core.geometry.MultiPoint;
+import com.esri.core.geometry.MultiVertexGeometry;
+import com.esri.core.geometry.OperatorImportFromWkb;
+import com.esri.core.geometry.Point;
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.Polyline;
+import com.esri.core.geometry.SpatialReference;
+import com.esri.core.geometry.VertexDescription;
+import com.esri.core.geometry.ogc.OGCConcreteGeometryCollection;
+import com.esri.core.geometry.ogc.OGCGeometry;
+import com.esri.core.geometry.ogc.OGCLineString;
+import com.esri.core.geometry.ogc.OGCMultiLineString;
+import com.esri.core.geometry.ogc.OGCMultiPoint;
+import com.esri.core.geometry.ogc.OGCMultiPolygon;
+import com.esri.core.geometry.ogc.OGCPoint;
+import com.esri.core.geometry.ogc.OGCPolygon;
+
+/**
+ * Reads and writes GeoJSON geometries as a stream of Jackson tokens.
+ *
+ * The reader builds the geometry straight from the tokens, without a tree of
+ * nodes or an intermediate string.  Members may come in any order, and members
+ * other than type, coordinates and geometries are skipped.  As in the geometry
+ * API, geometries are in WGS 84 and polygon rings are oriented as exterior and
+ * holes from their position in the polygon.  Z is kept when given.
+ *
+ * The writer writes the same GeoJSON as the geometry API, and also geometry
+ * collections.
+ *
+ * The coordinate buffers are reused from geometry to geometry, so an instance
+ * must not be shared between threads.
+ */
+public class GeoJsonUtils {
+
+	private static final SpatialReference WGS84 = SpatialReference.create(4326);
+
+	// nesting depth of the coordinates of each type
+	private static final int DEPTH_POSITION = 1;
+	private static final int DEPTH_POSITIONS = 2;
+	private static final int DEPTH_PATHS = 3;
+	private static final int DEPTH_POLYGONS = 4;
+
+	// coordinates of the geometry being read
+	private double [] xs = new double [64];
+	private double [] ys = new double [64];
+	private double [] zs = new double [64];
+	private int pointCount;
+	private boolean hasZ;
+
+	// first point of each line string or ring, and first ring of each polygon
+	private int [] pathStarts = new int [16];
+	private int pathCount;
+	private int [] polygonStarts = new int [16];
+	private int polygonCount;
+
+	// reused points, without and with Z
+	private final Point point = new Point();
+	private final Point pointZ = new Point();
+	private final Point position = new Point();
+
+	/**
+	 * Reads a geometry object, from its start to its end.
+	 *
+	 * @param parser parser on the start of the geometry object
+	 * @return geometry in WGS 84
+	 * @throws IOException if the JSON is not a valid GeoJSON geometry
+	 */
+	public OGCGeometry read(JsonParser parser) throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+			throw new JsonParseException("GeoJSON geometry must be an object", parser.getCurrentLocation());
+		}
+
+		String type = null;
+		int depth = -1;
+		List<OGCGeometry> geometries = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+
+			if ("type".equals(name)) {
+				type = parser.getText();
+			} else if ("coordinates".equals(name) && geometries == null) {
+				pointCount = pathCount = polygonCount = 0;
+				hasZ = false;
+				depth = token == JsonToken.VALUE_NULL ? 0 : readArray(parser);
+			} else if ("geometries".equals(name) && depth < 0) {
+				geometries = readGeometries(parser);
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		if (parser.getCurrentToken() != JsonToken.END_OBJECT || type == null) {
+			throw new JsonParseException("GeoJSON geometry must have a type", parser.getCurrentLocation());
+		}
+
+		if ("GeometryCollection".equalsIgnoreCase(type)) {
+			if (geometries == null) {
+				geometries = new ArrayList<OGCGeometry>();
+			}
+			return new OGCConcreteGeometryCollection(geometries, WGS84);
+		}
+
+		if (depth < 0) {
+			throw new JsonParseException("GeoJSON " + type + " must have coordinates", parser.getCurrentLocation());
+		}
+
+		OGCGeometry geometry = createGeometry(type, depth);
+		if (geometry == null) {
+			throw new JsonParseException("Invalid coordinates for GeoJSON " + type, parser.getCurrentLocation());
+		}
+		return geometry;
+	}
+
+	/**
+	 * Writes the geometry as a GeoJSON object.
+	 *
+	 * @param geometry geometry to write
+	 * @param generator generator in a position where a value can be written
+	 * @throws IOException
+	 */
+	public void write(OGCGeometry geometry, JsonGenerator generator) throws IOException {
+		String type = geometry.geometryType();
+
+		// as by the geometry API, a polygon that has more than one exterior ring, such
+		// as one with a hole that crosses itself, is written as a multi polygon
+		if ("Polygon".equals(type) && ((Polygon) geometry.getEsriGeometry()).getExteriorRingCount() > 1) {
+			type = "MultiPolygon";
+		}
+
+		generator.writeStartObject();
+		generator.writeStringField("type", type);
+
+		if (geometry instanceof OGCConcreteGeometryCollection) {
+			OGCConcreteGeometryCollection collection = (OGCConcreteGeometryCollection) geometry;
+			generator.writeArrayFieldStart("geometries");
+			for (int i = 0; i < collection.numGeometries(); i++) {
+				write(collection.geometryN(i), generator);
+			}
+			generator.writeEndArray();
+		} else {
+			generator.writeFieldName("coordinates");
+			writeCoordinates(type, geometry.getEsriGeometry(), generator);
+		}
+
+		generator.writeEndObject();
+	}
+
+	private List<OGCGeometry> readGeometries(JsonParser parser) throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			throw new JsonParseException("GeoJSON geometries must be an array", parser.getCurrentLocation());
+		}
+
+		List<OGCGeometry> geometries = new ArrayList<OGCGeometry>();
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			geometries.add(read(parser));
+		}
+		return geometries;
+	}
+
+	/*
+	 * Reads nested arrays of coordinates into the buffers, and returns their depth
+	 * - 1 for a position, 0 for an empty array
+	 */
+	private int readArray(JsonParser parser) throws IOException {
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			throw new JsonParseException("GeoJSON coordinates must be arrays", parser.getCurrentLocation());
+		}
+
+		JsonToken token = parser.nextToken();
+		if (token == JsonToken.END_ARRAY) {
+			return 0;
+		}
+		if (token != JsonToken.START_ARRAY) {
+			readPosition(parser);
+			return DEPTH_POSITION;
+		}
+
+		int pathStart = pointCount;
+		int polygonStart = pathCount;
+		int depth = -1;
+		for (; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+			int elementDepth = readArray(parser);
+			if (depth >= 0 && elementDepth != depth) {
+				throw new JsonParseException("GeoJSON coordinates must be nested evenly", parser.getCurrentLocation());
+			}
+			depth = elementDepth;
+		}
+
+		if (depth == DEPTH_POSITION) {
+			pathStarts = grow(pathStarts, pathCount + 1);
+			pathStarts[pathCount++] = pathStart;
+		} else if (depth == DEPTH_POSITIONS) {
+			polygonStarts = grow(polygonStarts, polygonCount + 1);
+			polygonStarts[polygonCount++] = polygonStart;
+		}
+		return depth + 1;
+	}
+
+	/*
+	 * Reads the numbers of a position, after the first token
+	 */
+	private void readPosition(JsonParser parser) throws IOException {
+		if (pointCount == xs.length) {
+			xs = grow(xs);
+			ys = grow(ys);
+			zs = grow(zs);
+		}
+
+		int count = 0;
+		for (JsonToken token = parser.getCurrentToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+			double value;
+			if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+				value = parser.getDoubleValue();
+			} else if (token == JsonToken.VALUE_STRING) {
+				try {
+					value = Double.parseDouble(parser.getText());
+				} catch (NumberFormatException e) {
+					throw new JsonParseException("GeoJSON position must be numbers", parser.getCurrentLocation());
+				}
+			} else {
+				throw new JsonParseException("GeoJSON position must be numbers", parser.getCurrentLocation());
+			}
+
+			switch (count++) {
+			case 0:
+				xs[pointCount] = value;
+				break;
+			case 1:
+				ys[pointCount] = value;
+				break;
+			case 2:
+				zs[pointCount] = value;
+				hasZ = true;
+				break;
+			default:
+				// measures are not part of GeoJSON
+			}
+		}
+
+		if (count < 2) {
+			throw new JsonParseException("GeoJSON position must have at least two numbers", parser.getCurrentLocation());
+		}
+		if (count == 2) {
+			zs[pointCount] = 0;
+		}
+		pointCount++;
+	}
+
+	private OGCGeometry createGeometry(String type, int depth) {
+		if ("Point".equalsIgnoreCase(type)) {
+			if (depth == DEPTH_POSITION) {
+				return new OGCPoint((Point) getPoint(0).copy(), WGS84);
+			} else if (depth != 0) {
+				return null;
+			}
+			return new OGCPoint(new Point(), WGS84);
+		} else if ("MultiPoint".equalsIgnoreCase(type)) {
+			MultiPoint multiPoint = new MultiPoint();
+			addZ(multiPoint);
+			if (!checkDepth(depth, DEPTH_POSITIONS)) {
+				return null;
+			}
+			for (int i = 0; i < pointCount; i++) {
+				multiPoint.add(getPoint(i));
+			}
+			return new OGCMultiPoint(multiPoint, WGS84);
+		} else if ("LineString".equalsIgnoreCase(type)) {
+			Polyline polyline = new Polyline();
+			addZ(polyline);
+			if (!checkDepth(depth, DEPTH_POSITIONS)) {
+				return null;
+			}
+			addPaths(polyline, 0, pathCount);
+			return new OGCLineString(polyline, 0, WGS84);
+		} else if ("MultiLineString".equalsIgnoreCase(type)) {
+			Polyline polyline = new Polyline();
+			addZ(polyline);
+			if (!checkDepth(depth, DEPTH_PATHS)) {
+				return null;
+			}
+			addPaths(polyline, 0, pathCount);
+			return new OGCMultiLineString(polyline, WGS84);
+		} else if ("Polygon".equalsIgnoreCase(type)) {
+			Polygon polygon = new Polygon();
+			addZ(polygon);
+			if (!checkDepth(depth, DEPTH_PATHS)) {
+				return null;
+			}
+			if (!addRings(polygon, 0, pathCount)) {
+				// created as by the GeoJSON import of the geometry API
+				return new OGCPolygon(importPolygons(false), 0, WGS84);
+			}
+			return new OGCPolygon(polygon, WGS84);
+		} else if ("MultiPolygon".equalsIgnoreCase(type)) {
+			Polygon polygon = new Polygon();
+			addZ(polygon);
+			if (!checkDepth(depth, DEPTH_POLYGONS)) {
+				return null;
+			}
+			for (int i = 0; i < polygonCount; i++) {
+				if (!addRings(polygon, polygonStarts[i], getPolygonEnd(i))) {
+					polygon = importPolygons(true);
+					break;
+				}
+			}
+			return new OGCMultiPolygon(polygon, WGS84);
+		}
+		return null;
+	}
+
+	/*
+	 * Empty geometries have no coordinates; the coordinates of the others are nested
+	 * to the depth of their type
+	 */
+	private boolean checkDepth(int depth, int expected) {
+		if (depth == expected) {
+			return true;
+		}
+		pointCount = pathCount = polygonCount = 0;
+		return depth == 0;
+	}
+
+	private void addPaths(MultiPath multiPath, int firstPath, int endPath) {
+		for (int path = firstPath; path < endPath; path++) {
+			int end = path + 1 < pathCount ? pathStarts[path + 1] : pointCount;
+			addPath(multiPath, pathStarts[path], end);
+		}
+	}
+
+	/*
+	 * The first ring of a polygon is its exterior ring, which is made clockwise, and
+	 * the other rings are holes, which are made counterclockwise.  Returns false if
+	 * the sign of the area of a ring does not tell whether it is the exterior ring,
+	 * as for rings that cross themselves or have no area.
+	 */
+	private boolean addRings(Polygon polygon, int firstRing, int endRing) {
+		for (int ring = firstRing; ring < endRing; ring++) {
+			int start = pathStarts[ring];
+			int end = getPathEnd(ring);
+
+			// the closing vertex is implied
+			if (end - start > 1 && xs[end - 1] == xs[start] && ys[end - 1] == ys[start]) {
+				end--;
+			}
+			if (end > start) {
+				addPath(polygon, start, end);
+
+				int pathIndex = polygon.getPathCount() - 1;
+				double area = polygon.calculateRingArea2D(pathIndex);
+				if (!(area > 0 || area < 0) || GeometryUtils.isClockwiseRing(polygon, pathIndex) != area > 0) {
+					return false;
+				}
+				if (area > 0 != (ring == firstRing)) {
+					polygon.reversePath(pathIndex);
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Polygons with such rings are imported by the geometry API, from WKB, which
+	 * orients the rings as its GeoJSON import does and marks the exterior ring of each
+	 * polygon, which a polygon built from its rings can only tell from their area.
+	 */
+	private Polygon importPolygons(boolean multi) {
+		int pointSize = hasZ ? 24 : 16;
+		int count = multi ? polygonCount : 1;
+		int size = multi ? WKBUtils.WKB_HEADER_SIZE + 4 : 0;
+		for (int i = 0; i < count; i++) {
+			int firstRing = multi ? polygonStarts[i] : 0;
+			int endRing = multi ? getPolygonEnd(i) : pathCount;
+			size += WKBUtils.WKB_HEADER_SIZE + 4;
+			for (int ring = firstRing; ring < endRing; ring++) {
+				size += 4 + getClosedRingSize(ring) * pointSize;
+			}
+		}
+
+		ByteBuffer wkb = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		int zType = hasZ ? 1000 : 0;
+		if (multi) {
+			wkb.put((byte) 1).putInt(WKBUtils.WKB_MULTIPOLYGON + zType).putInt(count);
+		}
+		for (int i = 0; i < count; i++) {
+			int firstRing = multi ? polygonStarts[i] : 0;
+			int endRing = multi ? getPolygonEnd(i) : pathCount;
+			wkb.put((byte) 1).putInt(WKBUtils.WKB_POLYGON + zType).putInt(endRing - firstRing);
+			for (int ring = firstRing; ring < endRing; ring++) {
+				int start = pathStarts[ring];
+				int ringSize = getClosedRingSize(ring);
+				wkb.putInt(ringSize);
+				for (int j = 0; j < ringSize; j++) {
+					// the closing vertex, when it is implied, is the first one
+					int index = start + j < getPathEnd(ring) ? start + j : start;
+					wkb.putDouble(xs[index]).putDouble(ys[index]);
+					if (hasZ) {
+						wkb.putDouble(zs[index]);
+					}
+				}
+			}
+		}
+
+		wkb.flip();
+		return (Polygon) OperatorImportFromWkb.local().execute(0, Geometry.Type.Polygon, wkb, null);
+	}
+
+	private int getPathEnd(int path) {
+		return path + 1 < pathCount ? pathStarts[path + 1] : pointCount;
+	}
+
+	private int getPolygonEnd(int polygon) {
+		return polygon + 1 < polygonCount ? polygonStarts[polygon + 1] : pathCount;
+	}
+
+	/*
+	 * Number of points of the ring with its closing vertex
+	 */
+	private int getClosedRingSize(int ring) {
+		int start = pathStarts[ring];
+		int end = getPathEnd(ring);
+		if (end == start || (xs[end - 1] == xs[start] && ys[end - 1] == ys[start])) {
+			return end - start;
+		}
+		return end - start + 1;
+	}
+
+	private void addPath(MultiPath multiPath, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (i == start) {
+				multiPath.startPath(getPoint(i));
+			} else {
+				multiPath.lineTo(getPoint(i));
+			}
+		}
+	}
+
+	/*
+	 * Z is added before the first point, which would otherwise lose it
+	 */
+	private void addZ(Geometry geometry) {
+		if (hasZ) {
+			geometry.addAttribute(VertexDescription.Semantics.Z);
+		}
+	}
+
+	private Point getPoint(int index) {
+		if (hasZ) {
+			pointZ.setXY(xs[index], ys[index]);
+			pointZ.setZ(zs[index]);
+			return pointZ;
+		}
+		point.setXY(xs[index], ys[index]);
+		return point;
+	}
+
+	private void writeCoordinates(String type, Geometry geometry, JsonGenerator generator) throws IOException {
+		if (geometry.isEmpty()) {
+			generator.writeNull();
+			return;
+		}
+
+		boolean writeZ = geometry.hasAttribute(VertexDescription.Semantics.Z);
+
+		if (geometry instanceof Point) {
+			writePosition((Point) geometry, writeZ, generator);
+		} else if (geometry instanceof MultiPoint) {
+			writePositions((MultiPoint) geometry, 0, ((MultiPoint) geometry).getPointCount(), false, writeZ, generator);
+		} else {
+			MultiPath multiPath = (MultiPath) geometry;
+			boolean polygon = geometry instanceof Polygon;
+
+			if ("LineString".equals(type)) {
+				writePositions(multiPath, multiPath.getPathStart(0), multiPath.getPathEnd(0), false, writeZ, generator);
+				return;
+			}
+
+			// rings grouped by exterior ring, for a multi polygon
+			boolean multiPolygon = "MultiPolygon".equals(type);
+			if (multiPolygon) {
+				generator.writeStartArray();
+			}
+			generator.writeStartArray();
+			for (int path = 0; path < multiPath.getPathCount(); path++) {
+				if (multiPolygon && path > 0 && ((Polygon) multiPath).isExteriorRing(path)) {
+					generator.writeEndArray();
+					generator.writeStartArray();
+				}
+				writePositions(multiPath, multiPath.getPathStart(path), multiPath.getPathEnd(path), polygon, writeZ, generator);
+			}
+			generator.writeEndArray();
+			if (multiPolygon) {
+				generator.writeEndArray();
+			}
+		}
+	}
+
+	private void writePositions(MultiVertexGeometry geometry, int start, int end, boolean closed, boolean writeZ,
+			JsonGenerator generator) throws IOException {
+		generator.writeStartArray();
+		for (int i = start; i < end; i++) {
+			geometry.getPoint(i, position);
+			writePosition(position, writeZ, generator);
+		}
+		if (closed && end > start) {
+			geometry.getPoint(start, position);
+			writePosition(position, writeZ, generator);
+		}
+		generator.writeEndArray();
+	}
+
+	private static void writePosition(Point point, boolean writeZ, JsonGenerator generator) throws IOException {
+		generator.writeStartArray();
+		generator.writeNumber(point.getX());
+		generator.writeNumber(point.getY());
+		if (writeZ) {
+			generator.writeNumber(point.getZ());
+		}
+		generator.writeEndArray();
+	}
+
+	private static double [] grow(double [] array) {
+		double [] grown = new double [array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private static int [] grow(int [] array, int size) {
+		if (size <= array.length) {
+			return array;
+		}
+		int [] grown = new int [Math.max(array.length * 2, size)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+}
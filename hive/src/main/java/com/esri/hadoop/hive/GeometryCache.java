@@ -0,0 +1,243 @@
+package com.esri.hadoop.hive;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.BytesWritable;
+
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+/**
+ * Bounded LRU cache of deserialized geometries, keyed on the content of the
+ * hive geometry bytes.  Because the key is the content and not the writable,
+ * geometries are found again even when the source recycles its writables.
+ *
+ * The cache is bounded by the number of entries and by the total size of
+ * the cached shapes.  Geometries smaller than a minimum size are not cached,
+ * since deserializing them is cheaper than hashing and copying the key.
+ */
+public class GeometryCache {
+
+	public static final String CONF_MAX_ENTRIES = "esri.hive.geometry.cache.entries";
+	public static final String CONF_MAX_BYTES = "esri.hive.geometry.cache.bytes";
+	public static final String CONF_MIN_GEOMETRY_BYTES = "esri.hive.geometry.cache.min.geometry.bytes";
+
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	public static final int DEFAULT_MIN_GEOMETRY_BYTES = 512;
+
+	// number of 8 byte words sampled for the content hash
+	private static final int HASH_SAMPLES = 64;
+	// leading bytes always hashed - header, bounding box and part/point counts
+	private static final int HASH_PREFIX = 64;
+
+	private int maxEntries;
+	private long maxBytes;
+	private int minGeometryBytes;
+
+	private long totalBytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	// access ordered, so iteration starts with the least recently used entry
+	private final LinkedHashMap<Key, OGCGeometry> entries = new LinkedHashMap<Key, OGCGeometry>(16, 0.75f, true);
+
+	// reused for lookups so that a miss does not copy the bytes
+	private final Key probe = new Key();
+
+	public GeometryCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, DEFAULT_MIN_GEOMETRY_BYTES);
+	}
+
+	public GeometryCache(int maxEntries, long maxBytes, int minGeometryBytes) {
+		setLimits(maxEntries, maxBytes, minGeometryBytes);
+	}
+
+	/**
+	 * Sets the bounds of the cache from the job configuration.  A maximum of zero
+	 * entries disables the cache.
+	 *
+	 * @param conf configuration, for example from <code>MapredContext.getJobConf()</code>
+	 */
+	public void configure(Configuration conf) {
+		if (conf == null) {
+			return;
+		}
+
+		setLimits(conf.getInt(CONF_MAX_ENTRIES, maxEntries),
+				conf.getLong(CONF_MAX_BYTES, maxBytes),
+				conf.getInt(CONF_MIN_GEOMETRY_BYTES, minGeometryBytes));
+	}
+
+	public synchronized void setLimits(int maxEntries, long maxBytes, int minGeometryBytes) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.minGeometryBytes = minGeometryBytes;
+		evict();
+	}
+
+	/**
+	 * @param geomref hive geometry bytes
+	 * @return true if geometries with this size are cached
+	 */
+	public boolean accepts(BytesWritable geomref) {
+		int length = geomref.getLength();
+		return maxEntries > 0 && length >= minGeometryBytes && length <= maxBytes;
+	}
+
+	/**
+	 * Gets the geometry previously cached for the same bytes.
+	 *
+	 * @param geomref hive geometry bytes
+	 * @return cached geometry, or null on a miss
+	 */
+	public synchronized OGCGeometry get(BytesWritable geomref) {
+		probe.set(geomref.getBytes(), geomref.getLength());
+
+		OGCGeometry geometry = entries.get(probe);
+
+		// don't hold on to the caller's bytes
+		probe.set(null, 0);
+
+		if (geometry == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+
+		return geometry;
+	}
+
+	/**
+	 * Caches the geometry deserialized from the bytes, evicting the least
+	 * recently used geometries if the cache is full.
+	 *
+	 * @param geomref hive geometry bytes, copied into the key
+	 * @param geometry geometry deserialized from the bytes
+	 */
+	public synchronized void put(BytesWritable geomref, OGCGeometry geometry) {
+		if (!accepts(geomref)) {
+			return;
+		}
+
+		Key key = new Key();
+		key.set(Arrays.copyOf(geomref.getBytes(), geomref.getLength()), geomref.getLength());
+
+		if (entries.put(key, geometry) == null) {
+			totalBytes += key.length;
+		}
+
+		evict();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		totalBytes = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "GeometryCache(entries=" + entries.size() + ";bytes=" + totalBytes +
+				";hits=" + hits + ";misses=" + misses + ";evictions=" + evictions + ")";
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Key, OGCGeometry>> iter = entries.entrySet().iterator();
+
+		while (iter.hasNext() && (entries.size() > maxEntries || totalBytes > maxBytes)) {
+			Key eldest = iter.next().getKey();
+			iter.remove();
+			totalBytes -= eldest.length;
+			evictions++;
+		}
+	}
+
+	/*
+	 * Content key of the hive geometry bytes.  The hash only samples the bytes,
+	 * equality compares all of them.
+	 */
+	private static class Key {
+		byte [] bytes;
+		int length;
+		int hash;
+
+		void set(byte [] bytes, int length) {
+			this.bytes = bytes;
+			this.length = length;
+			this.hash = bytes == null ? 0 : hash(bytes, length);
+		}
+
+		private static int hash(byte [] bytes, int length) {
+			int h = length;
+			int prefix = Math.min(length, HASH_PREFIX);
+
+			for (int i = 0; i < prefix; i++) {
+				h = 31 * h + bytes[i];
+			}
+
+			// sample coordinates evenly from the rest of the shape
+			int remaining = length - prefix;
+			if (remaining >= 8) {
+				int step = Math.max(8, remaining / HASH_SAMPLES);
+				for (int i = prefix; i + 8 <= length; i += step) {
+					h = 31 * h + GeometryUtils.readInt(bytes, i);
+					h = 31 * h + GeometryUtils.readInt(bytes, i + 4);
+				}
+			}
+
+			return h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+			if (hash != other.hash || length != other.length) {
+				return false;
+			}
+
+			for (int i = 0; i < length; i++) {
+				if (bytes[i] != other.bytes[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
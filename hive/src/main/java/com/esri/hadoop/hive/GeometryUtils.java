@@ -3,21 +3,51 @@ package com.esri.hadoop.hive;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.WritableBinaryObjectInspector;
 import org.apache.hadoop.io.BytesWritable;
 
 import com.esri.core.geometry.*;
 import com.esri.core.geometry.ogc.*;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+
 public class GeometryUtils {
 	
 	private static final int SIZE_WKID = 4;
 	private static final int SIZE_TYPE = 1;
 	
+	// offset of the Esri shape, after the WKID and type
+	static final int SHAPE_OFFSET = SIZE_WKID + SIZE_TYPE;
+	
 	public static final int WKID_UNKNOWN = 0;
 	
+	// envelopes are compared with a margin relative to their coordinates, on top of the
+	// tolerance of the spatial reference
+	private static final double ENVELOPE_RELATIVE_MARGIN = 1e-8;
+	
+	// basic shape types (lower byte of the shape type) - see the Esri shape specification
+	private static final int SHAPE_TYPE_MASK = 0xff;
+	private static final int SHAPE_NULL = 0;
+	private static final int SHAPE_POINT = 1;
+	private static final int SHAPE_POINT_ZM = 11;
+	private static final int SHAPE_POINT_Z = 9;
+	private static final int SHAPE_POINT_M = 21;
+	private static final int SHAPE_GENERAL_POINT = 52;
+	private static final int SHAPE_GENERAL_POLYLINE = 50;
+	private static final int SHAPE_GENERAL_MULTIPATCH = 54;
+	private static final int SHAPE_HAS_ZS = 0x80000000;  // modifiers of the general shape types
+	private static final int SHAPE_HAS_MS = 0x40000000;
+	
+	// shapes with no data (empty points) use values below this
+	private static final double SHAPE_NO_DATA = -1e38;
+	
+	// value the geometry API writes for no data
+	private static final double SHAPE_NO_DATA_VALUE = -Double.MAX_VALUE;
+	
+	private static final int SIZE_POINT_SHAPE = 20;  // type, x, y
+	
+	private static final int SIZE_GEOMETRY_OBJECT = 64;  // estimated size of a geometry without its vertices
+	
 	public enum OGCType {
 		UNKNOWN(0),
 		ST_POINT(1),
@@ -52,10 +82,24 @@ public class GeometryUtils {
 			PrimitiveObjectInspectorFactory.writableBinaryObjectInspector;
 
 	
-	private static Cache<BytesWritable, OGCGeometry> geometryCache = 
-			CacheBuilder.newBuilder()
-			.weakKeys()
-			.build();
+	private static GeometryCache geometryCache = new GeometryCache();
+	
+	/**
+	 * Sets the bounds of the geometry cache from the job configuration
+	 * 
+	 * @param conf job configuration
+	 * @see GeometryCache#configure(Configuration)
+	 */
+	public static void configureGeometryCache(Configuration conf) {
+		geometryCache.configure(conf);
+	}
+	
+	/**
+	 * @return cache of deserialized geometries shared by all functions in the task
+	 */
+	public static GeometryCache getGeometryCache() {
+		return geometryCache;
+	}
 	
 	/**
 	 * @param geomref1
@@ -79,11 +123,15 @@ public class GeometryUtils {
 	}
 
 	public static OGCGeometry geometryFromEsriShape(BytesWritable geomref) {
-		// always assume bytes are recycled and can't be cached by using
-		// geomref.getBytes() as the key
 		return geometryFromEsriShape(geomref, true);
 	}
 	
+	/**
+	 * @param geomref reference to hive geometry bytes
+	 * @param bytesRecycled no longer relevant - the geometry cache is keyed on the
+	 * content of the bytes, so it also works with recycled bytes
+	 * @return deserialized geometry, or null if the bytes hold no geometry
+	 */
 	public static OGCGeometry geometryFromEsriShape(BytesWritable geomref, boolean bytesRecycled) {
 
 		if (geomref == null) {
@@ -96,11 +144,12 @@ public class GeometryUtils {
 			return ((CachedGeometryBytesWritable)geomref).getGeometry();
 		}
 		
-		// if geomref bytes are recycled, we can't use the cache because every
-		// key in the cache will be the same byte array
-		if (!bytesRecycled) {
+		// only large geometries are worth the lookup
+		boolean cacheable = geometryCache.accepts(geomref);
+		
+		if (cacheable) {
 			// check for a cache hit to previously created geometries
-			OGCGeometry cachedGeom = geometryCache.getIfPresent(geomref);
+			OGCGeometry cachedGeom = geometryCache.get(geomref);
 
 			if (cachedGeom != null) {
 				return cachedGeom;
@@ -109,6 +158,22 @@ public class GeometryUtils {
 		
 		// not in cache or instance of CachedGeometryBytesWritable. now
 		// need to create the geometry from its bytes
+		OGCGeometry createdGeom = deserialize(geomref);
+		
+		if (cacheable && createdGeom != null) {
+			geometryCache.put(geomref, createdGeom); 
+		}
+		
+		return createdGeom;
+	}
+	
+	/**
+	 * Creates the geometry from the hive geometry bytes, bypassing the geometry cache
+	 * 
+	 * @param geomref reference to hive geometry bytes
+	 * @return new geometry, or null if the bytes hold no geometry
+	 */
+	static OGCGeometry deserialize(BytesWritable geomref) {
 		int wkid = getWKID(geomref);
 		ByteBuffer shapeBuffer = getShapeByteBuffer(geomref);
 		
@@ -125,14 +190,7 @@ public class GeometryUtils {
 				}
 
 				Geometry esriGeom = OperatorImportFromESRIShape.local().execute(0, Geometry.Type.Unknown, shapeBuffer);
-				OGCGeometry createdGeom = OGCGeometry.createFromEsriGeometry(esriGeom, spatialReference);
-				
-				if (!bytesRecycled) {
-					// only add bytes to cache if we know they aren't being recycled
-					geometryCache.put(geomref, createdGeom); 
-				}
-				
-				return createdGeom;
+				return OGCGeometry.createFromEsriGeometry(esriGeom, spatialReference);
 			}
 		}
 	}
@@ -145,7 +203,7 @@ public class GeometryUtils {
 	 */
 	public static OGCType getType(BytesWritable geomref){
 		// SIZE_WKID is the offset to the byte that stores the type information
-		return OGCTypeLookup[(int)geomref.getBytes()[SIZE_WKID]];
+		return OGCTypeLookup[geomref.getBytes()[SIZE_WKID]];
 	}
 	
 	/**
@@ -154,7 +212,8 @@ public class GeometryUtils {
 	 * @param type OGC geometry type
 	 */
 	public static void setType(BytesWritable geomref, OGCType type){
-		geomref.getBytes()[SIZE_WKID] = (byte) type.getIndex();
+		byte [] geomBytes = geomref.getBytes();
+		geomBytes[SIZE_WKID] = (byte) type.getIndex();
 	}
 	
 	/**
@@ -164,8 +223,21 @@ public class GeometryUtils {
 	 * @return WKID set in the first 4 bytes of the hive geometry bytes
 	 */
 	public static int getWKID(BytesWritable geomref){
-		ByteBuffer bb = ByteBuffer.wrap(geomref.getBytes());
-		return bb.getInt(0);
+		byte [] geomBytes = geomref.getBytes();
+		// WKID is stored big endian, unlike the shape that follows the header
+		return ((geomBytes[0] & 0xff) << 24) | ((geomBytes[1] & 0xff) << 16) |
+				((geomBytes[2] & 0xff) << 8) | (geomBytes[3] & 0xff);
+	}
+	
+	/**
+	 * Gets the WKID of a deserialized geometry
+	 * 
+	 * @param geometry geometry
+	 * @return WKID of the spatial reference, or WKID_UNKNOWN if it has none
+	 */
+	public static int getWKID(OGCGeometry geometry){
+		SpatialReference spatialReference = geometry.getEsriSpatialReference();
+		return spatialReference == null ? WKID_UNKNOWN : spatialReference.getID();
 	}
 	
 	/**
@@ -175,9 +247,385 @@ public class GeometryUtils {
 	 * @param wkid
 	 */
 	public static void setWKID(BytesWritable geomref, int wkid){
-		ByteBuffer bb = ByteBuffer.allocate(4);
-		bb.putInt(wkid);
-	    System.arraycopy(bb.array(), 0, geomref.getBytes(), 0, SIZE_WKID);
+		byte [] geomBytes = geomref.getBytes();
+		geomBytes[0] = (byte) (wkid >>> 24);
+		geomBytes[1] = (byte) (wkid >>> 16);
+		geomBytes[2] = (byte) (wkid >>> 8);
+		geomBytes[3] = (byte) wkid;
+	}
+	
+	/**
+	 * Reads the envelope of the hive geometry bytes without deserializing the geometry.
+	 * The envelope comes from the bounding box stored in the Esri shape of multi-vertex
+	 * geometries, or the coordinates of a point.
+	 * 
+	 * @param geomref reference to hive geometry bytes
+	 * @param envelope envelope to be set, empty for an empty geometry
+	 * @return false if there is no geometry in the bytes
+	 */
+	public static boolean getEnvelope(BytesWritable geomref, Envelope envelope){
+		byte [] geomBytes = geomref.getBytes();
+		int offset = SHAPE_OFFSET;
+		
+		// minimum for a shape, even an empty one, is the 4 byte type record
+		if (geomref.getLength() < offset + 4) {
+			return false;
+		}
+		
+		int shapeType = readInt(geomBytes, offset) & SHAPE_TYPE_MASK;
+		
+		if (shapeType == SHAPE_NULL) {
+			return false;
+		}
+		
+		if (isPointShapeType(shapeType)) {
+			double x = readDouble(geomBytes, offset + 4);
+			double y = readDouble(geomBytes, offset + 12);
+			if (Double.isNaN(x) || x < SHAPE_NO_DATA) {
+				envelope.setEmpty();
+			} else {
+				envelope.setCoords(x, y, x, y);
+			}
+		} else {
+			// all other shapes start with the bounding box
+			double xmin = readDouble(geomBytes, offset + 4);
+			if (Double.isNaN(xmin)) {
+				envelope.setEmpty();
+			} else {
+				envelope.setCoords(xmin, readDouble(geomBytes, offset + 12),
+						readDouble(geomBytes, offset + 20), readDouble(geomBytes, offset + 28));
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Gets the tolerance of a spatial reference
+	 * 
+	 * @param wkid well-known ID of the spatial reference
+	 * @return tolerance, or 0 if the spatial reference is unknown
+	 */
+	static double getTolerance(int wkid){
+		if (wkid == WKID_UNKNOWN) {
+			return 0;
+		}
+		
+		try {
+			return SpatialReference.create(wkid).getTolerance();
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Gets the orientation the geometry API gives a ring when it imports a polygon:
+	 * the turn at the first vertex with the largest y, then x, or the sign of the
+	 * area if there is no turn.  Unlike the sign of the area, this tells the
+	 * orientation of a ring that crosses itself the same way as the API.
+	 * 
+	 * @param polygon polygon
+	 * @param pathIndex index of the ring, which has no closing vertex
+	 * @return true if the ring is clockwise
+	 */
+	static boolean isClockwiseRing(Polygon polygon, int pathIndex) {
+		int start = polygon.getPathStart(pathIndex);
+		int end = polygon.getPathEnd(pathIndex);
+		int highest = start;
+		Point2D highPoint = polygon.getXY(start);
+		for (int i = start + 1; i < end; i++) {
+			Point2D point = polygon.getXY(i);
+			if (highPoint.compare(point) < 0) {
+				highest = i;
+				highPoint = point;
+			}
+		}
+
+		Point2D prevPoint = polygon.getXY(highest == start ? end - 1 : highest - 1);
+		Point2D nextPoint = polygon.getXY(highest == end - 1 ? start : highest + 1);
+		int orientation = Point2D.orientationRobust(prevPoint, highPoint, nextPoint);
+		if (orientation == 0) {
+			return polygon.calculateRingArea2D(pathIndex) > 0;
+		}
+		return orientation < 0;
+	}
+	
+	/**
+	 * Gets the margin for comparing two envelopes, so that envelope tests never reject
+	 * a pair of geometries that an exact operation would accept.  The margin is the
+	 * tolerance of the spatial reference, plus a margin relative to the coordinates.
+	 * 
+	 * @param tolerance tolerance of the spatial reference
+	 * @param env1 first envelope
+	 * @param env2 second envelope
+	 * @return margin
+	 */
+	static double getEnvelopeTolerance(double tolerance, Envelope env1, Envelope env2){
+		double magnitude = Math.max(Math.max(Math.abs(env1.getXMin()), Math.abs(env1.getXMax())),
+				Math.max(Math.abs(env1.getYMin()), Math.abs(env1.getYMax())));
+		magnitude = Math.max(magnitude, Math.max(Math.max(Math.abs(env2.getXMin()), Math.abs(env2.getXMax())),
+				Math.max(Math.abs(env2.getYMin()), Math.abs(env2.getYMax()))));
+		
+		return tolerance + ENVELOPE_RELATIVE_MARGIN * Math.max(1, magnitude);
+	}
+	
+	/**
+	 * Gets whether the Esri shape in the hive geometry bytes has Z values, without
+	 * deserializing the geometry
+	 * 
+	 * @param geomref reference to hive geometry bytes
+	 * @return true if the shape type stores Z values
+	 */
+	public static boolean hasZ(BytesWritable geomref){
+		int shapeType = getShapeType(geomref);
+		
+		switch (shapeType & SHAPE_TYPE_MASK) {
+		case 9: case 10: case 11: case 13: case 15: case 18: case 19: case 20:
+			return true;
+		default:
+			return isGeneralShapeType(shapeType) && (shapeType & SHAPE_HAS_ZS) != 0;
+		}
+	}
+	
+	/**
+	 * Gets whether the Esri shape in the hive geometry bytes has M values, without
+	 * deserializing the geometry
+	 * 
+	 * @param geomref reference to hive geometry bytes
+	 * @return true if the shape type stores M values
+	 */
+	public static boolean hasM(BytesWritable geomref){
+		int shapeType = getShapeType(geomref);
+		
+		switch (shapeType & SHAPE_TYPE_MASK) {
+		case 11: case 13: case 15: case 18: case 21: case 23: case 25: case 28: case 31:
+			return true;
+		default:
+			return isGeneralShapeType(shapeType) && (shapeType & SHAPE_HAS_MS) != 0;
+		}
+	}
+	
+	/**
+	 * Gets whether the hive geometry bytes hold no geometry at all (null shape),
+	 * in which case {@link #geometryFromEsriShape(BytesWritable)} returns null
+	 * 
+	 * @param geomref reference to hive geometry bytes
+	 * @return true if there is no shape
+	 */
+	public static boolean isNullShape(BytesWritable geomref){
+		return (getShapeType(geomref) & SHAPE_TYPE_MASK) == SHAPE_NULL;
+	}
+	
+	/**
+	 * Reads the X coordinate of a point, without deserializing the geometry.  The
+	 * caller is responsible for checking that the type is {@link OGCType#ST_POINT}.
+	 * 
+	 * @param geomref reference to hive geometry bytes of a point
+	 * @return X coordinate, or NaN if the point is empty
+	 */
+	public static double getPointX(BytesWritable geomref){
+		return getPointOrdinate(geomref, 4);
+	}
+	
+	/**
+	 * Reads the Y coordinate of a point, without deserializing the geometry.
+	 * 
+	 * @param geomref reference to hive geometry bytes of a point
+	 * @return Y coordinate, or NaN if the point is empty
+	 * @see #getPointX(BytesWritable)
+	 */
+	public static double getPointY(BytesWritable geomref){
+		return getPointOrdinate(geomref, 12);
+	}
+	
+	/**
+	 * Reads the Z coordinate of a point, without deserializing the geometry.
+	 * 
+	 * @param geomref reference to hive geometry bytes of a point
+	 * @return Z coordinate, or NaN if the point is empty or has no Z
+	 * @see #getPointX(BytesWritable)
+	 */
+	public static double getPointZ(BytesWritable geomref){
+		return hasZ(geomref) ? getPointOrdinate(geomref, 20) : Double.NaN;
+	}
+	
+	/**
+	 * Reads the M value of a point, without deserializing the geometry.
+	 * 
+	 * @param geomref reference to hive geometry bytes of a point
+	 * @return M value, or NaN if the point is empty or not measured
+	 * @see #getPointX(BytesWritable)
+	 */
+	public static double getPointM(BytesWritable geomref){
+		// M follows Z in the point shape
+		return hasM(geomref) ? getPointOrdinate(geomref, hasZ(geomref) ? 28 : 20) : Double.NaN;
+	}
+	
+	/**
+	 * Reads the coordinates of a point into a reused point, without deserializing
+	 * the geometry.  Z and M are ignored.
+	 * 
+	 * @param geomref reference to hive geometry bytes
+	 * @param point point to be set
+	 * @return false if the bytes do not hold a non-empty point
+	 */
+	public static boolean readPoint(BytesWritable geomref, Point point){
+		if (geomref.getLength() <= SIZE_WKID || getType(geomref) != OGCType.ST_POINT) {
+			return false;
+		}
+		
+		double x = getPointX(geomref);
+		if (Double.isNaN(x)) {
+			return false;
+		}
+		
+		point.setXY(x, getPointY(geomref));
+		return true;
+	}
+	
+	/**
+	 * Writes the hive geometry bytes of a 2D point into the given writable, reusing its
+	 * buffer.  No geometry is created.
+	 * 
+	 * @param geomref writable to be set
+	 * @param wkid
+	 * @param x X coordinate, NaN for an empty point
+	 * @param y Y coordinate, NaN for an empty point
+	 * @see #writePoint(BytesWritable, int, double, double, boolean, double, boolean, double)
+	 */
+	public static void writePoint(BytesWritable geomref, int wkid, double x, double y){
+		writePoint(geomref, wkid, x, y, false, 0, false, 0);
+	}
+	
+	/**
+	 * Writes the hive geometry bytes of a point into the given writable, reusing its
+	 * buffer.  The bytes are the same as those of the serialized point, without
+	 * creating the geometry or copying the shape.
+	 * 
+	 * @param geomref writable to be set
+	 * @param wkid
+	 * @param x X coordinate, NaN for an empty point
+	 * @param y Y coordinate, NaN for an empty point
+	 * @param hasZ true to write the Z coordinate
+	 * @param z Z coordinate
+	 * @param hasM true to write the M value
+	 * @param m M value
+	 */
+	public static void writePoint(BytesWritable geomref, int wkid, double x, double y,
+			boolean hasZ, double z, boolean hasM, double m){
+		int offset = SHAPE_OFFSET;
+		geomref.setSize(offset + SIZE_POINT_SHAPE + (hasZ ? 8 : 0) + (hasM ? 8 : 0));
+		
+		byte [] geomBytes = geomref.getBytes();
+		writeHeader(geomBytes, wkid, OGCType.ST_POINT);
+		
+		writeInt(geomBytes, offset, hasZ ? (hasM ? SHAPE_POINT_ZM : SHAPE_POINT_Z) : (hasM ? SHAPE_POINT_M : SHAPE_POINT));
+		offset += 4;
+		
+		// all the coordinates of an empty point are no data
+		boolean empty = Double.isNaN(x) || Double.isNaN(y);
+		writeDouble(geomBytes, offset, empty ? SHAPE_NO_DATA_VALUE : x);
+		writeDouble(geomBytes, offset + 8, empty ? SHAPE_NO_DATA_VALUE : y);
+		offset += 16;
+		
+		if (hasZ) {
+			writeDouble(geomBytes, offset, empty || Double.isNaN(z) ? SHAPE_NO_DATA_VALUE : z);
+			offset += 8;
+		}
+		
+		if (hasM) {
+			writeDouble(geomBytes, offset, empty || Double.isNaN(m) ? SHAPE_NO_DATA_VALUE : m);
+		}
+	}
+	
+	private static double getPointOrdinate(BytesWritable geomref, int shapeOffset){
+		int offset = SHAPE_OFFSET + shapeOffset;
+		
+		if (geomref.getLength() < offset + 8 || !isPointShapeType(getShapeType(geomref) & SHAPE_TYPE_MASK)) {
+			return Double.NaN;
+		}
+		
+		double value = readDouble(geomref.getBytes(), offset);
+		return value < SHAPE_NO_DATA ? Double.NaN : value;
+	}
+	
+	private static int getShapeType(BytesWritable geomref){
+		int offset = SHAPE_OFFSET;
+		
+		if (geomref.getLength() < offset + 4) {
+			return SHAPE_NULL;
+		}
+		
+		return readInt(geomref.getBytes(), offset);
+	}
+	
+	private static boolean isGeneralShapeType(int shapeType){
+		int basicType = shapeType & SHAPE_TYPE_MASK;
+		return basicType >= SHAPE_GENERAL_POLYLINE && basicType <= SHAPE_GENERAL_MULTIPATCH;
+	}
+	
+	private static boolean isPointShapeType(int shapeType){
+		switch (shapeType) {
+		case SHAPE_POINT:
+		case SHAPE_POINT_Z:
+		case SHAPE_POINT_M:
+		case SHAPE_POINT_ZM:
+		case SHAPE_GENERAL_POINT:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Writes the header (WKID and type) in front of the shape
+	 * 
+	 * @param bytes hive geometry bytes, the shape at offset {@link #SHAPE_OFFSET}
+	 * @param wkid
+	 * @param type OGC geometry type
+	 */
+	static void writeHeader(byte [] bytes, int wkid, OGCType type){
+		bytes[0] = (byte) (wkid >>> 24);
+		bytes[1] = (byte) (wkid >>> 16);
+		bytes[2] = (byte) (wkid >>> 8);
+		bytes[3] = (byte) wkid;
+		bytes[SIZE_WKID] = (byte) type.getIndex();
+	}
+	
+	/**
+	 * Reads a little endian int, as stored in the Esri shape
+	 */
+	static int readInt(byte [] bytes, int offset){
+		return (bytes[offset] & 0xff) | ((bytes[offset + 1] & 0xff) << 8) |
+				((bytes[offset + 2] & 0xff) << 16) | ((bytes[offset + 3] & 0xff) << 24);
+	}
+	
+	/**
+	 * Reads a little endian double, as stored in the Esri shape
+	 */
+	static double readDouble(byte [] bytes, int offset){
+		long lo = readInt(bytes, offset) & 0xffffffffL;
+		long hi = readInt(bytes, offset + 4) & 0xffffffffL;
+		return Double.longBitsToDouble((hi << 32) | lo);
+	}
+	
+	/**
+	 * Writes a little endian int, as stored in the Esri shape
+	 */
+	static void writeInt(byte [] bytes, int offset, int value){
+		for (int i = 0; i < 4; i++) {
+			bytes[offset + i] = (byte) (value >>> (8 * i));
+		}
+	}
+	
+	/**
+	 * Writes a little endian double, as stored in the Esri shape
+	 */
+	static void writeDouble(byte [] bytes, int offset, double value){
+		long bits = Double.doubleToLongBits(value);
+		for (int i = 0; i < 8; i++) {
+			bytes[offset + i] = (byte) (bits >>> (8 * i));
+		}
 	}
 	
 	public static OGCType getInferredOGCType(Geometry geom){
@@ -195,11 +643,26 @@ public class GeometryUtils {
 		}
 	}
 	
+	/**
+	 * Estimates the memory held by a geometry from the number of its vertices and
+	 * of their attributes (x, y, z, ...)
+	 * 
+	 * @param geometry geometry
+	 * @return estimated size in bytes
+	 */
+	public static long estimateMemorySize(Geometry geometry){
+		if (geometry instanceof MultiVertexGeometry) {
+			int components = geometry.getDescription().getTotalComponentCount();
+			return SIZE_GEOMETRY_OBJECT + 8L * components * ((MultiVertexGeometry)geometry).getPointCount();
+		}
+		return SIZE_GEOMETRY_OBJECT;
+	}
+	
 	private static ByteBuffer getShapeByteBuffer(BytesWritable geomref){
 		byte [] geomBytes = geomref.getBytes();
-		int offset = SIZE_WKID + SIZE_TYPE;
+		int offset = SHAPE_OFFSET;
 		
-		return ByteBuffer.wrap(geomBytes, offset, geomBytes.length - offset).slice().order(ByteOrder.LITTLE_ENDIAN);
+		return ByteBuffer.wrap(geomBytes, offset, geomref.getLength() - offset).slice().order(ByteOrder.LITTLE_ENDIAN);
 	}
 	
 	private static BytesWritable serialize(MapGeometry mapGeometry){
@@ -277,18 +740,13 @@ public class GeometryUtils {
 			return null;
 		}
 		
-		byte[] shapeWithData = new byte[shape.length + SIZE_WKID + SIZE_TYPE];
-		
-		System.arraycopy(shape, 0, shapeWithData, SIZE_WKID + SIZE_TYPE, shape.length);
-		
-		BytesWritable hiveGeometryBytes = new BytesWritable(shapeWithData);
+		byte[] shapeWithData = new byte[shape.length + SHAPE_OFFSET];
 		
-		setWKID(hiveGeometryBytes, wkid);
-		setType(hiveGeometryBytes, type);
+		System.arraycopy(shape, 0, shapeWithData, SHAPE_OFFSET, shape.length);
 		
-		BytesWritable ret = new BytesWritable(shapeWithData);
+		writeHeader(shapeWithData, wkid, type);
 		
-		return ret;
+		return new BytesWritable(shapeWithData);
 	}
 	
 
@@ -1,16 +1,21 @@
 package com.esri.hadoop.hive;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.exec.MapredContext;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredObject;
+import org.apache.hadoop.hive.serde2.objectinspector.ConstantObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
 
+import com.esri.core.geometry.Envelope;
 import com.esri.core.geometry.ogc.OGCGeometry;
 import com.esri.core.geometry.ogc.OGCPoint;
 
@@ -18,11 +23,24 @@ public class HiveGeometryOIHelper {
 	
 	static Logger LOG = Logger.getLogger(HiveGeometryOIHelper.class);
 	
+	public static final String CONF_INTERN_ENTRIES = "esri.hive.geometry.intern.entries";
+	public static final String CONF_INTERN_BYTES = "esri.hive.geometry.intern.bytes";
+	public static final String CONF_INTERN_MIN_GEOMETRY_BYTES = "esri.hive.geometry.intern.min.geometry.bytes";
+	
+	// kept small - every geometry argument of every UDF instance has its own, on top of
+	// the shared geometry cache
+	public static final int DEFAULT_INTERN_ENTRIES = 256;
+	public static final long DEFAULT_INTERN_BYTES = 4L * 1024 * 1024;
+	
 	private PrimitiveObjectInspector oi;
 	private int argIndex;
 	private boolean isConstant;
 	
 	OGCGeometry constantGeometry;
+	private Envelope constantEnvelope;
+	
+	// geometries of this argument, interned by the content of their bytes
+	private GeometryCache internedGeometries;
 	
 	private HiveGeometryOIHelper(ObjectInspector oi, int argIndex) {
 		this.oi = (PrimitiveObjectInspector)oi;
@@ -31,6 +49,33 @@ public class HiveGeometryOIHelper {
 		// constant geometries only need to be processed once and can
 		// be optimized in certain operations
 		isConstant = ObjectInspectorUtils.isConstantObjectInspector(oi);
+		
+		if (!isConstant && this.oi.getPrimitiveCategory() == PrimitiveCategory.BINARY) {
+			internedGeometries = new GeometryCache(DEFAULT_INTERN_ENTRIES, DEFAULT_INTERN_BYTES,
+					GeometryCache.DEFAULT_MIN_GEOMETRY_BYTES);
+		}
+		
+		// MapredContext is only available when running in a task
+		MapredContext context = MapredContext.get();
+		if (context != null) {
+			configure(context.getJobConf());
+		}
+	}
+	
+	/**
+	 * Sets the bounds of the geometry cache and of the interned geometries
+	 * from the job configuration.
+	 * 
+	 * @param conf job configuration
+	 */
+	public void configure(Configuration conf) {
+		GeometryUtils.configureGeometryCache(conf);
+		
+		if (internedGeometries != null) {
+			internedGeometries.setLimits(conf.getInt(CONF_INTERN_ENTRIES, DEFAULT_INTERN_ENTRIES),
+					conf.getLong(CONF_INTERN_BYTES, DEFAULT_INTERN_BYTES),
+					conf.getInt(CONF_INTERN_MIN_GEOMETRY_BYTES, GeometryCache.DEFAULT_MIN_GEOMETRY_BYTES));
+		}
 	}
 	
 	public static HiveGeometryOIHelper create(ObjectInspector [] OIs, int argIndex) throws UDFArgumentException {
@@ -71,6 +116,53 @@ public class HiveGeometryOIHelper {
 		return constantGeometry;
 	}
 	
+	/**
+	 * Returns the envelope of the cached constant geometry, which is only
+	 * computed once.
+	 * 
+	 * @return envelope, or null if not constant or the constant geometry was not read yet
+	 */
+	public Envelope getConstantEnvelope() {
+		if (constantEnvelope == null && constantGeometry != null) {
+			constantEnvelope = new Envelope();
+			constantGeometry.getEsriGeometry().queryEnvelope(constantEnvelope);
+		}
+		
+		return constantEnvelope;
+	}
+	
+	/**
+	 * Reads the hive geometry bytes of a non-constant binary argument without
+	 * deserializing them, so that callers can look at the header (envelope, type, ...)
+	 * first.  Use {@link #getGeometry(BytesWritable)} to get the geometry.
+	 * 
+	 * @param args
+	 * @return geometry bytes, or null if the argument is constant, not binary, null or empty
+	 */
+	public BytesWritable getGeometryBytes(DeferredObject[] args) {
+		if (isConstant || oi.getPrimitiveCategory() != PrimitiveCategory.BINARY) {
+			return null;
+		}
+		
+		try {
+			BytesWritable geomref = (BytesWritable)oi.getPrimitiveWritableObject(args[argIndex].get());
+			return geomref == null || geomref.getLength() == 0 ? null : geomref;
+		} catch (HiveException e) {
+			LOG.error("Failed to get writable", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Gets the geometry of bytes read with {@link #getGeometryBytes(DeferredObject[])}.
+	 * 
+	 * @param geomref geometry bytes of this argument
+	 * @return geometry, or null if the bytes hold no geometry
+	 */
+	public OGCGeometry getGeometry(BytesWritable geomref) {
+		return getGeometryFromBytes(geomref);
+	}
+	
 	/**
 	 * Reads the corresponding geometry from the deferred object list
 	 * or returns the cached geometry if argument is constant. 
@@ -99,7 +191,7 @@ public class HiveGeometryOIHelper {
 	public OGCGeometry getGeometry(DeferredObject[] args) {
 		if (isConstant) {
 			if (constantGeometry == null) {
-				constantGeometry = getGeometry(args[argIndex]);
+				constantGeometry = getGeometry(((ConstantObjectInspector)oi).getWritableConstantValue());
 			} 
 			
 			return constantGeometry;
@@ -111,13 +203,16 @@ public class HiveGeometryOIHelper {
 	}
 	
 	private OGCGeometry getGeometry(DeferredObject arg) {
-		Object writable;
 		try {
-			writable = oi.getPrimitiveWritableObject(arg.get());
+			return getGeometry(arg.get());
 		} catch (HiveException e) {
 			LOG.error("Failed to get writable", e);
 			return null;
 		}
+	}
+	
+	private OGCGeometry getGeometry(Object value) {
+		Object writable = oi.getPrimitiveWritableObject(value);
 		
 		if (writable == null) {
 			return null;
@@ -130,23 +225,41 @@ public class HiveGeometryOIHelper {
 		}
 	}
 	
-	private BytesWritable last = null;
-	
-	// always assume bytes are reused until we determine they aren't
-	private boolean bytesReused = true; 
-	
+	/*
+	 * The same large geometries (e.g. county polygons in a dimension join) tend to
+	 * show up on many rows.  Interning returns the same geometry instance for the
+	 * same bytes - even when the writable is recycled - so each distinct geometry
+	 * is deserialized only once, and anything attached to the instance, such as
+	 * acceleration, carries over to the following rows.
+	 */
 	private OGCGeometry getGeometryFromBytes(BytesWritable writable) {
 		
-		if (bytesReused) {
-			if (last != null && last != writable) {
-				// this assumes that the source of these bytes will either always
-				// reuse the bytes or never reuse the bytes.  
-				bytesReused = false;
-			} 
-			last = writable;
+		if (writable.getLength() == 0) {
+			return null;
+		}
+		
+		if (internedGeometries == null || !internedGeometries.accepts(writable)) {
+			return GeometryUtils.geometryFromEsriShape(writable);
+		}
+		
+		OGCGeometry geometry = internedGeometries.get(writable);
+		
+		if (geometry == null) {
+			geometry = GeometryUtils.deserialize(writable);
+			
+			if (geometry != null) {
+				internedGeometries.put(writable, geometry);
+			}
 		}
 		
-		return GeometryUtils.geometryFromEsriShape((BytesWritable)writable, bytesReused);
+		return geometry;
+	}
+	
+	/**
+	 * @return interned geometries of this argument, or null if the argument is not interned
+	 */
+	GeometryCache getInternedGeometries() {
+		return internedGeometries;
 	}
 	
 	@Override
@@ -155,6 +268,9 @@ public class HiveGeometryOIHelper {
 		
 		builder.append("HiveGeometryHelper(");
 		builder.append("constant=" + isConstant + ";");
+		if (internedGeometries != null) {
+			builder.append("interned=" + internedGeometries + ";");
+		}
 		builder.append(")");
 		
 		return builder.toString();
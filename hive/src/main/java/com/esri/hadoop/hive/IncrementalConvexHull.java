@@ -0,0 +1,405 @@
+package com.esri.hadoop.hive;
+
+import org.apache.hadoop.io.BytesWritable;
+
+import com.esri.core.geometry.Envelope;
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.MultiVertexGeometry;
+import com.esri.core.geometry.Point;
+import com.esri.core.geometry.Point2D;
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.Polyline;
+
+/**
+ * Convex hull of many geometries, maintained incrementally.
+ *
+ * Only the vertices of the current hull are kept, with a buffer of candidate
+ * vertices.  When the buffer is full, the hull is rebuilt from its own vertices
+ * and the candidates, with the monotone chain algorithm.  Vertices are read
+ * straight from the Esri shape of the hive geometry bytes when possible.
+ *
+ * Vertices inside the quadrilateral of the extreme vertices (leftmost, lowest,
+ * rightmost and highest) of the hull can not be on the hull, and are rejected
+ * without being buffered.  A geometry whose envelope is inside that
+ * quadrilateral is rejected without reading its vertices.
+ *
+ * The hull is 2D, Z and M are ignored.
+ */
+public class IncrementalConvexHull {
+
+	// candidate vertices buffered before the hull is rebuilt
+	private static final int BUFFER_SIZE = 1024;
+
+	// Esri shape types whose x, y layout is read here - Z and M follow the x, y of all vertices
+	private static final int SHAPE_TYPE_MASK = 0xff;
+	private static final int SHAPE_NULL = 0;
+	private static final int SHAPE_POINT = 1;
+	private static final int SHAPE_POINT_ZM = 11;
+	private static final int SHAPE_POINT_M = 21;
+	private static final int SHAPE_POLYLINE = 3;
+	private static final int SHAPE_POLYLINE_ZM = 13;
+	private static final int SHAPE_POLYLINE_M = 23;
+	private static final int SHAPE_POLYGON = 5;
+	private static final int SHAPE_POLYGON_ZM = 15;
+	private static final int SHAPE_POLYGON_M = 25;
+	private static final int SHAPE_MULTIPOINT = 8;
+	private static final int SHAPE_MULTIPOINT_ZM = 18;
+	private static final int SHAPE_MULTIPOINT_M = 28;
+
+	private static final int SHAPE_POINTS_OFFSET = 40;  // type, bounding box and point count of a multipoint
+	private static final int SHAPE_PARTS_OFFSET = 44;  // type, bounding box, part and point counts of a multipath
+
+	// hull in counterclockwise order, followed by the candidates
+	private double [] xs = new double[2 * BUFFER_SIZE];
+	private double [] ys = new double[2 * BUFFER_SIZE];
+	private int hullCount = 0;
+	private int count = 0;
+
+	// extreme vertices of the hull, in counterclockwise order - valid if hasQuad
+	private final double [] quadX = new double[4];
+	private final double [] quadY = new double[4];
+	private boolean hasQuad = false;
+
+	private final Envelope envelope = new Envelope();
+	private final Point point = new Point();
+	private final Point2D xy = new Point2D();
+
+	/**
+	 * @return true if no vertex was added since the last clear
+	 */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public void clear() {
+		hullCount = 0;
+		count = 0;
+		hasQuad = false;
+	}
+
+	/**
+	 * @return estimated size in bytes of the vertices held
+	 */
+	public long estimateMemorySize() {
+		return 16L * xs.length;
+	}
+
+	/**
+	 * Adds a vertex to the hull
+	 *
+	 * @param x
+	 * @param y
+	 */
+	public void add(double x, double y) {
+		if (Double.isNaN(x) || Double.isNaN(y) || isInsideQuad(x, y)) {
+			return;
+		}
+
+		if (count == xs.length) {
+			rebuild();
+			if (count > xs.length - BUFFER_SIZE) {
+				// the hull takes most of the buffer
+				xs = copyOf(xs, 2 * xs.length);
+				ys = copyOf(ys, 2 * ys.length);
+			}
+		}
+
+		xs[count] = x;
+		ys[count] = y;
+		count++;
+	}
+
+	/**
+	 * Adds the vertices of a geometry to the hull
+	 *
+	 * @param geometry geometry
+	 */
+	public void add(Geometry geometry) {
+		if (geometry.isEmpty()) {
+			return;
+		}
+
+		if (geometry instanceof Point) {
+			Point pt = (Point)geometry;
+			add(pt.getX(), pt.getY());
+		} else if (geometry instanceof MultiVertexGeometry) {
+			geometry.queryEnvelope(envelope);
+			if (isInsideQuad(envelope)) {
+				return;
+			}
+
+			MultiVertexGeometry multiVertex = (MultiVertexGeometry)geometry;
+			for (int i = 0; i < multiVertex.getPointCount(); i++) {
+				multiVertex.getXY(i, xy);
+				add(xy.x, xy.y);
+			}
+		} else {
+			// envelopes and segments - the envelope of a curve contains its hull
+			geometry.queryEnvelope(envelope);
+			add(envelope.getXMin(), envelope.getYMin());
+			add(envelope.getXMax(), envelope.getYMin());
+			add(envelope.getXMax(), envelope.getYMax());
+			add(envelope.getXMin(), envelope.getYMax());
+		}
+	}
+
+	/**
+	 * Adds the vertices of the geometry in hive geometry bytes to the hull, reading
+	 * them from the Esri shape without creating the geometry.
+	 *
+	 * @param geomref hive geometry bytes
+	 * @return false if the geometry has to be created and added with {@link #add(Geometry)}
+	 */
+	public boolean add(BytesWritable geomref) {
+		if (!GeometryUtils.getEnvelope(geomref, envelope)) {
+			return true;  // no geometry
+		}
+		if (envelope.isEmpty() || isInsideQuad(envelope)) {
+			return true;
+		}
+
+		byte [] bytes = geomref.getBytes();
+		int length = geomref.getLength();
+		int shapeOffset = GeometryUtils.SHAPE_OFFSET;
+		int shapeType = GeometryUtils.readInt(bytes, shapeOffset) & SHAPE_TYPE_MASK;
+
+		int pointOffset;
+		int pointCount;
+		switch (shapeType) {
+		case SHAPE_NULL:
+			return true;
+		case SHAPE_POINT:
+		case SHAPE_POINT_ZM:
+		case SHAPE_POINT_M:
+			if (!GeometryUtils.readPoint(geomref, point)) {
+				return false;
+			}
+			add(point.getX(), point.getY());
+			return true;
+		case SHAPE_MULTIPOINT:
+		case SHAPE_MULTIPOINT_ZM:
+		case SHAPE_MULTIPOINT_M:
+			if (length < shapeOffset + SHAPE_POINTS_OFFSET) {
+				return false;
+			}
+			pointCount = GeometryUtils.readInt(bytes, shapeOffset + 36);
+			pointOffset = shapeOffset + SHAPE_POINTS_OFFSET;
+			break;
+		case SHAPE_POLYLINE:
+		case SHAPE_POLYLINE_ZM:
+		case SHAPE_POLYLINE_M:
+		case SHAPE_POLYGON:
+		case SHAPE_POLYGON_ZM:
+		case SHAPE_POLYGON_M:
+			if (length < shapeOffset + SHAPE_PARTS_OFFSET) {
+				return false;
+			}
+			int partCount = GeometryUtils.readInt(bytes, shapeOffset + 36);
+			if (partCount < 0 || partCount > (length - shapeOffset - SHAPE_PARTS_OFFSET) / 4) {
+				return false;
+			}
+			pointCount = GeometryUtils.readInt(bytes, shapeOffset + 40);
+			pointOffset = shapeOffset + SHAPE_PARTS_OFFSET + 4 * partCount;
+			break;
+		default:
+			return false;  // other Z types and the general shape types
+		}
+
+		if (pointCount < 0 || pointCount > (length - pointOffset) / 16) {
+			return false;
+		}
+
+		for (int i = 0; i < pointCount; i++) {
+			int offset = pointOffset + 16 * i;
+			add(GeometryUtils.readDouble(bytes, offset), GeometryUtils.readDouble(bytes, offset + 8));
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the hull of all vertices added: a point for a single vertex, a line for
+	 * collinear vertices, and a polygon otherwise.
+	 *
+	 * @return hull, or null if no vertex was added
+	 */
+	public Geometry getHull() {
+		if (count == 0) {
+			return null;
+		}
+
+		rebuild();
+
+		if (hullCount == 1) {
+			return new Point(xs[0], ys[0]);
+		} else if (hullCount == 2) {
+			Polyline line = new Polyline();
+			line.startPath(xs[0], ys[0]);
+			line.lineTo(xs[1], ys[1]);
+			return line;
+		}
+
+		// exterior rings are clockwise
+		Polygon polygon = new Polygon();
+		polygon.startPath(xs[0], ys[0]);
+		for (int i = hullCount - 1; i > 0; i--) {
+			polygon.lineTo(xs[i], ys[i]);
+		}
+		return polygon;
+	}
+
+	/*
+	 * Replaces the hull and the candidates with the hull of both
+	 */
+	private void rebuild() {
+		if (count == hullCount) {
+			return;
+		}
+
+		sort(0, count - 1);
+
+		// drop repeated vertices, so that a single vertex is not taken for a line
+		int distinct = 1;
+		for (int i = 1; i < count; i++) {
+			if (xs[i] != xs[distinct - 1] || ys[i] != ys[distinct - 1]) {
+				xs[distinct] = xs[i];
+				ys[distinct] = ys[i];
+				distinct++;
+			}
+		}
+		count = distinct;
+
+		// monotone chain - lower hull from left to right, then upper hull from right to left,
+		double [] hullX = new double[2 * count];
+		double [] hullY = new double[2 * count];
+		int k = 0;
+		for (int i = 0; i < count; i++) {
+			while (k >= 2 && cross(hullX[k - 2], hullY[k - 2], hullX[k - 1], hullY[k - 1], xs[i], ys[i]) <= 0) {
+				k--;
+			}
+			hullX[k] = xs[i];
+			hullY[k] = ys[i];
+			k++;
+		}
+		for (int i = count - 2, lower = k + 1; i >= 0; i--) {
+			while (k >= lower && cross(hullX[k - 2], hullY[k - 2], hullX[k - 1], hullY[k - 1], xs[i], ys[i]) <= 0) {
+				k--;
+			}
+			hullX[k] = xs[i];
+			hullY[k] = ys[i];
+			k++;
+		}
+
+		// the last vertex repeats the first one, unless there is a single vertex
+		hullCount = k > 1 ? k - 1 : k;
+		System.arraycopy(hullX, 0, xs, 0, hullCount);
+		System.arraycopy(hullY, 0, ys, 0, hullCount);
+		count = hullCount;
+
+		updateQuad();
+	}
+
+	private void updateQuad() {
+		hasQuad = false;
+		if (hullCount < 3) {
+			return;
+		}
+
+		int left = 0, bottom = 0, right = 0, top = 0;
+		for (int i = 1; i < hullCount; i++) {
+			if (xs[i] < xs[left]) left = i;
+			if (ys[i] < ys[bottom]) bottom = i;
+			if (xs[i] > xs[right]) right = i;
+			if (ys[i] > ys[top]) top = i;
+		}
+
+		// counterclockwise, like the hull
+		int [] quad = { left, bottom, right, top };
+		for (int i = 0; i < 4; i++) {
+			quadX[i] = xs[quad[i]];
+			quadY[i] = ys[quad[i]];
+		}
+
+		// a quadrilateral with no area rejects nothing
+		hasQuad = cross(quadX[0], quadY[0], quadX[1], quadY[1], quadX[2], quadY[2]) > 0 ||
+				cross(quadX[0], quadY[0], quadX[2], quadY[2], quadX[3], quadY[3]) > 0;
+	}
+
+	/*
+	 * Strictly inside, so that vertices on the hull are kept
+	 */
+	private boolean isInsideQuad(double x, double y) {
+		if (!hasQuad) {
+			return false;
+		}
+
+		for (int i = 0; i < 4; i++) {
+			int j = (i + 1) % 4;
+			if (cross(quadX[i], quadY[i], quadX[j], quadY[j], x, y) <= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isInsideQuad(Envelope env) {
+		return isInsideQuad(env.getXMin(), env.getYMin()) && isInsideQuad(env.getXMax(), env.getYMin()) &&
+				isInsideQuad(env.getXMax(), env.getYMax()) && isInsideQuad(env.getXMin(), env.getYMax());
+	}
+
+	/*
+	 * Positive if a, b, c turn counterclockwise
+	 */
+	private static double cross(double ax, double ay, double bx, double by, double cx, double cy) {
+		return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+	}
+
+	/*
+	 * Quicksort of the vertices by x then y, without objects
+	 */
+	private void sort(int lo, int hi) {
+		while (hi - lo > 16) {
+			int mid = (lo + hi) >>> 1;
+			double px = xs[mid], py = ys[mid];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (compare(xs[i], ys[i], px, py) < 0) i++;
+				while (compare(xs[j], ys[j], px, py) > 0) j--;
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			// recurse into the smaller half, loop on the larger one
+			if (j - lo < hi - i) {
+				sort(lo, j);
+				lo = i;
+			} else {
+				sort(i, hi);
+				hi = j;
+			}
+		}
+
+		for (int i = lo + 1; i <= hi; i++) {
+			for (int j = i; j > lo && compare(xs[j], ys[j], xs[j - 1], ys[j - 1]) < 0; j--) {
+				swap(j, j - 1);
+			}
+		}
+	}
+
+	private static int compare(double ax, double ay, double bx, double by) {
+		return ax < bx ? -1 : ax > bx ? 1 : ay < by ? -1 : ay > by ? 1 : 0;
+	}
+
+	private void swap(int i, int j) {
+		double x = xs[i], y = ys[i];
+		xs[i] = xs[j];
+		ys[i] = ys[j];
+		xs[j] = x;
+		ys[j] = y;
+	}
+
+	private static double [] copyOf(double [] values, int length) {
+		double [] copy = new double[length];
+		System.arraycopy(values, 0, copy, 0, values.length);
+		return copy;
+	}
+}
@@ -48,6 +48,9 @@ public class LogUtils {
 	public static void Log_SRIDMismatch(Log logger, BytesWritable geomref1, int wkid2){
 		logger.error(String.format(messages[MSG_SRID_MISMATCH], GeometryUtils.getWKID(geomref1), wkid2));
 	}
+	public static void Log_SRIDMismatch(Log logger, int wkid1, int wkid2){
+		logger.error(String.format(messages[MSG_SRID_MISMATCH], wkid1, wkid2));
+	}
 	
 	/**
 	 * Log when arguments passed to evaluate are null
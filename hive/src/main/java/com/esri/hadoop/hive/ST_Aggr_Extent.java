@@ -0,0 +1,99 @@
+package com.esri.hadoop.hive;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationType;
+import org.apache.hadoop.io.BytesWritable;
+
+import com.esri.core.geometry.Envelope;
+import com.esri.core.geometry.Geometry;
+
+@Description(
+	name = "ST_Aggr_Extent",
+	value = "_FUNC_(ST_Geometry) - aggregate envelope of all geometries passed",
+	extended = "Example:\n"
+		+ "  SELECT _FUNC_(geometry) FROM source; -- return envelope of all geometries in source"
+	)
+
+public class ST_Aggr_Extent extends ST_GeometryAggregate {
+
+	@Override
+	protected GeometryAggregateEvaluator createEvaluator() {
+		return new AggrExtentBinaryEvaluator();
+	}
+
+	public static class AggrExtentBinaryEvaluator extends GeometryAggregateEvaluator {
+
+		@Override
+		protected GeometryAggregationBuffer createBuffer() {
+			return new ExtentBuffer();
+		}
+	}
+
+	/*
+	 * Only the envelope is kept.  Envelopes of rows are read from the hive geometry
+	 * bytes, without creating the geometry, and partial aggregations are the four
+	 * coordinates of the envelope rather than a polygon shape.
+	 */
+	@AggregationType(estimable = true)
+	static class ExtentBuffer extends GeometryAggregationBuffer {
+
+		private static final int SIZE_ENVELOPE = 32;
+
+		private final Envelope extent = new Envelope();
+		private final Envelope rowEnvelope = new Envelope();
+
+		// reused for the partial aggregations, which are consumed before the next one
+		private final ByteBuffer partial = ByteBuffer.allocate(SIZE_ENVELOPE).order(ByteOrder.LITTLE_ENDIAN);
+
+		@Override
+		protected boolean add(BytesWritable geomref) {
+			if (GeometryUtils.getEnvelope(geomref, rowEnvelope)) {
+				extent.merge(rowEnvelope);
+			}
+			return true;
+		}
+
+		@Override
+		protected void add(Geometry geometry) {
+			geometry.queryEnvelope(rowEnvelope);
+			extent.merge(rowEnvelope);
+		}
+
+		@Override
+		protected Geometry getResult() {
+			return extent.isEmpty() ? null : extent.copy();
+		}
+
+		@Override
+		protected ByteBuffer getPartial() {
+			if (extent.isEmpty()) {
+				return null;
+			}
+
+			partial.clear();
+			partial.putDouble(extent.getXMin()).putDouble(extent.getYMin());
+			partial.putDouble(extent.getXMax()).putDouble(extent.getYMax());
+			partial.flip();
+			return partial;
+		}
+
+		@Override
+		protected void addPartial(ByteBuffer partial) {
+			rowEnvelope.setCoords(partial.getDouble(0), partial.getDouble(8), partial.getDouble(16), partial.getDouble(24));
+			extent.merge(rowEnvelope);
+		}
+
+		@Override
+		protected void clear() {
+			extent.setEmpty();
+		}
+
+		@Override
+		protected long estimateMemorySize() {
+			return SIZE_ENVELOPE;
+		}
+	}
+}
@@ -1,14 +1,12 @@
 package com.esri.hadoop.hive;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
-import org.apache.hadoop.hive.ql.exec.UDAF;
-import org.apache.hadoop.hive.ql.exec.UDAFEvaluator;
-import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationType;
 import org.apache.hadoop.io.BytesWritable;
 
-import com.esri.core.geometry.SpatialReference;
+import com.esri.core.geometry.Envelope;
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.Polygon;
 import com.esri.core.geometry.ogc.OGCGeometry;
 
 @Description(
@@ -18,79 +16,106 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 		+ "  SELECT _FUNC_(geometry) FROM source; -- return intersection of all geometries in source"
 	)
 
-public class ST_Aggr_Intersection extends UDAF {
-	static final Log LOG = LogFactory.getLog(ST_Aggr_Intersection.class.getName());
+public class ST_Aggr_Intersection extends ST_GeometryAggregate {
 
-	public static class AggrIntersectionBinaryEvaluator implements UDAFEvaluator {
+	@Override
+	protected GeometryAggregateEvaluator createEvaluator() {
+		return new AggrIntersectionBinaryEvaluator();
+	}
+
+	public static class AggrIntersectionBinaryEvaluator extends GeometryAggregateEvaluator {
 
-		private OGCGeometry isectGeom = null;
-		SpatialReference spatialRef = null;
-		int firstWKID = -2;
-		
-		/*
-		 * Initialize evaluator
-		 */
 		@Override
-		public void init() {  // no-op
+		protected GeometryAggregationBuffer createBuffer() {
+			return new IntersectionBuffer();
 		}
-		
-		/*
-		 * Iterate is called once per row in a table
-		 */
-		public boolean iterate(BytesWritable geomref) throws HiveException {
+	}
 
-			if (geomref == null) {
-				LogUtils.Log_ArgumentsNull(LOG);
-				return false;
+	/*
+	 * The envelope of the intersection so far is kept, so that rows with a disjoint
+	 * envelope, beyond the tolerance of the spatial reference, empty the intersection
+	 * without an exact intersection.  Once the
+	 * intersection is empty, the remaining rows of the group are skipped without
+	 * being read.
+	 */
+	@AggregationType(estimable = true)
+	static class IntersectionBuffer extends GeometryAggregationBuffer {
+		private OGCGeometry isectGeom = null;
+		private final Envelope isectEnvelope = new Envelope();
+		private final Envelope rowEnvelope = new Envelope();
+		private double tolerance;
+
+		@Override
+		protected boolean add(BytesWritable geomref) {
+			if (isectGeom == null) {
+				return false;  // the first row is the intersection so far
+			}
+			if (isectEnvelope.isEmpty()) {
+				return true;  // nothing intersects an empty intersection
 			}
 
-			if (firstWKID == -2) {
-				firstWKID = GeometryUtils.getWKID(geomref);
-				if (firstWKID != GeometryUtils.WKID_UNKNOWN) {
-					spatialRef = SpatialReference.create(firstWKID);
-				}
-			} else if (firstWKID != GeometryUtils.getWKID(geomref)) {
-				LogUtils.Log_SRIDMismatch(LOG, geomref, firstWKID);
+			if (!GeometryUtils.getEnvelope(geomref, rowEnvelope)) {
 				return false;
 			}
-
-			try {
-				OGCGeometry rowGeom = GeometryUtils.geometryFromEsriShape(geomref);
-				rowGeom.setSpatialReference(spatialRef);
-				if (isectGeom == null)
-					isectGeom = rowGeom;
-				else
-					isectGeom = isectGeom.intersection(rowGeom);
+			if (isDisjoint()) {
+				setEmpty();
 				return true;
-			} catch (Exception e) {
-				LogUtils.Log_InternalError(LOG, "ST_Aggr_Intersection: " + e);
-				return false;
+			}
+			return false;
+		}
+
+		@Override
+		protected void add(Geometry geometry) {
+			if (isectGeom == null) {
+				tolerance = GeometryUtils.getTolerance(wkid);
+				setIntersection(OGCGeometry.createFromEsriGeometry(geometry, spatialRef));
+				return;
+			}
+			if (isectEnvelope.isEmpty()) {
+				return;
 			}
 
+			geometry.queryEnvelope(rowEnvelope);
+			if (isDisjoint()) {
+				setEmpty();
+			} else {
+				setIntersection(isectGeom.intersection(OGCGeometry.createFromEsriGeometry(geometry, spatialRef)));
+			}
 		}
 
 		/*
-		 * Merge the current state of this evaluator with the result of another evaluator's terminatePartial()
+		 * The exact intersection merges geometries within the tolerance of each other
 		 */
-		public boolean merge(BytesWritable other) throws HiveException {
-			// for our purposes, merge is the same as iterate
-			return iterate(other);
+		private boolean isDisjoint() {
+			return rowEnvelope.isEmpty() || !ST_GeometryRelational.envelopesIntersect(rowEnvelope, isectEnvelope,
+					GeometryUtils.getEnvelopeTolerance(tolerance, rowEnvelope, isectEnvelope));
+		}
+
+		private void setIntersection(OGCGeometry geometry) {
+			isectGeom = geometry;
+			isectGeom.getEsriGeometry().queryEnvelope(isectEnvelope);
 		}
 
 		/*
-		 * Return a geometry that is the intersection of all geometries added up until this point
+		 * Same as the exact intersection of disjoint geometries, an empty polygon
 		 */
-		public BytesWritable terminatePartial() throws HiveException {
-			if (isectGeom == null) {
-				return null;
-			} else {
-				return GeometryUtils.geometryToEsriShapeBytesWritable(isectGeom);
-			}
+		private void setEmpty() {
+			setIntersection(OGCGeometry.createFromEsriGeometry(new Polygon(), spatialRef));
 		}
-		public BytesWritable terminate() throws HiveException{
-			// for our purposes, terminate is the same as terminatePartial
-			return terminatePartial();
+
+		@Override
+		protected Geometry getResult() {
+			return isectGeom == null ? null : isectGeom.getEsriGeometry();
 		}
 
+		@Override
+		protected void clear() {
+			isectGeom = null;
+		}
+
+		@Override
+		protected long estimateMemorySize() {
+			return isectGeom == null ? 0 : GeometryUtils.estimateMemorySize(isectGeom.getEsriGeometry());
+		}
 	}
 }
@@ -27,6 +27,8 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 public class ST_AsBinary extends ST_Geometry {
 	
 	static final Log LOG = LogFactory.getLog(ST_AsBinary.class.getName());
+
+	private final BytesWritable resultWKB = new BytesWritable();  // reused from row to row
 	
 	public BytesWritable evaluate(BytesWritable geomref) {
 		if (geomref == null || geomref.getLength() == 0){
@@ -34,6 +36,11 @@ public class ST_AsBinary extends ST_Geometry {
 			return null;
 		}
 
+		// simple 2D geometries are transcoded straight from the shape bytes
+		if (WKBUtils.exportToWKB(geomref, resultWKB)) {
+			return resultWKB;
+		}
+
 		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomref);
 		if (ogcGeometry == null){
 			LogUtils.Log_ArgumentsNull(LOG);
@@ -42,8 +49,8 @@ public class ST_AsBinary extends ST_Geometry {
 
 		try {
 			ByteBuffer byteBuf = ogcGeometry.asBinary();
-			byte [] byteArr = byteBuf.array();
-			return new BytesWritable(byteArr);
+			resultWKB.set(byteBuf.array(), 0, byteBuf.limit());
+			return resultWKB;
 		} catch (Exception e){
 			LOG.error(e.getMessage());
 			return null;
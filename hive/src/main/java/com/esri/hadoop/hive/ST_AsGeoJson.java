@@ -4,7 +4,11 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.Text;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
 
 
 import com.esri.core.geometry.ogc.OGCGeometry;
@@ -39,6 +43,12 @@ public class ST_AsGeoJson extends ST_Geometry {
 	final Text resultText = new Text();
 	static final Log LOG = LogFactory.getLog(ST_AsGeoJson.class.getName());
 
+	static final JsonFactory jsonFactory = new JsonFactory();
+
+	// reused from row to row
+	private final GeoJsonUtils geoJsonUtils = new GeoJsonUtils();
+	private final DataOutputBuffer outputBuffer = new DataOutputBuffer();
+
 	public Text evaluate(BytesWritable geomref) {
 		if (geomref == null || geomref.getLength() == 0) {
 			LogUtils.Log_ArgumentsNull(LOG);
@@ -52,8 +62,12 @@ public class ST_AsGeoJson extends ST_Geometry {
 		}
 
 		try {
-			String outJson = ogcGeometry.asGeoJson();
-			resultText.set(outJson);
+			// streamed as UTF-8 into the reused buffer
+			outputBuffer.reset();
+			JsonGenerator generator = jsonFactory.createJsonGenerator(outputBuffer, JsonEncoding.UTF8);
+			geoJsonUtils.write(ogcGeometry, generator);
+			generator.close();
+			resultText.set(outputBuffer.getData(), 0, outputBuffer.getLength());
 			return resultText;
 		} catch (Exception e) {
 			LogUtils.Log_InternalError(LOG, "ST_AsGeoJSON: " + e);
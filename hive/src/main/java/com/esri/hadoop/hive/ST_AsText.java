@@ -42,6 +42,10 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 public class ST_AsText extends ST_Geometry {
 	
 	static final Log LOG = LogFactory.getLog(ST_AsText.class.getName());
+
+	// reused from row to row
+	private final WKTUtils wktUtils = new WKTUtils();
+	private final Text resultText = new Text();
 	
 	public Text evaluate(BytesWritable geomref){
 		if (geomref == null || geomref.getLength() == 0){
@@ -49,6 +53,11 @@ public class ST_AsText extends ST_Geometry {
 			return null;
 		}
 
+		// simple 2D geometries are written straight from the shape bytes
+		if (wktUtils.exportToWKT(geomref, resultText)) {
+			return resultText;
+		}
+
 		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomref);
 		if (ogcGeometry == null){
 			LogUtils.Log_ArgumentsNull(LOG);
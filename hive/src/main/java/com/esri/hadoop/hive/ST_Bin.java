@@ -13,7 +13,10 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
 
+import com.esri.core.geometry.Point;
 import com.esri.core.geometry.ogc.OGCPoint;
 
 @Description(
@@ -26,6 +29,10 @@ public class ST_Bin extends GenericUDF {
 	private transient PrimitiveObjectInspector oiBinSize;
 	private transient BinUtils bins;
 	
+	// reused from row to row, so that binning a point allocates nothing
+	private transient Point point;
+	private transient LongWritable binId;
+	
 	@Override
 	public ObjectInspector initialize(ObjectInspector[] OIs)
 			throws UDFArgumentException {
@@ -45,25 +52,44 @@ public class ST_Bin extends GenericUDF {
 		
 		geomHelper = HiveGeometryOIHelper.create(OIs[1], 1);
 		binSizeIsConstant = ObjectInspectorUtils.isConstantObjectInspector(OIs[0]);
+		bins = null;
+		
+		point = new Point();
+		binId = new LongWritable();
 
-		return PrimitiveObjectInspectorFactory.javaLongObjectInspector;
+		return PrimitiveObjectInspectorFactory.writableLongObjectInspector;
 	}
 	
 	@Override
 	public Object evaluate(DeferredObject[] args) throws HiveException {
-		double binSize = PrimitiveObjectInspectorUtils.getDouble(args[0].get(), oiBinSize);
-		
 		if (!binSizeIsConstant || bins == null) {
-			bins = new BinUtils(binSize);
-		} 
+			double binSize = PrimitiveObjectInspectorUtils.getDouble(args[0].get(), oiBinSize);
+			
+			if (bins == null || bins.binSize != binSize) {
+				bins = new BinUtils(binSize);
+			}
+		}
+		
+		// points are read straight from their bytes
+		BytesWritable geomref = geomHelper.getGeometryBytes(args);
+		
+		if (geomref != null) {
+			if (!GeometryUtils.readPoint(geomref, point)) {
+				return null;
+			}
+			
+			binId.set(bins.getId(point.getX(), point.getY()));
+			return binId;
+		}
 		
-		OGCPoint point = geomHelper.getPoint(args);
+		OGCPoint ogcPoint = geomHelper.getPoint(args);
 		
-		if (point == null) {
+		if (ogcPoint == null) {
 			return null;
 		}
 		
-		return bins.getId(point.X(), point.Y());
+		binId.set(bins.getId(ogcPoint.X(), ogcPoint.Y()));
+		return binId;
 	}
 
 	@Override
@@ -3,7 +3,16 @@ package com.esri.hadoop.hive;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
-import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
 import org.apache.hadoop.io.BytesWritable;
 
 import com.esri.core.geometry.ogc.OGCGeometry;
@@ -14,24 +23,65 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 	extended = "Example:\n"
 	+ "  SELECT _FUNC_(ST_Point(0, 0), 1) FROM src LIMIT 1;   -- polygon approximating a unit circle\n"
 	)
-public class ST_Buffer extends ST_GeometryProcessing {
+public class ST_Buffer extends GenericUDF {
 
 	static final Log LOG = LogFactory.getLog(ST_Buffer.class.getName());
 
-	public BytesWritable evaluate(BytesWritable geometryref1, DoubleWritable distance)
-	{
-		if (geometryref1 == null || geometryref1.getLength() == 0 || distance == null) {
-			return null;
+	private transient HiveGeometryOIHelper geomHelper;
+	private transient PrimitiveObjectInspector distanceOI;
+
+	// both arguments are constant, so the buffer is only computed once
+	private transient boolean isConstant;
+	private transient BytesWritable constantBuffer;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] OIs)
+			throws UDFArgumentException {
+
+		if (OIs.length != 2) {
+			throw new UDFArgumentLengthException("Function takes exactly 2 arguments");
 		}
 
-		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geometryref1);
-		if (ogcGeometry == null){
+		if (OIs[1].getCategory() != Category.PRIMITIVE) {
+			throw new UDFArgumentTypeException(1, "Argument 1 must be a number");
+		}
+
+		geomHelper = HiveGeometryOIHelper.create(OIs, 0);
+		distanceOI = (PrimitiveObjectInspector)OIs[1];
+
+		isConstant = geomHelper.isConstant() && ObjectInspectorUtils.isConstantObjectInspector(OIs[1]);
+		constantBuffer = null;
+
+		return GeometryUtils.geometryTransportObjectInspector;
+	}
+
+	@Override
+	public Object evaluate(DeferredObject[] args) throws HiveException {
+		if (isConstant && constantBuffer != null) {
+			return constantBuffer;
+		}
+
+		OGCGeometry ogcGeometry = geomHelper.getGeometry(args);
+		Object distance = args[1].get();
+		if (ogcGeometry == null || distance == null) {
 			LogUtils.Log_ArgumentsNull(LOG);
 			return null;
 		}
 
-		OGCGeometry bufferedGeometry = ogcGeometry.buffer(distance.get());
+		OGCGeometry bufferedGeometry = ogcGeometry.buffer(PrimitiveObjectInspectorUtils.getDouble(distance, distanceOI));
 		// TODO persist type information (polygon vs multipolygon)
-		return GeometryUtils.geometryToEsriShapeBytesWritable(bufferedGeometry);
+		BytesWritable result = GeometryUtils.geometryToEsriShapeBytesWritable(bufferedGeometry);
+
+		if (isConstant) {
+			constantBuffer = result;
+		}
+
+		return result;
+	}
+
+	@Override
+	public String getDisplayString(String[] args) {
+		assert(args.length == 2);
+		return String.format("st_buffer(%s, %s)", args[0], args[1]);
 	}
 }
@@ -3,8 +3,10 @@ package com.esri.hadoop.hive;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.udf.UDFType;
 
+import com.esri.core.geometry.Envelope;
 import com.esri.core.geometry.OperatorContains;
 import com.esri.core.geometry.OperatorSimpleRelation;
+import com.esri.core.geometry.OperatorWithin;
 
 @UDFType(deterministic = true)
 @Description(
@@ -21,6 +23,17 @@ public class ST_Contains extends ST_GeometryRelational {
 		return OperatorContains.local();
 	}
 	
+	@Override
+	protected OperatorSimpleRelation getInverseRelationOperator() {
+		return OperatorWithin.local();
+	}
+
+	@Override
+	protected Boolean relateEnvelopes(Envelope envelope1, Envelope envelope2, double tolerance) {
+		// geometry 1 can only contain geometry 2 if its envelope does
+		return envelopeContains(envelope1, envelope2, tolerance) ? null : Boolean.FALSE;
+	}
+
 	@Override
 	public String getDisplayString(String[] args) {
 		return String.format("returns true if %s contains %s", args[0], args[1]);
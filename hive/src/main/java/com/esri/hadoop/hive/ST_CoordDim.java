@@ -6,9 +6,6 @@ import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.IntWritable;
 
-
-import com.esri.core.geometry.ogc.OGCGeometry;
-
 @Description(
 	name = "ST_CoordDim",
 	value = "_FUNC_(geometry) - return count of coordinate components",
@@ -48,12 +45,12 @@ public class ST_CoordDim extends ST_GeometryAccessor {
 			return null;
 		}
 
-		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomref);
-		if (ogcGeometry == null){
+		if (GeometryUtils.isNullShape(geomref)){
 			return null;
 		}
 
-		resultInt.set(ogcGeometry.coordinateDimension());
+		// shape type tells whether Z and M are stored - no need to deserialize
+		resultInt.set(2 + (GeometryUtils.hasZ(geomref) ? 1 : 0) + (GeometryUtils.hasM(geomref) ? 1 : 0));
 		return resultInt;
 	}
 
@@ -3,7 +3,7 @@ package com.esri.hadoop.hive;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
-import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 
 
 import com.esri.core.geometry.ogc.OGCGeometry;
@@ -29,36 +29,31 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 //						)
 //			}
 //		)
-public class ST_Difference extends ST_GeometryProcessing {
-
+public class ST_Difference extends ST_GeometryPair {
 	static final Log LOG = LogFactory.getLog(ST_Difference.class.getName());
 
-	public BytesWritable evaluate(BytesWritable geometryref1, BytesWritable geometryref2)
-	{
-		if (geometryref1 == null || geometryref2 == null ||
-		    geometryref1.getLength() == 0 || geometryref2.getLength() == 0) {
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
-		}
-		
-		if (!GeometryUtils.compareSpatialReferences(geometryref1, geometryref2)) {
-			LogUtils.Log_SRIDMismatch(LOG, geometryref1, geometryref2);
-			return null;
-		}
+	@Override
+	protected ObjectInspector initializeResult(ObjectInspector[] OIs) {
+		return GeometryUtils.geometryTransportObjectInspector;
+	}
 
-		OGCGeometry ogcGeom1 = GeometryUtils.geometryFromEsriShape(geometryref1);
-		OGCGeometry ogcGeom2 = GeometryUtils.geometryFromEsriShape(geometryref2);
-		if (ogcGeom1 == null || ogcGeom2 == null){
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
-		}
-		
-		OGCGeometry diffGeometry = ogcGeom1.difference(ogcGeom2);
-		
+	@Override
+	protected Object evaluate(OGCGeometry ogcGeom1, OGCGeometry ogcGeom2, DeferredObject[] args) {
 		// we have to infer the type of the differenced geometry because we don't know
 		// if it's going to end up as a single or multi-part geometry
 		// OGCType inferredType = GeometryUtils.getInferredOGCType(diffGeometry.getEsriGeometry());
 
-		return GeometryUtils.geometryToEsriShapeBytesWritable(diffGeometry);
+		try {
+			OGCGeometry diffGeometry = ogcGeom1.difference(ogcGeom2);
+			return GeometryUtils.geometryToEsriShapeBytesWritable(diffGeometry);
+		} catch (Exception e) {
+		    LogUtils.Log_InternalError(LOG, "ST_Difference: " + e);
+		    return null;
+		}
+	}
+
+	@Override
+	protected Log getLog() {
+		return LOG;
 	}
 }
@@ -2,6 +2,7 @@ package com.esri.hadoop.hive;
 
 import org.apache.hadoop.hive.ql.exec.Description;
 
+import com.esri.core.geometry.Envelope;
 import com.esri.core.geometry.OperatorDisjoint;
 import com.esri.core.geometry.OperatorSimpleRelation;
 
@@ -20,6 +21,18 @@ public class ST_Disjoint extends ST_GeometryRelational {
 		return OperatorDisjoint.local();
 	}
 
+	@Override
+	protected OperatorSimpleRelation getInverseRelationOperator() {
+		// the relation is symmetric
+		return OperatorDisjoint.local();
+	}
+
+	@Override
+	protected Boolean relateEnvelopes(Envelope envelope1, Envelope envelope2, double tolerance) {
+		// disjoint envelopes mean disjoint geometries
+		return envelopesIntersect(envelope1, envelope2, tolerance) ? null : Boolean.TRUE;
+	}
+
 	@Override
 	public String getDisplayString(String[] args) {
 		return String.format("returns true if %s and %s are disjoint", args[0], args[1]);
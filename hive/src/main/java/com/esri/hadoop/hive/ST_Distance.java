@@ -3,12 +3,16 @@ package com.esri.hadoop.hive;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
-import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
 // DoubleWritable - must use hive-serde2; the other one produces struct {value:d.d}
 import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BytesWritable;
 
-
+import com.esri.core.geometry.Point;
 import com.esri.core.geometry.ogc.OGCGeometry;
+import com.esri.core.geometry.ogc.OGCPoint;
 
 @Description(name = "ST_Distance",
    value = "_FUNC_(ST_Geometry1, ST_Geometry2) - returns the distance between 2 ST_Geometry objects",
@@ -32,28 +36,52 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 //	}
 //)
 
-public class ST_Distance extends ST_GeometryAccessor {
+public class ST_Distance extends ST_GeometryPair {
 	final DoubleWritable resultDouble = new DoubleWritable();
 	static final Log LOG = LogFactory.getLog(ST_Distance.class.getName());
 
-    public DoubleWritable evaluate(BytesWritable geometryref1, BytesWritable geometryref2) {
-		if (geometryref1 == null || geometryref2 == null ||
-		    geometryref1.getLength() == 0 || geometryref2.getLength() == 0) {
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
-		}
-		if (!GeometryUtils.compareSpatialReferences(geometryref1, geometryref2)) {
-			LogUtils.Log_SRIDMismatch(LOG, geometryref1, geometryref2);
-			return null;
+	// exactly one of the geometries is constant - the other one is read into a reused
+	// point when it is a point, so the distance is computed without deserializing
+	private transient HiveGeometryOIHelper constantHelper;
+	private transient HiveGeometryOIHelper pointHelper;
+	private transient Point point;
+
+	@Override
+	protected ObjectInspector initializeResult(ObjectInspector[] OIs) {
+		constantHelper = null;
+		pointHelper = null;
+
+		if (geomHelper1.isConstant() != geomHelper2.isConstant()) {
+			constantHelper = geomHelper1.isConstant() ? geomHelper1 : geomHelper2;
+			pointHelper = geomHelper1.isConstant() ? geomHelper2 : geomHelper1;
+			point = new Point();
 		}
 
-		OGCGeometry ogcGeom1 = GeometryUtils.geometryFromEsriShape(geometryref1);
-		OGCGeometry ogcGeom2 = GeometryUtils.geometryFromEsriShape(geometryref2);
-		if (ogcGeom1 == null || ogcGeom2 == null){
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
+		return PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
+	}
+
+	@Override
+	public Object evaluate(DeferredObject[] args) throws HiveException {
+		if (constantHelper != null) {
+			OGCGeometry constant = constantHelper.getGeometry(args);
+			BytesWritable geomref = pointHelper.getGeometryBytes(args);
+
+			if (constant instanceof OGCPoint && !constant.isEmpty() && geomref != null &&
+					GeometryUtils.getWKID(geomref) == GeometryUtils.getWKID(constant) &&
+					GeometryUtils.readPoint(geomref, point)) {
+				Point constantPoint = (Point)constant.getEsriGeometry();
+				double dx = point.getX() - constantPoint.getX();
+				double dy = point.getY() - constantPoint.getY();
+				resultDouble.set(Math.sqrt(dx * dx + dy * dy));
+				return resultDouble;
+			}
 		}
 
+		return super.evaluate(args);
+	}
+
+	@Override
+	protected Object evaluate(OGCGeometry ogcGeom1, OGCGeometry ogcGeom2, DeferredObject[] args) {
 		try {
 		    resultDouble.set(ogcGeom1.distance(ogcGeom2));
 		    return resultDouble;
@@ -61,6 +89,10 @@ public class ST_Distance extends ST_GeometryAccessor {
 		    LogUtils.Log_InternalError(LOG, "ST_Distance: " + e);
 		    return null;
 		}
+	}
 
+	@Override
+	protected Log getLog() {
+		return LOG;
 	}
 }
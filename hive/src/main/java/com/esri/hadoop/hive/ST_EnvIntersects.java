@@ -3,13 +3,17 @@ package com.esri.hadoop.hive;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.BytesWritable;
 
 
 import com.esri.core.geometry.Envelope;
-import com.esri.core.geometry.Geometry;
-
 import com.esri.core.geometry.ogc.OGCGeometry;
 
 @Description(
@@ -36,38 +40,83 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 //	}
 //)
 
-public class ST_EnvIntersects extends ST_Geometry {
+public class ST_EnvIntersects extends GenericUDF {
 
 	final BooleanWritable resultBoolean = new BooleanWritable();
+	final Envelope env1 = new Envelope(), env2 = new Envelope();
 	static final Log LOG = LogFactory.getLog(ST_EnvIntersects.class.getName());
 
-	public BooleanWritable evaluate(BytesWritable geometryref1, BytesWritable geometryref2)
-	{
-		if (geometryref1 == null || geometryref2 == null ||
-		    geometryref1.getLength() == 0 || geometryref2.getLength() == 0) {
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
-		}
-		if (!GeometryUtils.compareSpatialReferences(geometryref1, geometryref2)) {
-			LogUtils.Log_SRIDMismatch(LOG, geometryref1, geometryref2);
-			return null;
+	private transient HiveGeometryOIHelper geomHelper1;
+	private transient HiveGeometryOIHelper geomHelper2;
+
+	// spatial reference of the geometry of the last envelope read
+	private transient int lastWKID;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] OIs)
+			throws UDFArgumentException {
+
+		if (OIs.length != 2) {
+			throw new UDFArgumentLengthException("Function takes exactly 2 arguments");
 		}
 
-		OGCGeometry ogcGeom1 = GeometryUtils.geometryFromEsriShape(geometryref1);
-		OGCGeometry ogcGeom2 = GeometryUtils.geometryFromEsriShape(geometryref2);
-		if (ogcGeom1 == null || ogcGeom2 == null){
+		geomHelper1 = HiveGeometryOIHelper.create(OIs, 0);
+		geomHelper2 = HiveGeometryOIHelper.create(OIs, 1);
+
+		return PrimitiveObjectInspectorFactory.writableBooleanObjectInspector;
+	}
+
+	@Override
+	public Object evaluate(DeferredObject[] args) throws HiveException {
+		// envelopes are read from the bytes, without deserializing the geometries
+		Envelope envelope1 = getEnvelope(geomHelper1, args, env1);
+		int wkid1 = lastWKID;
+		Envelope envelope2 = getEnvelope(geomHelper2, args, env2);
+		int wkid2 = lastWKID;
+
+		if (envelope1 == null || envelope2 == null) {
 			LogUtils.Log_ArgumentsNull(LOG);
 			return null;
 		}
 
-		Geometry geometry1 = ogcGeom1.getEsriGeometry();
-		Geometry geometry2 = ogcGeom2.getEsriGeometry();
-		Envelope env1 = new Envelope(), env2 = new Envelope();
-		geometry1.queryEnvelope(env1);
-		geometry2.queryEnvelope(env2);
+		if (wkid1 != wkid2) {
+			LogUtils.Log_SRIDMismatch(LOG, wkid1, wkid2);
+			return null;
+		}
 
-		resultBoolean.set(env1.isIntersecting(env2));
+		resultBoolean.set(envelope1.isIntersecting(envelope2));
 		return resultBoolean;
 	}
 
+	private Envelope getEnvelope(HiveGeometryOIHelper geomHelper, DeferredObject[] args, Envelope envelope) {
+		BytesWritable geomref = geomHelper.getGeometryBytes(args);
+
+		if (geomref == null) {
+			// constant, or not binary
+			OGCGeometry geometry = geomHelper.getGeometry(args);
+			if (geometry == null) {
+				return null;
+			}
+
+			if (geomHelper.isConstant()) {
+				envelope = geomHelper.getConstantEnvelope();
+			} else {
+				geometry.getEsriGeometry().queryEnvelope(envelope);
+			}
+			lastWKID = GeometryUtils.getWKID(geometry);
+		} else {
+			if (geomref.getLength() == 0 || !GeometryUtils.getEnvelope(geomref, envelope)) {
+				return null;
+			}
+			lastWKID = GeometryUtils.getWKID(geomref);
+		}
+
+		return envelope;
+	}
+
+	@Override
+	public String getDisplayString(String[] args) {
+		assert(args.length == 2);
+		return String.format("st_envintersects(%s, %s)", args[0], args[1]);
+	}
 }
@@ -47,8 +47,8 @@ public class ST_Envelope extends ST_GeometryProcessing {
 			return null;
 		}
 
-		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geometryref);
-		if (ogcGeometry == null){
+		Envelope envBound = new Envelope();
+		if (!GeometryUtils.getEnvelope(geometryref, envBound)){
 			LogUtils.Log_ArgumentsNull(LOG);
 			return null;
 		}
@@ -58,8 +58,6 @@ public class ST_Envelope extends ST_GeometryProcessing {
 		if (wkid != GeometryUtils.WKID_UNKNOWN) {
 			spatialReference = SpatialReference.create(wkid);
 		}
-		Envelope envBound = new Envelope();
-		ogcGeometry.getEsriGeometry().queryEnvelope(envBound);
 		return GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.createFromEsriGeometry(envBound,
 																  spatialReference));
 	}
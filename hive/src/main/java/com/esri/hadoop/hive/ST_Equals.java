@@ -2,6 +2,7 @@ package com.esri.hadoop.hive;
 
 import org.apache.hadoop.hive.ql.exec.Description;
 
+import com.esri.core.geometry.Envelope;
 import com.esri.core.geometry.OperatorEquals;
 import com.esri.core.geometry.OperatorSimpleRelation;
 
@@ -19,6 +20,19 @@ public class ST_Equals extends ST_GeometryRelational {
 		return OperatorEquals.local();
 	}
 
+	@Override
+	protected OperatorSimpleRelation getInverseRelationOperator() {
+		// the relation is symmetric
+		return OperatorEquals.local();
+	}
+
+	@Override
+	protected Boolean relateEnvelopes(Envelope envelope1, Envelope envelope2, double tolerance) {
+		// equal geometries have equal envelopes
+		return envelopeContains(envelope1, envelope2, tolerance) && envelopeContains(envelope2, envelope1, tolerance) ?
+				null : Boolean.FALSE;
+	}
+
 	@Override
 	public String getDisplayString(String[] args) {
 		return String.format("returns true if %s equals %s", args[0], args[1]);
@@ -12,6 +12,8 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
 
 import com.esri.core.geometry.ogc.OGCGeometry;
 
@@ -27,7 +29,12 @@ public class ST_GeomFromGeoJson extends GenericUDF {
 
 	static final Log LOG = LogFactory.getLog(ST_GeomFromGeoJson.class.getName());
 
+	static final JsonFactory jsonFactory = new JsonFactory();
+
 	ObjectInspector jsonOI;
+
+	// reused from row to row
+	private final GeoJsonUtils geoJsonUtils = new GeoJsonUtils();
 	
 	@Override
 	public Object evaluate(DeferredObject[] arguments) throws HiveException {
@@ -45,7 +52,10 @@ public class ST_GeomFromGeoJson extends GenericUDF {
 		}
 
 		try {
-			OGCGeometry ogcGeom = OGCGeometry.fromGeoJson(json);
+			JsonParser parser = jsonFactory.createJsonParser(json);
+			parser.nextToken();
+			OGCGeometry ogcGeom = geoJsonUtils.read(parser);
+			parser.close();
 		    return GeometryUtils.geometryToEsriShapeBytesWritable(ogcGeom);
 		} catch (Exception e) {
 			LogUtils.Log_InvalidText(LOG, json);
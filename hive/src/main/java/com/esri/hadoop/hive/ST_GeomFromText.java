@@ -51,23 +51,31 @@ public class ST_GeomFromText extends ST_Geometry {
 
 	static final Log LOG = LogFactory.getLog(ST_GeomFromText.class.getName());
 
+	// reused from row to row
+	private final WKTUtils wktUtils = new WKTUtils();
+	private final BytesWritable resultGeometry = new BytesWritable();
+
 	public BytesWritable evaluate(Text wkt) throws UDFArgumentException {
 		return evaluate(wkt, 0);
 	}
 
 	public BytesWritable evaluate(Text wkwrap, int wkid) throws UDFArgumentException {
 
-		String wkt = wkwrap.toString();
 		try {
 			SpatialReference spatialReference = null;
 			if (wkid != GeometryUtils.WKID_UNKNOWN) {
 				spatialReference = SpatialReference.create(wkid);
 			}
-			OGCGeometry ogcObj = OGCGeometry.fromText(wkt);
+			// simple geometries are read from the text bytes without creating the geometry
+			if (wktUtils.importFromWKT(wkwrap, wkid, resultGeometry)) {
+				return resultGeometry;
+			}
+
+			OGCGeometry ogcObj = OGCGeometry.fromText(wkwrap.toString());
 			ogcObj.setSpatialReference(spatialReference);
 			return GeometryUtils.geometryToEsriShapeBytesWritable(ogcObj);
 		} catch (Exception e) {  // IllegalArgumentException, GeometryException
-			LogUtils.Log_InvalidText(LOG, wkt);
+			LogUtils.Log_InvalidText(LOG, wkwrap.toString());
 			return null;
 		}
 	}
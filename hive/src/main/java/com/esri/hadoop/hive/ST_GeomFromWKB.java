@@ -1,6 +1,5 @@
 package com.esri.hadoop.hive;
 
-import java.nio.ByteBuffer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -55,6 +54,9 @@ public class ST_GeomFromWKB extends ST_Geometry {
 
 	static final Log LOG = LogFactory.getLog(ST_GeomFromWKB.class.getName());
 
+	// reused from row to row
+	private final BytesWritable resultGeometry = new BytesWritable();
+
 	public BytesWritable evaluate(BytesWritable wkb) throws UDFArgumentException {
 		return evaluate(wkb, 0);
 	}
@@ -66,10 +68,12 @@ public class ST_GeomFromWKB extends ST_Geometry {
 			if (wkid != GeometryUtils.WKID_UNKNOWN) {
 				spatialReference = SpatialReference.create(wkid);
 			}
-			byte [] byteArr = wkb.getBytes();
-            ByteBuffer byteBuf = ByteBuffer.allocate(byteArr.length);
-			byteBuf.put(byteArr);
-			OGCGeometry ogcObj = OGCGeometry.fromBinary(byteBuf);
+			// simple geometries are transcoded without creating the geometry
+			if (WKBUtils.transcode(wkb, wkid, resultGeometry)) {
+				return resultGeometry;
+			}
+
+			OGCGeometry ogcObj = OGCGeometry.fromBinary(WKBUtils.wrap(wkb));
 			ogcObj.setSpatialReference(spatialReference);
 			return GeometryUtils.geometryToEsriShapeBytesWritable(ogcObj);
 		} catch (Exception e) {  // IllegalArgumentException, GeometryException
@@ -1,9 +1,91 @@
 package com.esri.hadoop.hive;
 
+import java.lang.reflect.Method;
+
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ConstantObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory.ObjectInspectorOptions;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.io.BytesWritable;
+
 /**
  * Abstract base class for all accessors (ST_X/Y, IsBoolTests, ...)
- *
+ * 
+ * Accessors take one geometry and implement <code>evaluate(BytesWritable)</code>,
+ * which returns a writable that may be reused from row to row.  Unlike the
+ * reflection based <code>UDF</code>, the geometry bytes are handed to the accessor
+ * without conversion, and the result of a constant geometry is only computed once.
  */
+public abstract class ST_GeometryAccessor extends GenericUDF {
+
+	private transient PrimitiveObjectInspector geometryOI;
+	private transient boolean isConstant;
+	private transient Object constantResult;
+
+	/**
+	 * Accessors that extend this return the value for the hive geometry bytes,
+	 * narrowing the return type to the writable they produce.
+	 * 
+	 * @param geomref hive geometry bytes
+	 * @return result writable, or null
+	 */
+	public abstract Object evaluate(BytesWritable geomref);
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] OIs)
+			throws UDFArgumentException {
+
+		if (OIs.length != 1) {
+			throw new UDFArgumentLengthException("Function takes exactly 1 argument");
+		}
+
+		if (OIs[0].getCategory() != Category.PRIMITIVE ||
+				((PrimitiveObjectInspector)OIs[0]).getPrimitiveCategory() != PrimitiveCategory.BINARY) {
+			throw new UDFArgumentTypeException(0, "Argument 0 must be a geometry");
+		}
+
+		geometryOI = (PrimitiveObjectInspector)OIs[0];
+		isConstant = ObjectInspectorUtils.isConstantObjectInspector(OIs[0]);
+		constantResult = null;
+
+		if (isConstant) {
+			Object value = ((ConstantObjectInspector)OIs[0]).getWritableConstantValue();
+			constantResult = evaluate((BytesWritable)geometryOI.getPrimitiveWritableObject(value));
+		}
+
+		// the result is described by the return type of the subclass
+		Method method;
+		try {
+			method = getClass().getMethod("evaluate", BytesWritable.class);
+		} catch (NoSuchMethodException e) {
+			throw new UDFArgumentException(e);
+		}
+
+		return ObjectInspectorFactory.getReflectionObjectInspector(method.getGenericReturnType(),
+				ObjectInspectorOptions.JAVA);
+	}
+
+	@Override
+	public Object evaluate(DeferredObject[] args) throws HiveException {
+		if (isConstant) {
+			return constantResult;
+		}
+
+		return evaluate((BytesWritable)geometryOI.getPrimitiveWritableObject(args[0].get()));
+	}
 
-public abstract class ST_GeometryAccessor extends ST_Geometry {
+	@Override
+	public String getDisplayString(String[] args) {
+		assert(args.length == 1);
+		return String.format("%s(%s)", getClass().getSimpleName().toLowerCase(), args[0]);
+	}
 }
@@ -0,0 +1,305 @@
+package com.esri.hadoop.hive;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.MapredContext;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.parse.SemanticException;
+import org.apache.hadoop.hive.ql.udf.generic.AbstractGenericUDAFResolver;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AbstractAggregationBuffer;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.io.BytesWritable;
+
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.OperatorExportToESRIShape;
+import com.esri.core.geometry.OperatorImportFromESRIShape;
+import com.esri.core.geometry.SpatialReference;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+/**
+ * Abstract class that all geometry aggregates (union, convex hull, ...) extend from
+ *
+ * Rows are hive geometry bytes.  Partial aggregations are passed on as the WKID
+ * followed by the Esri shape of the aggregated geometry, or whatever else the
+ * buffer writes as its partial, and are merged with a single check of the
+ * spatial reference.  The aggregation buffers estimate the memory of their
+ * geometries, so that hash aggregation can account for it.
+ */
+public abstract class ST_GeometryAggregate extends AbstractGenericUDAFResolver {
+	static final Log LOG = LogFactory.getLog(ST_GeometryAggregate.class.getName());
+
+	private static final int SIZE_WKID = 4;
+
+	// WKID of a buffer that no geometry was added to yet
+	private static final int WKID_NONE = -2;
+
+	// estimated size of an aggregation buffer without its geometries
+	private static final int SIZE_BUFFER_OBJECT = 64;
+
+	/**
+	 * Aggregates that extend this return their evaluator.
+	 *
+	 * @return new evaluator
+	 */
+	protected abstract GeometryAggregateEvaluator createEvaluator();
+
+	@Override
+	public GenericUDAFEvaluator getEvaluator(TypeInfo[] parameters) throws SemanticException {
+		if (parameters.length != 1) {
+			throw new UDFArgumentLengthException("Function takes exactly 1 argument");
+		}
+
+		if (parameters[0].getCategory() != Category.PRIMITIVE ||
+				((PrimitiveTypeInfo)parameters[0]).getPrimitiveCategory() != PrimitiveCategory.BINARY) {
+			throw new UDFArgumentTypeException(0, "Argument 0 must be a geometry");
+		}
+
+		return createEvaluator();
+	}
+
+	/**
+	 * Geometries aggregated for one group.  Buffers are reused for the next group
+	 * after {@link #clear()}.
+	 */
+	public static abstract class GeometryAggregationBuffer extends AbstractAggregationBuffer {
+		int wkid = WKID_NONE;
+		SpatialReference spatialRef = null;
+
+		/**
+		 * Adds a geometry, in the spatial reference of the buffer, to the aggregate
+		 *
+		 * @param geometry geometry, not null
+		 */
+		protected abstract void add(Geometry geometry);
+
+		/**
+		 * Adds a row, in the spatial reference of the buffer, straight from its hive
+		 * geometry bytes.  Buffers that can aggregate without creating the geometry
+		 * override this.
+		 *
+		 * @param geomref hive geometry bytes, not empty
+		 * @return false if the geometry has to be created and added with {@link #add(Geometry)}
+		 */
+		protected boolean add(BytesWritable geomref) {
+			return false;
+		}
+
+		/**
+		 * @return aggregate of the geometries added, or null if none were added
+		 */
+		protected abstract Geometry getResult();
+
+		/**
+		 * Gets the partial aggregation that is passed on, after the WKID, to
+		 * {@link #addPartial(ByteBuffer)}.  By default this is the Esri shape of
+		 * {@link #getResult()}.
+		 *
+		 * @return little endian partial aggregation, or null if nothing was added
+		 */
+		protected ByteBuffer getPartial() {
+			Geometry result = getResult();
+			return result == null ? null : OperatorExportToESRIShape.local().execute(0, result);
+		}
+
+		/**
+		 * Adds a partial aggregation written by {@link #getPartial()}, in the spatial
+		 * reference of the buffer.
+		 *
+		 * @param partial little endian partial aggregation, not empty
+		 */
+		protected void addPartial(ByteBuffer partial) {
+			add(OperatorImportFromESRIShape.local().execute(0, Geometry.Type.Unknown, partial));
+		}
+
+		/**
+		 * Removes all geometries
+		 */
+		protected abstract void clear();
+
+		/**
+		 * @return estimated size in bytes of the geometries held
+		 */
+		protected abstract long estimateMemorySize();
+
+		@Override
+		public int estimate() {
+			return (int)Math.min(Integer.MAX_VALUE, SIZE_BUFFER_OBJECT + estimateMemorySize());
+		}
+	}
+
+	/**
+	 * Evaluator of all modes.  Hive iterates over rows in PARTIAL1 and COMPLETE mode,
+	 * and merges partial aggregations in PARTIAL2 and FINAL mode.
+	 */
+	public static abstract class GeometryAggregateEvaluator extends GenericUDAFEvaluator {
+
+		// rows in PARTIAL1 and COMPLETE mode, partial aggregations in PARTIAL2 and FINAL mode
+		private transient PrimitiveObjectInspector inputOI;
+
+		// reused for the partial aggregations, which are consumed before the next one
+		private transient BytesWritable partialResult;
+
+		protected transient MapredContext context;
+
+		/**
+		 * Aggregates that extend this return an empty buffer.  The buffer may be
+		 * configured from {@link #context}, which is null outside of a task.
+		 *
+		 * @return new aggregation buffer
+		 */
+		protected abstract GeometryAggregationBuffer createBuffer();
+
+		@Override
+		public void configure(MapredContext context) {
+			this.context = context;
+		}
+
+		@Override
+		public ObjectInspector init(Mode mode, ObjectInspector[] parameters) throws HiveException {
+			super.init(mode, parameters);
+
+			inputOI = (PrimitiveObjectInspector)parameters[0];
+			partialResult = new BytesWritable();
+
+			return GeometryUtils.geometryTransportObjectInspector;
+		}
+
+		@Override
+		public AggregationBuffer getNewAggregationBuffer() throws HiveException {
+			return createBuffer();
+		}
+
+		@Override
+		public void reset(AggregationBuffer agg) throws HiveException {
+			GeometryAggregationBuffer buffer = (GeometryAggregationBuffer)agg;
+			buffer.clear();
+			buffer.wkid = WKID_NONE;
+			buffer.spatialRef = null;
+		}
+
+		@Override
+		public void iterate(AggregationBuffer agg, Object[] parameters) throws HiveException {
+			BytesWritable geomref = (BytesWritable)inputOI.getPrimitiveWritableObject(parameters[0]);
+			if (geomref == null || geomref.getLength() == 0) {
+				return;  // nulls are left out of the aggregate
+			}
+
+			GeometryAggregationBuffer buffer = (GeometryAggregationBuffer)agg;
+			if (!acceptWKID(buffer, GeometryUtils.getWKID(geomref))) {
+				LogUtils.Log_SRIDMismatch(LOG, geomref, buffer.wkid);
+				return;
+			}
+
+			try {
+				if (buffer.add(geomref)) {
+					return;
+				}
+			} catch (Exception e) {
+				LogUtils.Log_InternalError(LOG, getClass().getSimpleName() + ": " + e);
+				return;
+			}
+
+			OGCGeometry geometry = GeometryUtils.geometryFromEsriShape(geomref);
+			if (geometry != null) {
+				add(buffer, geometry.getEsriGeometry());
+			}
+		}
+
+		@Override
+		public void merge(AggregationBuffer agg, Object partial) throws HiveException {
+			BytesWritable partialref = (BytesWritable)inputOI.getPrimitiveWritableObject(partial);
+			if (partialref == null || partialref.getLength() <= SIZE_WKID) {
+				return;  // nothing aggregated
+			}
+
+			GeometryAggregationBuffer buffer = (GeometryAggregationBuffer)agg;
+			int wkid = GeometryUtils.getWKID(partialref);
+			if (!acceptWKID(buffer, wkid)) {
+				LogUtils.Log_SRIDMismatch(LOG, wkid, buffer.wkid);
+				return;
+			}
+
+			ByteBuffer partialBytes = ByteBuffer.wrap(partialref.getBytes(), SIZE_WKID, partialref.getLength() - SIZE_WKID);
+			try {
+				buffer.addPartial(partialBytes.slice().order(ByteOrder.LITTLE_ENDIAN));
+			} catch (Exception e) {
+				LogUtils.Log_InternalError(LOG, getClass().getSimpleName() + ": " + e);
+			}
+		}
+
+		@Override
+		public Object terminatePartial(AggregationBuffer agg) throws HiveException {
+			ByteBuffer partial;
+			try {
+				partial = ((GeometryAggregationBuffer)agg).getPartial();
+			} catch (Exception e) {
+				LogUtils.Log_InternalError(LOG, getClass().getSimpleName() + ": " + e);
+				return null;
+			}
+			if (partial == null) {
+				return null;
+			}
+
+			int length = SIZE_WKID + partial.limit();
+
+			partialResult.setSize(0);  // no need to copy the previous partial when growing
+			partialResult.setSize(length);
+			GeometryUtils.setWKID(partialResult, ((GeometryAggregationBuffer)agg).wkid);
+			partial.position(0);
+			partial.get(partialResult.getBytes(), SIZE_WKID, partial.limit());
+
+			return partialResult;
+		}
+
+		@Override
+		public Object terminate(AggregationBuffer agg) throws HiveException {
+			GeometryAggregationBuffer buffer = (GeometryAggregationBuffer)agg;
+			Geometry result = getResult(buffer);
+			if (result == null) {
+				return null;
+			}
+
+			return GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.createFromEsriGeometry(result, buffer.spatialRef));
+		}
+
+		/*
+		 * The first geometry of a group sets the spatial reference of the group
+		 */
+		private boolean acceptWKID(GeometryAggregationBuffer buffer, int wkid) {
+			if (buffer.wkid == WKID_NONE) {
+				buffer.wkid = wkid;
+				buffer.spatialRef = wkid == GeometryUtils.WKID_UNKNOWN ? null : SpatialReference.create(wkid);
+				return true;
+			}
+			return buffer.wkid == wkid;
+		}
+
+		private void add(GeometryAggregationBuffer buffer, Geometry geometry) {
+			try {
+				buffer.add(geometry);
+			} catch (Exception e) {
+				LogUtils.Log_InternalError(LOG, getClass().getSimpleName() + ": " + e);
+			}
+		}
+
+		private Geometry getResult(GeometryAggregationBuffer buffer) {
+			try {
+				return buffer.getResult();
+			} catch (Exception e) {
+				LogUtils.Log_InternalError(LOG, getClass().getSimpleName() + ": " + e);
+				return null;
+			}
+		}
+	}
+}
@@ -19,7 +19,7 @@ import com.esri.core.geometry.ogc.OGCMultiPolygon;
 	+ "  SELECT _FUNC_(ST_GeomFromText('multilinestring ((2 4, 10 10), (20 20, 7 8))'), 2) FROM src LIMIT 1;  -- ST_Linestring(20 20, 7 8)\n"
 	)
 
-public class ST_GeometryN extends ST_GeometryAccessor {
+public class ST_GeometryN extends ST_Geometry {
 	static final Log LOG = LogFactory.getLog(ST_GeometryN.class.getName());
 
 	public BytesWritable evaluate(BytesWritable geomref, IntWritable index) {
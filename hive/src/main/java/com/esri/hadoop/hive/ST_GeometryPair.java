@@ -0,0 +1,219 @@
+package com.esri.hadoop.hive;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.io.BytesWritable;
+
+import com.esri.core.geometry.Envelope;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+/**
+ * Abstract class for functions of two geometries (distance, intersection, ...)
+ *
+ * Both geometries are read through {@link HiveGeometryOIHelper}, so constant
+ * geometries are only deserialized once and repeated geometries are interned.
+ * Null geometries give a null result and geometries in different spatial
+ * references are rejected before the subclass is called.
+ *
+ * When both geometries are constant, the result is computed once.  Functions
+ * with a known result for geometries with disjoint envelopes get it without
+ * deserializing the geometries, from envelopes read from the geometry bytes.
+ */
+public abstract class ST_GeometryPair extends GenericUDF {
+	static final Log LOG = LogFactory.getLog(ST_GeometryPair.class.getName());
+
+	protected static final int GEOM_1 = 0;
+	protected static final int GEOM_2 = 1;
+
+	protected transient HiveGeometryOIHelper geomHelper1;
+	protected transient HiveGeometryOIHelper geomHelper2;
+
+	private transient boolean isConstant;
+	private transient boolean hasConstantResult;
+	private transient Object constantResult;
+
+	private transient Envelope envelope1;
+	private transient Envelope envelope2;
+
+	// tolerance of the last spatial reference seen
+	private transient int toleranceWkid = GeometryUtils.WKID_UNKNOWN;
+	private transient double tolerance = 0;
+
+	/**
+	 * Functions that extend this validate their arguments after the two
+	 * geometries, and return the object inspector of their result.
+	 *
+	 * @param OIs object inspectors of all the arguments
+	 * @return object inspector of the result
+	 * @throws UDFArgumentException
+	 */
+	protected abstract ObjectInspector initializeResult(ObjectInspector[] OIs) throws UDFArgumentException;
+
+	/**
+	 * Functions that extend this compute the result for the two geometries.
+	 *
+	 * @param geom1 first geometry, not null
+	 * @param geom2 second geometry, not null and in the same spatial reference
+	 * @param args all the arguments, for functions that take more than the geometries
+	 * @return result, or null
+	 * @throws HiveException
+	 */
+	protected abstract Object evaluate(OGCGeometry geom1, OGCGeometry geom2, DeferredObject[] args) throws HiveException;
+
+	/**
+	 * Functions that extend this and know their result for geometries whose
+	 * envelopes are disjoint return it here, without the geometries.
+	 *
+	 * @param wkid spatial reference of the geometries
+	 * @param args all the arguments
+	 * @return result, or null if the geometries are needed for the result
+	 * @throws HiveException
+	 */
+	protected Object evaluateDisjoint(int wkid, DeferredObject[] args) throws HiveException {
+		return null;
+	}
+
+	/**
+	 * @return true if the result only depends on the geometries, so that it can be
+	 * computed once for constant geometries
+	 */
+	protected boolean dependsOnGeometriesOnly() {
+		return getArgumentCount() == 2;
+	}
+
+	/**
+	 * @return number of arguments the function takes
+	 */
+	protected int getArgumentCount() {
+		return 2;
+	}
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] OIs)
+			throws UDFArgumentException {
+
+		if (OIs.length != getArgumentCount()) {
+			throw new UDFArgumentLengthException("Function takes exactly " + getArgumentCount() + " arguments");
+		}
+
+		geomHelper1 = HiveGeometryOIHelper.create(OIs, GEOM_1);
+		geomHelper2 = HiveGeometryOIHelper.create(OIs, GEOM_2);
+
+		isConstant = geomHelper1.isConstant() && geomHelper2.isConstant();
+		hasConstantResult = false;
+		constantResult = null;
+
+		envelope1 = new Envelope();
+		envelope2 = new Envelope();
+
+		return initializeResult(OIs);
+	}
+
+	@Override
+	public Object evaluate(DeferredObject[] args) throws HiveException {
+		if (hasConstantResult) {
+			return constantResult;
+		}
+
+		// non-constant binary arguments are only deserialized when needed
+		BytesWritable bytes1 = geomHelper1.getGeometryBytes(args);
+		BytesWritable bytes2 = geomHelper2.getGeometryBytes(args);
+
+		OGCGeometry geom1 = bytes1 == null ? geomHelper1.getGeometry(args) : null;
+		OGCGeometry geom2 = bytes2 == null ? geomHelper2.getGeometry(args) : null;
+
+		if ((bytes1 == null && geom1 == null) || (bytes2 == null && geom2 == null)) {
+			LogUtils.Log_ArgumentsNull(getLog());
+			return null;
+		}
+
+		int wkid1 = bytes1 != null ? GeometryUtils.getWKID(bytes1) : GeometryUtils.getWKID(geom1);
+		int wkid2 = bytes2 != null ? GeometryUtils.getWKID(bytes2) : GeometryUtils.getWKID(geom2);
+		if (wkid1 != wkid2) {
+			LogUtils.Log_SRIDMismatch(getLog(), wkid1, wkid2);
+			return null;
+		}
+
+		Envelope env1 = getEnvelope(bytes1, geom1, geomHelper1, envelope1);
+		Envelope env2 = getEnvelope(bytes2, geom2, geomHelper2, envelope2);
+
+		if (env1 != null && env2 != null && !env1.isEmpty() && !env2.isEmpty() &&
+				!ST_GeometryRelational.envelopesIntersect(env1, env2, getTolerance(wkid1, env1, env2))) {
+			Object result = evaluateDisjoint(wkid1, args);
+			if (result != null) {
+				return result;
+			}
+		}
+
+		if (bytes1 != null) {
+			geom1 = geomHelper1.getGeometry(bytes1);
+		}
+		if (bytes2 != null) {
+			geom2 = geomHelper2.getGeometry(bytes2);
+		}
+
+		if (geom1 == null || geom2 == null) {
+			LogUtils.Log_ArgumentsNull(getLog());
+			return null;
+		}
+
+		Object result = evaluate(geom1, geom2, args);
+
+		if (isConstant && dependsOnGeometriesOnly()) {
+			constantResult = result;
+			hasConstantResult = true;
+		}
+
+		return result;
+	}
+
+	/*
+	 * Envelope straight from the geometry bytes, or of the deserialized geometry
+	 */
+	private static Envelope getEnvelope(BytesWritable geomref, OGCGeometry geometry, HiveGeometryOIHelper helper, Envelope envelope) {
+		if (geomref != null) {
+			return GeometryUtils.getEnvelope(geomref, envelope) ? envelope : null;
+		}
+
+		if (helper.isConstant()) {
+			return helper.getConstantEnvelope();
+		}
+
+		geometry.getEsriGeometry().queryEnvelope(envelope);
+		return envelope;
+	}
+
+	private double getTolerance(int wkid, Envelope env1, Envelope env2) {
+		if (wkid != toleranceWkid) {
+			toleranceWkid = wkid;
+			tolerance = GeometryUtils.getTolerance(wkid);
+		}
+
+		return GeometryUtils.getEnvelopeTolerance(tolerance, env1, env2);
+	}
+
+	/**
+	 * @return logger of the function that extends this
+	 */
+	protected Log getLog() {
+		return LOG;
+	}
+
+	@Override
+	public String getDisplayString(String[] args) {
+		StringBuilder builder = new StringBuilder(getClass().getSimpleName().toLowerCase());
+		builder.append('(');
+		for (int i = 0; i < args.length; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(args[i]);
+		}
+		return builder.append(')').toString();
+	}
+}
@@ -1,14 +1,19 @@
 package com.esri.hadoop.hive;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.exec.MapredContext;
 import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BytesWritable;
 import org.apache.log4j.Logger;
 
-import com.esri.core.geometry.OperatorContains;
+import com.esri.core.geometry.Envelope;
+import com.esri.core.geometry.Operator;
 import com.esri.core.geometry.OperatorSimpleRelation;
+import com.esri.core.geometry.Point;
 import com.esri.core.geometry.Geometry.GeometryAccelerationDegree;
 import com.esri.core.geometry.ogc.OGCGeometry;
 
@@ -18,77 +23,299 @@ import com.esri.core.geometry.ogc.OGCGeometry;
  */
 public abstract class ST_GeometryRelational extends GenericUDF {
 	private static Logger LOG = Logger.getLogger(ST_GeometryRelational.class);
-	
+
+	/**
+	 * Acceleration degree of constant and repeated geometries - mild, medium or hot
+	 */
+	public static final String CONF_ACCELERATION_DEGREE = "esri.hive.acceleration.degree";
+
 	private static final int NUM_ARGS = 2;
 	private static final int GEOM_1 = 0;
 	private static final int GEOM_2 = 1;
-	
+
 	private transient HiveGeometryOIHelper geomHelper1;
 	private transient HiveGeometryOIHelper geomHelper2;
-	
+
 	private transient OperatorSimpleRelation opSimpleRelation;
+	private transient OperatorSimpleRelation opInverseRelation;
+	private transient GeometryAccelerationDegree accelerationDegree;
 	private transient boolean firstRun = true;
-	
-	private transient boolean geom1IsAccelerated = false;
+
+	// geometry 2 is constant and geometry 1 is not, so the inverse relation is executed instead
+	private transient boolean swapArguments = false;
+
+	// the constant geometry that was accelerated, if any
+	private transient OGCGeometry acceleratedGeometry;
+
+	// accelerates geometry 1 when it is not constant but repeats from row to row
+	private transient AcceleratedGeometryPool acceleratedGeometries;
+
+	// envelopes read from the geometry bytes, reused from row to row
+	private transient Envelope envelope1;
+	private transient Envelope envelope2;
+
+	// points tested against the constant geometry are read into this, instead of being deserialized
+	private transient Point point;
+
+	// tolerance of the last spatial reference seen
+	private transient int toleranceWkid = GeometryUtils.WKID_UNKNOWN;
+	private transient double tolerance = 0;
 
 	/**
 	 * Operators that extend this should return an instance of
 	 * <code>OperatorSimpleRelation</code>
-	 * 
+	 *
 	 * @return operator for simple relationship tests
 	 */
 	protected abstract OperatorSimpleRelation getRelationOperator();
-	
+
+	/**
+	 * Operators that extend this may return the operator that gives the same
+	 * result with the arguments swapped, so that a constant second geometry can
+	 * be accelerated (for example <code>within</code> for <code>contains</code>).
+	 *
+	 * @return inverse operator, or null if the relation cannot be swapped
+	 */
+	protected OperatorSimpleRelation getInverseRelationOperator() {
+		return null;
+	}
+
+	/**
+	 * Decides the relation from the envelopes of the geometries alone, when
+	 * possible.  The default rejects pairs with disjoint envelopes, which is right
+	 * for every relation that needs the geometries to intersect.
+	 *
+	 * @param envelope1 envelope of geometry 1, not empty
+	 * @param envelope2 envelope of geometry 2, not empty
+	 * @param tolerance distance under which coordinates are considered equal
+	 * @return result of the relation, or null if the geometries have to be compared
+	 */
+	protected Boolean relateEnvelopes(Envelope envelope1, Envelope envelope2, double tolerance) {
+		return envelopesIntersect(envelope1, envelope2, tolerance) ? null : Boolean.FALSE;
+	}
+
 	@Override
 	public ObjectInspector initialize(ObjectInspector[] OIs)
 			throws UDFArgumentException {
 
 		opSimpleRelation = getRelationOperator();
-		
+
 		if (OIs.length != NUM_ARGS) {
 			throw new UDFArgumentException("The " + opSimpleRelation.getType().toString().toLowerCase() + " relationship operator takes exactly two arguments");
 		}
 
 		geomHelper1 = HiveGeometryOIHelper.create(OIs[GEOM_1], GEOM_1);
 		geomHelper2 = HiveGeometryOIHelper.create(OIs[GEOM_2], GEOM_2);
-		
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("OI[0]=" + geomHelper1);
 			LOG.debug("OI[1]=" + geomHelper2);
 		}
 
 		firstRun = true;
-		geom1IsAccelerated = false;
-		
+		deaccelerate();
+
+		envelope1 = new Envelope();
+		envelope2 = new Envelope();
+		point = new Point();
+
+		opInverseRelation = getInverseRelationOperator();
+		swapArguments = !geomHelper1.isConstant() && geomHelper2.isConstant() && opInverseRelation != null;
+
+		// MapredContext is only available when running in a task
+		MapredContext context = MapredContext.get();
+		Configuration conf = context == null ? null : context.getJobConf();
+
+		accelerationDegree = getAccelerationDegree(conf);
+
+		if (!geomHelper1.isConstant() && !swapArguments) {
+			acceleratedGeometries = new AcceleratedGeometryPool(opSimpleRelation, accelerationDegree);
+			acceleratedGeometries.configure(conf);
+		}
+
 		return PrimitiveObjectInspectorFactory.javaBooleanObjectInspector;
 	}
-	
+
 	@Override
 	public Object evaluate(DeferredObject[] args) throws HiveException {
-		
-		OGCGeometry geom1 = geomHelper1.getGeometry(args);
-		OGCGeometry geom2 = geomHelper2.getGeometry(args);
-		
+
+		// non-constant binary arguments are only deserialized if the envelopes interact
+		BytesWritable bytes1 = geomHelper1.getGeometryBytes(args);
+		BytesWritable bytes2 = geomHelper2.getGeometryBytes(args);
+
+		OGCGeometry geom1 = bytes1 == null ? geomHelper1.getGeometry(args) : null;
+		OGCGeometry geom2 = bytes2 == null ? geomHelper2.getGeometry(args) : null;
+
+		if ((bytes1 == null && geom1 == null) || (bytes2 == null && geom2 == null)) {
+			return false;
+		}
+
+		Envelope env1 = getEnvelope(bytes1, geomHelper1, envelope1);
+		Envelope env2 = getEnvelope(bytes2, geomHelper2, envelope2);
+
+		if (env1 != null && env2 != null && !env1.isEmpty() && !env2.isEmpty()) {
+			int wkid = bytes1 != null ? GeometryUtils.getWKID(bytes1) : GeometryUtils.getWKID(geom1);
+			Boolean result = relateEnvelopes(env1, env2, getTolerance(wkid, env1, env2));
+			if (result != null) {
+				return result;
+			}
+		}
+
+		// a point against the constant geometry only needs its coordinates
+		if (geomHelper1.isConstant() && bytes2 != null && GeometryUtils.readPoint(bytes2, point)) {
+			if (firstRun) {
+				accelerate(opSimpleRelation, geom1);
+				firstRun = false;
+			}
+			return opSimpleRelation.execute(geom1.getEsriGeometry(), point, geom1.getEsriSpatialReference(), null);
+		}
+
+		if (swapArguments && bytes1 != null && GeometryUtils.readPoint(bytes1, point)) {
+			if (firstRun) {
+				accelerate(opInverseRelation, geom2);
+				firstRun = false;
+			}
+			return opInverseRelation.execute(geom2.getEsriGeometry(), point, geom2.getEsriSpatialReference(), null);
+		}
+
+		if (bytes1 != null) {
+			geom1 = geomHelper1.getGeometry(bytes1);
+		}
+		if (bytes2 != null) {
+			geom2 = geomHelper2.getGeometry(bytes2);
+		}
+
 		if (geom1 == null || geom2 == null) {
 			return false;
 		}
 
-		if (firstRun && geomHelper1.isConstant()) {
-			
-			// accelerate geometry 1 for quick relation operations since it is constant
-			geom1IsAccelerated = opSimpleRelation.accelerateGeometry(geom1.getEsriGeometry(), 
-					geom1.getEsriSpatialReference(), GeometryAccelerationDegree.enumMedium);
+		if (firstRun) {
+			// accelerate the constant geometry for quick relation operations
+			if (geomHelper1.isConstant()) {
+				accelerate(opSimpleRelation, geom1);
+			} else if (swapArguments) {
+				accelerate(opInverseRelation, geom2);
+			}
 		}
 
 		firstRun = false;
-		
+
+		if (swapArguments) {
+			return opInverseRelation.execute(geom2.getEsriGeometry(), geom1.getEsriGeometry(), geom2.getEsriSpatialReference(), null);
+		}
+
+		if (acceleratedGeometries != null) {
+			acceleratedGeometries.use(geom1);
+		}
+
 		return opSimpleRelation.execute(geom1.getEsriGeometry(), geom2.getEsriGeometry(), geom1.getEsriSpatialReference(), null);
 	}
 
+	/**
+	 * @return the accelerated constant geometry, or null if none is accelerated
+	 */
+	OGCGeometry getAcceleratedGeometry() {
+		return acceleratedGeometry;
+	}
+
+	/**
+	 * @return pool accelerating geometry 1, or null if geometry 1 is not pooled
+	 */
+	AcceleratedGeometryPool getAcceleratedGeometries() {
+		return acceleratedGeometries;
+	}
+
+	GeometryAccelerationDegree getAccelerationDegree() {
+		return accelerationDegree;
+	}
+
 	@Override
 	public void close() {
-		if (geom1IsAccelerated && geomHelper1 != null && geomHelper1.getConstantGeometry() != null) {
-			OperatorContains.deaccelerateGeometry(geomHelper1.getConstantGeometry().getEsriGeometry());
+		if (LOG.isDebugEnabled()) {
+			LOG.debug(GeometryUtils.getGeometryCache());
+			LOG.debug(acceleratedGeometries);
+		}
+
+		deaccelerate();
+	}
+
+	/*
+	 * Envelope straight from the geometry bytes, or of the constant geometry
+	 */
+	private static Envelope getEnvelope(BytesWritable geomref, HiveGeometryOIHelper helper, Envelope envelope) {
+		if (geomref == null) {
+			return helper.getConstantEnvelope();
+		}
+
+		return GeometryUtils.getEnvelope(geomref, envelope) ? envelope : null;
+	}
+
+	// the pre-filter never rejects a pair that the exact relation would accept
+	private double getTolerance(int wkid, Envelope env1, Envelope env2) {
+		if (wkid != toleranceWkid) {
+			toleranceWkid = wkid;
+			tolerance = GeometryUtils.getTolerance(wkid);
+		}
+
+		return GeometryUtils.getEnvelopeTolerance(tolerance, env1, env2);
+	}
+
+	/**
+	 * @return true if the envelopes intersect, or are closer than the tolerance
+	 */
+	protected static boolean envelopesIntersect(Envelope envelope1, Envelope envelope2, double tolerance) {
+		return envelope1.getXMin() <= envelope2.getXMax() + tolerance &&
+				envelope2.getXMin() <= envelope1.getXMax() + tolerance &&
+				envelope1.getYMin() <= envelope2.getYMax() + tolerance &&
+				envelope2.getYMin() <= envelope1.getYMax() + tolerance;
+	}
+
+	/**
+	 * @return true if the outer envelope contains the inner envelope, within the tolerance
+	 */
+	protected static boolean envelopeContains(Envelope outer, Envelope inner, double tolerance) {
+		return outer.getXMin() <= inner.getXMin() + tolerance &&
+				outer.getYMin() <= inner.getYMin() + tolerance &&
+				inner.getXMax() <= outer.getXMax() + tolerance &&
+				inner.getYMax() <= outer.getYMax() + tolerance;
+	}
+
+	private void accelerate(OperatorSimpleRelation operator, OGCGeometry geometry) {
+		if (operator.accelerateGeometry(geometry.getEsriGeometry(), geometry.getEsriSpatialReference(), accelerationDegree)) {
+			acceleratedGeometry = geometry;
+		}
+	}
+
+	private void deaccelerate() {
+		if (acceleratedGeometry != null) {
+			Operator.deaccelerateGeometry(acceleratedGeometry.getEsriGeometry());
+			acceleratedGeometry = null;
+		}
+
+		if (acceleratedGeometries != null) {
+			acceleratedGeometries.clear();
+			acceleratedGeometries = null;
+		}
+	}
+
+	static GeometryAccelerationDegree getAccelerationDegree(Configuration conf) {
+		String degree = conf == null ? null : conf.get(CONF_ACCELERATION_DEGREE);
+
+		if (degree == null) {
+			return GeometryAccelerationDegree.enumMedium;
+		}
+
+		degree = degree.trim().toLowerCase();
+
+		if (degree.equals("mild")) {
+			return GeometryAccelerationDegree.enumMild;
+		} else if (degree.equals("medium")) {
+			return GeometryAccelerationDegree.enumMedium;
+		} else if (degree.equals("hot")) {
+			return GeometryAccelerationDegree.enumHot;
 		}
+
+		LOG.warn("Invalid " + CONF_ACCELERATION_DEGREE + " '" + degree + "', expected mild, medium or hot");
+		return GeometryAccelerationDegree.enumMedium;
 	}
 }
@@ -44,7 +44,8 @@ import org.apache.hadoop.io.Text;
 //		}
 //	)
 
-public class ST_GeometryType extends ST_Geometry {
+public class ST_GeometryType extends ST_GeometryAccessor {
+	final Text resultText = new Text();
 	static final Log LOG = LogFactory.getLog(ST_GeometryType.class.getName());
 
 	public Text evaluate(BytesWritable ref) {
@@ -52,6 +53,7 @@ public class ST_GeometryType extends ST_Geometry {
 			LogUtils.Log_ArgumentsNull(LOG);
 			return null;
 		}
-		return new Text(GeometryUtils.getType(ref).toString());
+		resultText.set(GeometryUtils.getType(ref).toString());
+		return resultText;
 	}
 }
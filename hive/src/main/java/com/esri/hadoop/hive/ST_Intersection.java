@@ -3,12 +3,12 @@ package com.esri.hadoop.hive;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
-import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 
 
-import com.esri.core.geometry.Geometry;
-import com.esri.core.geometry.GeometryEngine;
+import com.esri.core.geometry.Polygon;
 import com.esri.core.geometry.ogc.OGCGeometry;
+import com.esri.hadoop.hive.GeometryUtils.OGCType;
 
 @Description(
 	name = "ST_Intersection",
@@ -24,31 +24,18 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 	"SELECT ST_AsText(_FUNC_(ST_Polygon(2,0, 3,1, 2,1), ST_Polygon(1,1, 4,1, 4,4, 1,4))) FROM onerow; -- MULTIPOLYGON EMPTY or LINESTRING (2 1, 3 1, 2 1)\n"
 	)
 
-public class ST_Intersection extends ST_GeometryProcessing {
+public class ST_Intersection extends ST_GeometryPair {
 	static final Log LOG = LogFactory.getLog(ST_Intersection.class.getName());
 
-	public BytesWritable evaluate(BytesWritable geometryref1, BytesWritable geometryref2)
-	{
-		if (geometryref1 == null || geometryref2 == null ||
-		    geometryref1.getLength() == 0 || geometryref2.getLength() == 0) {
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
-		}
-		if (!GeometryUtils.compareSpatialReferences(geometryref1, geometryref2)) {
-			LogUtils.Log_SRIDMismatch(LOG, geometryref1, geometryref2);
-			return null;
-		}
-
-		OGCGeometry ogcGeom1 = GeometryUtils.geometryFromEsriShape(geometryref1);
-		OGCGeometry ogcGeom2 = GeometryUtils.geometryFromEsriShape(geometryref2);
-		if (ogcGeom1 == null || ogcGeom2 == null){
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
-		}
+	@Override
+	protected ObjectInspector initializeResult(ObjectInspector[] OIs) {
+		return GeometryUtils.geometryTransportObjectInspector;
+	}
 
-		OGCGeometry commonGeom;
-		try {		
-			commonGeom = ogcGeom1.intersection(ogcGeom2);
+	@Override
+	protected Object evaluate(OGCGeometry ogcGeom1, OGCGeometry ogcGeom2, DeferredObject[] args) {
+		try {
+			OGCGeometry commonGeom = ogcGeom1.intersection(ogcGeom2);
 			return GeometryUtils.geometryToEsriShapeBytesWritable(commonGeom);
 		} catch (Exception e) {
 		    LogUtils.Log_InternalError(LOG, "ST_Intersection: " + e);
@@ -56,4 +43,14 @@ public class ST_Intersection extends ST_GeometryProcessing {
 		}
 	}
 
+	@Override
+	protected Object evaluateDisjoint(int wkid, DeferredObject[] args) {
+		// the same empty multipolygon as OGCGeometry.intersection gives for disjoint geometries
+		return GeometryUtils.geometryToEsriShapeBytesWritable(new Polygon(), wkid, OGCType.ST_MULTIPOLYGON);
+	}
+
+	@Override
+	protected Log getLog() {
+		return LOG;
+	}
 }
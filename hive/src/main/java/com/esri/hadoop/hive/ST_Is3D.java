@@ -6,9 +6,6 @@ import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.BytesWritable;
 
-
-import com.esri.core.geometry.ogc.OGCGeometry;
-
 @Description(
 	name = "ST_Is3D",
 	value = "_FUNC_(geometry) - return true if the geometry object is three-dimensional",
@@ -49,13 +46,12 @@ public class ST_Is3D extends ST_GeometryAccessor {
 			return null;
 		}
 
-		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomref);
-		if (ogcGeometry == null) {
+		if (GeometryUtils.isNullShape(geomref)) {
 			LogUtils.Log_ArgumentsNull(LOG);
 			return null;
 		}
 
-		resultBoolean.set(ogcGeometry.is3D());
+		resultBoolean.set(GeometryUtils.hasZ(geomref));
 		return resultBoolean;
 	}
 
@@ -1,6 +1,5 @@
 package com.esri.hadoop.hive;
 
-import java.nio.ByteBuffer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -34,6 +33,9 @@ public class ST_LineFromWKB extends ST_Geometry {
 
 	static final Log LOG = LogFactory.getLog(ST_LineFromWKB.class.getName());
 
+	// reused from row to row
+	private final BytesWritable resultGeometry = new BytesWritable();
+
 	public BytesWritable evaluate(BytesWritable wkb) throws UDFArgumentException {
 		return evaluate(wkb, 0);
 	}
@@ -45,10 +47,12 @@ public class ST_LineFromWKB extends ST_Geometry {
 			if (wkid != GeometryUtils.WKID_UNKNOWN) {
 				spatialReference = SpatialReference.create(wkid);
 			}
-			byte [] byteArr = wkb.getBytes();
-            ByteBuffer byteBuf = ByteBuffer.allocate(byteArr.length);
-			byteBuf.put(byteArr);
-			OGCGeometry ogcObj = OGCGeometry.fromBinary(byteBuf);
+			// simple geometries are transcoded without creating the geometry
+			if (WKBUtils.getType(wkb) == WKBUtils.WKB_LINESTRING && WKBUtils.transcode(wkb, wkid, resultGeometry)) {
+				return resultGeometry;
+			}
+
+			OGCGeometry ogcObj = OGCGeometry.fromBinary(WKBUtils.wrap(wkb));
 			ogcObj.setSpatialReference(spatialReference);
 			if (ogcObj.geometryType().equals("LineString")) {
 				return GeometryUtils.geometryToEsriShapeBytesWritable(ogcObj);
@@ -7,10 +7,6 @@ import org.apache.hadoop.io.BytesWritable;
 // DoubleWritable - must use hive-serde2; the other one produces struct {value:d.d}
 import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 
-
-import com.esri.core.geometry.ogc.OGCGeometry;
-import com.esri.core.geometry.ogc.OGCPoint;
-
 @Description(
 	name = "ST_M",
 	value = "_FUNC_(geometry) - return true if the geometry object is three-dimensional",
@@ -48,19 +44,22 @@ public class ST_M extends ST_GeometryAccessor {
 			return null;
 		}
 
-		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomref);
-		if (ogcGeometry == null){
+		if (GeometryUtils.isNullShape(geomref)){
 			return null;
 		}
-		if (!ogcGeometry.isMeasured()) {
+		if (!GeometryUtils.hasM(geomref)) {
 			LogUtils.Log_NotMeasured(LOG);
 			return null;
 		}
 
 		switch(GeometryUtils.getType(geomref)) {
 		case ST_POINT:
-			OGCPoint pt = (OGCPoint)ogcGeometry;
-			resultDouble.set(pt.M());
+			// read straight from the point shape - no need to deserialize
+			double m = GeometryUtils.getPointM(geomref);
+			if (Double.isNaN(GeometryUtils.getPointX(geomref))) {  // empty point
+				return null;
+			}
+			resultDouble.set(m);
 			return resultDouble;
 		default:
 			LogUtils.Log_InvalidType(LOG, GeometryUtils.OGCType.ST_POINT, GeometryUtils.getType(geomref));
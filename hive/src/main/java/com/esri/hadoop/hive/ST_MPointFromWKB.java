@@ -1,6 +1,5 @@
 package com.esri.hadoop.hive;
 
-import java.nio.ByteBuffer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -45,10 +44,7 @@ public class ST_MPointFromWKB extends ST_Geometry {
 			if (wkid != GeometryUtils.WKID_UNKNOWN) {
 				spatialReference = SpatialReference.create(wkid);
 			}
-			byte [] byteArr = wkb.getBytes();
-            ByteBuffer byteBuf = ByteBuffer.allocate(byteArr.length);
-			byteBuf.put(byteArr);
-			OGCGeometry ogcObj = OGCGeometry.fromBinary(byteBuf);
+			OGCGeometry ogcObj = OGCGeometry.fromBinary(WKBUtils.wrap(wkb));
 			ogcObj.setSpatialReference(spatialReference);
 			String gType = ogcObj.geometryType();
 			if (gType.equals("MultiPoint") || gType.equals("Point")) {
@@ -9,7 +9,6 @@ import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 
 
 import com.esri.core.geometry.Envelope;
-import com.esri.core.geometry.ogc.OGCGeometry;
 
 @Description(name = "ST_MaxY",
    value = "_FUNC_(geometry) - returns the maximum Y coordinate of geometry",
@@ -52,6 +51,7 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 
 public class ST_MaxY extends ST_GeometryAccessor {
 	final DoubleWritable resultDouble = new DoubleWritable();
+	final Envelope envBound = new Envelope();
 	static final Log LOG = LogFactory.getLog(ST_MaxY.class.getName());
 
 	public DoubleWritable evaluate(BytesWritable geomref) {
@@ -60,14 +60,11 @@ public class ST_MaxY extends ST_GeometryAccessor {
 			return null;
 		}
 
-		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomref);
-		if (ogcGeometry == null) {
+		if (!GeometryUtils.getEnvelope(geomref, envBound)) {
 			LogUtils.Log_ArgumentsNull(LOG);
 			return null;
 		}
 
-		Envelope envBound = new Envelope();
-		ogcGeometry.getEsriGeometry().queryEnvelope(envBound);
 		resultDouble.set(envBound.getYMax());
 		return resultDouble;
 	}
@@ -38,7 +38,7 @@ public class ST_MultiPolygon extends ST_Geometry {
 	
 	static final Log LOG = LogFactory.getLog(ST_MultiPolygon.class.getName());
 	
-	// Number-pairs constructor - may require clockwise orientation
+	// Number-pairs constructor - each list is the exterior ring of a polygon
 	public BytesWritable evaluate(List<DoubleWritable> ... multipaths) throws UDFArgumentLengthException{
 
 		if (multipaths == null || multipaths.length == 0) {
@@ -57,13 +57,7 @@ public class ST_MultiPolygon extends ST_Geometry {
 						return null;
 					}
 
-					mPolygon.startPath(multipath.get(0).get(), multipath.get(0).get());
-
-					for (int i=2;i<multipath.size();i+=2){
-						mPolygon.lineTo(multipath.get(i).get(), multipath.get(i+1).get());
-					}
-
-					mPolygon.closeAllPaths();
+					ST_Polygon.addExteriorRing(mPolygon, multipath);
 
 					arg_idx++;
 				}
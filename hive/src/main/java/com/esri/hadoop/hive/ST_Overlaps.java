@@ -20,6 +20,12 @@ public class ST_Overlaps extends ST_GeometryRelational {
 		return OperatorOverlaps.local();
 	}
 
+	@Override
+	protected OperatorSimpleRelation getInverseRelationOperator() {
+		// the relation is symmetric
+		return OperatorOverlaps.local();
+	}
+
 	@Override
 	public String getDisplayString(String[] args) {
 		return String.format("returns true if %s overlaps %s", args[0], args[1]);
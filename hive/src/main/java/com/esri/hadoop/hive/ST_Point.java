@@ -9,7 +9,6 @@ import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Text;
 
 
-import com.esri.core.geometry.Point;
 import com.esri.core.geometry.ogc.OGCGeometry;
 
 @Description(
@@ -35,6 +34,9 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 public class ST_Point extends ST_Geometry {
 	static final Log LOG = LogFactory.getLog(ST_Point.class.getName());
 
+	// points are written straight into this, so constructing a point allocates nothing
+	private final BytesWritable resultPoint = new BytesWritable();
+
 	// Number-pair constructor - 2D
 	public BytesWritable evaluate(DoubleWritable x, DoubleWritable y) {
 		return evaluate(x, y, null, null);
@@ -51,18 +53,9 @@ public class ST_Point extends ST_Geometry {
 			//LogUtils.Log_ArgumentsNull(LOG);
 			return null;
 		}
-		try {
-			Point stPt = new Point(x.get(), y.get());
-			if (z != null)
-				stPt.setZ(z.get());
-			if (m != null)
-				stPt.setM(m.get());
-			BytesWritable ret = GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.createFromEsriGeometry(stPt, null));
-			return ret;
-		} catch (Exception e) {
-		    //LogUtils.Log_InternalError(LOG, "ST_Point: " + e);
-		    return null;
-		}
+		GeometryUtils.writePoint(resultPoint, GeometryUtils.WKID_UNKNOWN, x.get(), y.get(),
+				z != null, z == null ? 0 : z.get(), m != null, m == null ? 0 : m.get());
+		return resultPoint;
 	}
 
 	// WKT constructor - can use SetSRID on constructed point
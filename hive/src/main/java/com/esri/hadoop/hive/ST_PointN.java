@@ -45,7 +45,7 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 //		}
 //	)
 
-public class ST_PointN extends ST_GeometryAccessor {
+public class ST_PointN extends ST_Geometry {
 	static final Log LOG = LogFactory.getLog(ST_PointN.class.getName());
 
 	public BytesWritable evaluate(BytesWritable geomref, IntWritable index) {
@@ -1,5 +1,8 @@
 package com.esri.hadoop.hive;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -10,7 +13,9 @@ import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Text;
 
 
+import com.esri.core.geometry.Polygon;
 import com.esri.core.geometry.ogc.OGCGeometry;
+import com.esri.core.geometry.ogc.OGCPolygon;
 
 
 @Description(
@@ -50,27 +55,45 @@ public class ST_Polygon extends ST_Geometry {
 		}
 
 		try {
-			double xStart = xyPairs[0].get(), yStart = xyPairs[1].get();
-			String wkt = "polygon((" + xStart + " " + yStart;
-
-			int i; // index persists after first loop
-			for (i = 2; i < xyPairs.length; i += 2) {
-				wkt += ", " + xyPairs[i] + " " + xyPairs[i+1];
-			}
-			double xEnd = xyPairs[i-2].get(), yEnd = xyPairs[i-1].get();
-			// This counts on the same string getting parsed to double exactly equally
-			if (xEnd != xStart || yEnd != yStart)
-				wkt += ", " + xStart + " " + yStart;  // close the ring
-
-			wkt += "))";
-
-			return evaluate(new Text(wkt));
+			// built from the coordinates - the same polygon as from the equivalent WKT
+			Polygon polygon = new Polygon();
+			addExteriorRing(polygon, Arrays.asList(xyPairs));
+			return GeometryUtils.geometryToEsriShapeBytesWritable(new OGCPolygon(polygon, null));
 		} catch (Exception e) {
 			LogUtils.Log_InternalError(LOG, "ST_Polygon: " + e);
 			return null;
 		}
 	}
 
+	/**
+	 * Adds a ring of x, y pairs to the polygon as an exterior ring, the way the WKT
+	 * import does: the closing vertex is optional, and the ring is oriented clockwise.
+	 * Like the WKT import, the orientation is taken from the turn at the highest vertex,
+	 * so a ring that crosses itself may end up with a negative area.
+	 * 
+	 * @param polygon polygon the ring is added to
+	 * @param xyPairs at least one x, y pair
+	 */
+	static void addExteriorRing(Polygon polygon, List<DoubleWritable> xyPairs) {
+		int count = xyPairs.size();
+		int pathIndex = polygon.getPathCount();
+		double xStart = xyPairs.get(0).get(), yStart = xyPairs.get(1).get();
+
+		// the closing vertex is implied
+		if (count > 2 && xyPairs.get(count - 2).get() == xStart && xyPairs.get(count - 1).get() == yStart) {
+			count -= 2;
+		}
+
+		polygon.startPath(xStart, yStart);
+		for (int i = 2; i < count; i += 2) {
+			polygon.lineTo(xyPairs.get(i).get(), xyPairs.get(i + 1).get());
+		}
+
+		if (!GeometryUtils.isClockwiseRing(polygon, pathIndex)) {
+			polygon.reversePath(pathIndex);
+		}
+	}
+
 	// WKT constructor - can use SetSRID on constructed polygon
 	public BytesWritable evaluate(Text wkwrap) throws UDFArgumentException {
 		String wkt = wkwrap.toString();
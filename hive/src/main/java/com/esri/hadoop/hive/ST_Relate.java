@@ -3,9 +3,22 @@ package com.esri.hadoop.hive;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ConstantObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
 import org.apache.hadoop.io.BooleanWritable;
-import org.apache.hadoop.io.BytesWritable;
 
+import com.esri.core.geometry.Operator;
+import com.esri.core.geometry.OperatorRelate;
+import com.esri.core.geometry.Geometry.GeometryAccelerationDegree;
 import com.esri.core.geometry.ogc.OGCGeometry;
 
 @Description(
@@ -18,32 +31,81 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 	"  SELECT _FUNC_(st_linestring(0,0, 3,3), ST_linestring(1,1, 4,4), '****T****') from src LIMIT 1;  -- false\n"
 	)
 
-public class ST_Relate extends ST_Geometry {
+public class ST_Relate extends ST_GeometryPair {
 
 	final BooleanWritable resultBoolean = new BooleanWritable();
 	static final Log LOG = LogFactory.getLog(ST_Relate.class.getName());
 
-	public BooleanWritable evaluate(BytesWritable geometryref1, BytesWritable geometryref2, String relation)
-	{
-		if (geometryref1 == null || geometryref2 == null || relation == null ||
-		    geometryref1.getLength() == 0 || geometryref2.getLength() == 0) {
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
+	private static final int RELATION = 2;
+
+	// valid values of the 9 characters of a DE-9IM matrix pattern, which the geometry
+	// API also takes in lower case
+	private static final String MATRIX_VALUES = "TFtf*012";
+
+	private transient PrimitiveObjectInspector relationOI;
+
+	// constant relation, validated once
+	private transient String constantRelation;
+
+	private transient OGCGeometry acceleratedGeometry;
+
+	@Override
+	protected int getArgumentCount() {
+		return 3;
+	}
+
+	@Override
+	protected boolean dependsOnGeometriesOnly() {
+		return constantRelation != null;
+	}
+
+	@Override
+	protected ObjectInspector initializeResult(ObjectInspector[] OIs) throws UDFArgumentException {
+		if (OIs[RELATION].getCategory() != Category.PRIMITIVE ||
+				((PrimitiveObjectInspector)OIs[RELATION]).getPrimitiveCategory() != PrimitiveCategory.STRING) {
+			throw new UDFArgumentTypeException(RELATION, "Argument 2 must be a DE-9IM relation string");
 		}
-		if (!GeometryUtils.compareSpatialReferences(geometryref1, geometryref2)) {
-			LogUtils.Log_SRIDMismatch(LOG, geometryref1, geometryref2);
-			return null;
+
+		relationOI = (PrimitiveObjectInspector)OIs[RELATION];
+
+		constantRelation = null;
+		deaccelerate();
+
+		if (ObjectInspectorUtils.isConstantObjectInspector(OIs[RELATION])) {
+			Object value = ((ConstantObjectInspector)OIs[RELATION]).getWritableConstantValue();
+			String relation = PrimitiveObjectInspectorUtils.getString(value, relationOI);
+
+			if (relation != null) {
+				if (!isValidRelation(relation)) {
+					throw new UDFArgumentException("Invalid DE-9IM relation '" + relation + "'");
+				}
+				constantRelation = relation;
+			}
 		}
 
-		OGCGeometry ogcGeom1 = GeometryUtils.geometryFromEsriShape(geometryref1);
-		OGCGeometry ogcGeom2 = GeometryUtils.geometryFromEsriShape(geometryref2);
-		if (ogcGeom1 == null || ogcGeom2 == null){
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
+		return PrimitiveObjectInspectorFactory.writableBooleanObjectInspector;
+	}
+
+	@Override
+	protected Object evaluate(OGCGeometry ogcGeom1, OGCGeometry ogcGeom2, DeferredObject[] args) throws HiveException {
+		String relation = constantRelation;
+
+		if (relation == null) {
+			relation = PrimitiveObjectInspectorUtils.getString(args[RELATION].get(), relationOI);
+			if (relation == null) {
+				LogUtils.Log_ArgumentsNull(LOG);
+				return null;
+			}
 		}
 
 		try {
-			resultBoolean.set(ogcGeom1.relate(ogcGeom2, relation));
+			// the transposed relation is not tested with the geometries swapped, as the
+			// result of some patterns depends on the order of the geometries
+			if (geomHelper1.isConstant()) {
+				accelerate(ogcGeom1);
+			}
+			resultBoolean.set(OperatorRelate.local().execute(ogcGeom1.getEsriGeometry(), ogcGeom2.getEsriGeometry(),
+					ogcGeom1.getEsriSpatialReference(), relation, null));
 			return resultBoolean;
 		} catch (Exception e) {
 		    LogUtils.Log_InternalError(LOG, "ST_Relate: " + e);
@@ -51,4 +113,48 @@ public class ST_Relate extends ST_Geometry {
 		}
 	}
 
+	@Override
+	public void close() {
+		deaccelerate();
+	}
+
+	/**
+	 * @return true if the relation is a DE-9IM pattern the geometry API accepts
+	 */
+	static boolean isValidRelation(String relation) {
+		if (relation.length() != 9) {
+			return false;
+		}
+
+		for (int i = 0; i < relation.length(); i++) {
+			if (MATRIX_VALUES.indexOf(relation.charAt(i)) < 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * Accelerates the constant geometry the first time it is used
+	 */
+	private void accelerate(OGCGeometry geometry) {
+		if (acceleratedGeometry == null &&
+				OperatorRelate.local().accelerateGeometry(geometry.getEsriGeometry(), geometry.getEsriSpatialReference(),
+						GeometryAccelerationDegree.enumMedium)) {
+			acceleratedGeometry = geometry;
+		}
+	}
+
+	private void deaccelerate() {
+		if (acceleratedGeometry != null) {
+			Operator.deaccelerateGeometry(acceleratedGeometry.getEsriGeometry());
+			acceleratedGeometry = null;
+		}
+	}
+
+	@Override
+	protected Log getLog() {
+		return LOG;
+	}
 }
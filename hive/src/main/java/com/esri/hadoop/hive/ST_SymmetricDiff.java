@@ -3,7 +3,7 @@ package com.esri.hadoop.hive;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
-import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 
 
 import com.esri.core.geometry.ogc.OGCGeometry;
@@ -34,30 +34,16 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 //		}
 //	)
 
-public class ST_SymmetricDiff extends ST_GeometryProcessing {
-	
+public class ST_SymmetricDiff extends ST_GeometryPair {
 	static final Log LOG = LogFactory.getLog(ST_SymmetricDiff.class.getName());
 
-	public BytesWritable evaluate(BytesWritable geometryref1, BytesWritable geometryref2)
-	{
-		if (geometryref1 == null || geometryref2 == null ||
-		    geometryref1.getLength() == 0 || geometryref2.getLength() == 0) {
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
-		}
-		
-		if (!GeometryUtils.compareSpatialReferences(geometryref1, geometryref2)) {
-			LogUtils.Log_SRIDMismatch(LOG, geometryref1, geometryref2);
-			return null;
-		}
+	@Override
+	protected ObjectInspector initializeResult(ObjectInspector[] OIs) {
+		return GeometryUtils.geometryTransportObjectInspector;
+	}
 
-		OGCGeometry ogcGeom1 = GeometryUtils.geometryFromEsriShape(geometryref1);
-		OGCGeometry ogcGeom2 = GeometryUtils.geometryFromEsriShape(geometryref2);
-		if (ogcGeom1 == null || ogcGeom2 == null){
-			LogUtils.Log_ArgumentsNull(LOG);
-			return null;
-		}
-		
+	@Override
+	protected Object evaluate(OGCGeometry ogcGeom1, OGCGeometry ogcGeom2, DeferredObject[] args) {
 		try {
 			OGCGeometry diffGeometry = ogcGeom1.symDifference(ogcGeom2);
 			return GeometryUtils.geometryToEsriShapeBytesWritable(diffGeometry);
@@ -67,4 +53,8 @@ public class ST_SymmetricDiff extends ST_GeometryProcessing {
 		}
 	}
 
+	@Override
+	protected Log getLog() {
+		return LOG;
+	}
 }
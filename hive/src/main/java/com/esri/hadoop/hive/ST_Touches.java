@@ -20,6 +20,12 @@ public class ST_Touches extends ST_GeometryRelational {
 		return OperatorTouches.local();
 	}
 
+	@Override
+	protected OperatorSimpleRelation getInverseRelationOperator() {
+		// the relation is symmetric
+		return OperatorTouches.local();
+	}
+
 	@Override
 	public String getDisplayString(String[] args) {
 		return String.format("returns true if %s touches %s", args[0], args[1]);
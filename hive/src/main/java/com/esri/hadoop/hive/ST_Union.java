@@ -3,6 +3,11 @@ package com.esri.hadoop.hive;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.exec.UDFArgumentLengthException;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.io.BytesWritable;
 
 
@@ -33,71 +38,102 @@ import com.esri.core.geometry.ogc.OGCGeometry;
 //						)
 //			}
 //		)
-public class ST_Union extends ST_GeometryProcessing
+public class ST_Union extends GenericUDF
 {		
 	static final Log LOG = LogFactory.getLog(ST_Union.class.getName());
-	
-	public BytesWritable evaluate (BytesWritable ... geomrefs){
+
+	private transient HiveGeometryOIHelper [] geomHelpers;
+
+	// all geometries are constant, so the union is only computed once
+	private transient boolean isConstant;
+	private transient BytesWritable constantUnion;
+
+	@Override
+	public ObjectInspector initialize(ObjectInspector[] OIs)
+			throws UDFArgumentException {
+
 		// validate arguments
-		if (geomrefs == null || geomrefs.length < 2){
-			LogUtils.Log_VariableArgumentLength(LOG);
+		if (OIs.length < 2) {
+			throw new UDFArgumentLengthException("Function takes 2 or more arguments");
+		}
+
+		geomHelpers = new HiveGeometryOIHelper[OIs.length];
+		isConstant = true;
+
+		for (int i = 0; i < OIs.length; i++) {
+			geomHelpers[i] = HiveGeometryOIHelper.create(OIs, i);
+			isConstant &= geomHelpers[i].isConstant();
+		}
+
+		constantUnion = null;
+
+		return GeometryUtils.geometryTransportObjectInspector;
+	}
+
+	@Override
+	public Object evaluate(DeferredObject[] args) throws HiveException {
+		if (constantUnion != null) {
+			return constantUnion;
 		}
 
 		int firstWKID = 0;
 
 		SpatialReference spatialRef = null;
 
-		// validate spatial references and geometries first
-		for (int i=0;i<geomrefs.length; i++){
-			
-			BytesWritable geomref = geomrefs[i];
-			
-			if (geomref == null || geomref.getLength() == 0){
+		// now build geometry array to pass to GeometryEngine.union, validating
+		// spatial references and geometries
+		Geometry [] geomsToUnion = new Geometry[geomHelpers.length];
+
+		for (int i=0;i<geomHelpers.length;i++){
+			OGCGeometry ogcGeometry = geomHelpers[i].getGeometry(args);
+
+			if (ogcGeometry == null){
 				LogUtils.Log_ArgumentsNull(LOG);
 				return null;
 			}
 
+			int wkid = GeometryUtils.getWKID(ogcGeometry);
+
 			if (i==0){
-				firstWKID = GeometryUtils.getWKID(geomref);
-				if (firstWKID != GeometryUtils.WKID_UNKNOWN) {
-					spatialRef = SpatialReference.create(firstWKID);
-				}
-			} else if (firstWKID != GeometryUtils.getWKID(geomref)){
-				LogUtils.Log_SRIDMismatch(LOG, geomrefs[0], geomref);
+				firstWKID = wkid;
+				spatialRef = ogcGeometry.getEsriSpatialReference();
+			} else if (firstWKID != wkid){
+				LogUtils.Log_SRIDMismatch(LOG, firstWKID, wkid);
 				return null;
 			}
-		}
-		
-		// now build geometry array to pass to GeometryEngine.union
-		Geometry [] geomsToUnion = new Geometry[geomrefs.length];
-		
-		for (int i=0;i<geomrefs.length;i++){
-			//HiveGeometry hiveGeometry = GeometryUtils.geometryFromEsriShape(geomrefs[i]);
-			OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomrefs[i]);
-			
-			// if (i==0){   // get from ogcGeometry rather than re-create above?
-			// 	spatialRef = hiveGeometry.spatialReference;
-			// }
-			
-			if (ogcGeometry == null){
-				LogUtils.Log_ArgumentsNull(LOG);
-				return null;
-			}
-			
+
 			geomsToUnion[i] = ogcGeometry.getEsriGeometry();
 		}
-		
+
 		try {
 			Geometry unioned = GeometryEngine.union(geomsToUnion, spatialRef);
 
 			// we have to infer the type of the differenced geometry because we don't know
 			// if it's going to end up as a single or multi-part geometry
 			OGCType inferredType = GeometryUtils.getInferredOGCType(unioned);
-			
-			return GeometryUtils.geometryToEsriShapeBytesWritable(unioned, firstWKID, inferredType);
+
+			BytesWritable result = GeometryUtils.geometryToEsriShapeBytesWritable(unioned, firstWKID, inferredType);
+
+			if (isConstant) {
+				constantUnion = result;
+			}
+
+			return result;
 		} catch (Exception e){
 			LogUtils.Log_ExceptionThrown(LOG, "GeometryEngine.union", e);
 			return null;
 		}
 	}
+
+	@Override
+	public String getDisplayString(String[] args) {
+		StringBuilder builder = new StringBuilder("st_union(");
+		for (int i = 0; i < args.length; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(args[i]);
+		}
+		return builder.append(')').toString();
+	}
 }
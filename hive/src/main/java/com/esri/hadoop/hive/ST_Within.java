@@ -2,6 +2,8 @@ package com.esri.hadoop.hive;
 
 import org.apache.hadoop.hive.ql.exec.Description;
 
+import com.esri.core.geometry.Envelope;
+import com.esri.core.geometry.OperatorContains;
 import com.esri.core.geometry.OperatorSimpleRelation;
 import com.esri.core.geometry.OperatorWithin;
 
@@ -20,6 +22,17 @@ public class ST_Within extends ST_GeometryRelational {
 		return OperatorWithin.local();
 	}
 
+	@Override
+	protected OperatorSimpleRelation getInverseRelationOperator() {
+		return OperatorContains.local();
+	}
+
+	@Override
+	protected Boolean relateEnvelopes(Envelope envelope1, Envelope envelope2, double tolerance) {
+		// geometry 1 can only be within geometry 2 if its envelope is
+		return envelopeContains(envelope2, envelope1, tolerance) ? null : Boolean.FALSE;
+	}
+
 	@Override
 	public String getDisplayString(String[] args) {
 		return String.format("returns true if %s within %s", args[0], args[1]);
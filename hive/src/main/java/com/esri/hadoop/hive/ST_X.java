@@ -7,10 +7,6 @@ import org.apache.hadoop.io.BytesWritable;
 // DoubleWritable - must use hive-serde2; the other one produces struct {value:d.d}
 import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 
-
-import com.esri.core.geometry.ogc.OGCGeometry;
-import com.esri.core.geometry.ogc.OGCPoint;
-
 @Description(name = "ST_X",
    value = "_FUNC_(point) - returns the X coordinate of point",
    extended = "Example:\n"
@@ -43,15 +39,18 @@ public class ST_X extends ST_GeometryAccessor {
 			return null;
 		}
 
-		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomref);
-		if (ogcGeometry == null){
+		if (GeometryUtils.isNullShape(geomref)){
 			return null;
 		}
 
 		switch(GeometryUtils.getType(geomref)) {
 		case ST_POINT:
-			OGCPoint pt = (OGCPoint)ogcGeometry;
-			resultDouble.set(pt.X());
+			// read straight from the point shape - no need to deserialize
+			double x = GeometryUtils.getPointX(geomref);
+			if (Double.isNaN(x)) {  // empty point
+				return null;
+			}
+			resultDouble.set(x);
 			return resultDouble;
 		default:
 			LogUtils.Log_InvalidType(LOG, GeometryUtils.OGCType.ST_POINT, GeometryUtils.getType(geomref));
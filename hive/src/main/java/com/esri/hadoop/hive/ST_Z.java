@@ -7,10 +7,6 @@ import org.apache.hadoop.io.BytesWritable;
 // DoubleWritable - must use hive-serde2; the other one produces struct {value:d.d}
 import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 
-
-import com.esri.core.geometry.ogc.OGCGeometry;
-import com.esri.core.geometry.ogc.OGCPoint;
-
 @Description(name = "ST_Z",
    value = "_FUNC_(point) - returns the Z coordinate of point",
    extended = "Example:\n"
@@ -51,19 +47,22 @@ public class ST_Z extends ST_GeometryAccessor {
 			return null;
 		}
 
-		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomref);
-		if (ogcGeometry == null){
+		if (GeometryUtils.isNullShape(geomref)){
 			return null;
 		}
-		if (!ogcGeometry.is3D()) {
+		if (!GeometryUtils.hasZ(geomref)) {
 			LogUtils.Log_Not3D(LOG);
 			return null;
 		}
 
 		switch(GeometryUtils.getType(geomref)) {
 		case ST_POINT:
-			OGCPoint pt = (OGCPoint)ogcGeometry;
-			resultDouble.set(pt.Z());
+			// read straight from the point shape - no need to deserialize
+			double z = GeometryUtils.getPointZ(geomref);
+			if (Double.isNaN(GeometryUtils.getPointX(geomref))) {  // empty point
+				return null;
+			}
+			resultDouble.set(z);
 			return resultDouble;
 		default:
 			LogUtils.Log_InvalidType(LOG, GeometryUtils.OGCType.ST_POINT, GeometryUtils.getType(geomref));
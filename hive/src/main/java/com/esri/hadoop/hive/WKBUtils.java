@@ -0,0 +1,594 @@
+package com.esri.hadoop.hive;
+
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.io.BytesWritable;
+
+/**
+ * Reads OGC well-known binary (WKB) without copying it.
+ *
+ * 2D points, line strings and polygons are transcoded from WKB to hive geometry
+ * bytes in one pass, without creating the geometry.  The bytes are the same as
+ * those of the geometry imported from the WKB and serialized.  Other geometries
+ * (multi-part, with Z or M, or degenerate) are left to the geometry API.
+ *
+ * The other way around, hive geometry bytes of 2D points, multipoints, polylines
+ * and polygons are transcoded to the same WKB as the geometry API exports.
+ */
+public class WKBUtils {
+
+	public static final int WKB_POINT = 1;
+	public static final int WKB_LINESTRING = 2;
+	public static final int WKB_POLYGON = 3;
+	public static final int WKB_MULTIPOINT = 4;
+	public static final int WKB_MULTILINESTRING = 5;
+	public static final int WKB_MULTIPOLYGON = 6;
+
+	static final int WKB_HEADER_SIZE = 5;  // byte order, type
+	static final int WKB_POINT_SIZE = 16;
+
+	private static final int SHAPE_POINT = 1;
+	private static final int SHAPE_POLYLINE = 3;
+	private static final int SHAPE_POLYGON = 5;
+	private static final int SHAPE_MULTIPOINT = 8;
+	private static final int SHAPE_PARTS_OFFSET = 44;  // type, bounding box, part and point counts
+
+	// the geometry API decides the orientation of rings whose area is this small
+	// relative to their envelope
+	private static final double MIN_RELATIVE_RING_AREA = 1e-9;
+
+	// turns flatter than this, relative to their edges, may have either orientation
+	// in the exact arithmetic of the geometry API
+	private static final double MIN_RELATIVE_TURN = 1e-12;
+
+	/**
+	 * Wraps the valid bytes of the WKB, without copying them - the backing array
+	 * of the writable may be longer than the WKB.
+	 *
+	 * @param wkb well-known binary
+	 * @return buffer starting at the first byte of the WKB
+	 */
+	public static ByteBuffer wrap(BytesWritable wkb) {
+		return ByteBuffer.wrap(wkb.getBytes(), 0, wkb.getLength()).slice();
+	}
+
+	/**
+	 * Reads the geometry type of the WKB
+	 *
+	 * @param wkb well-known binary
+	 * @return WKB geometry type, or 0 if the bytes are not WKB
+	 */
+	public static int getType(BytesWritable wkb) {
+		byte [] bytes = wkb.getBytes();
+
+		if (wkb.getLength() < WKB_HEADER_SIZE || (bytes[0] != 0 && bytes[0] != 1)) {
+			return 0;
+		}
+
+		return readInt(bytes, 1, bytes[0] == 1);
+	}
+
+	/**
+	 * Transcodes a 2D point, line string or polygon from WKB to hive geometry bytes,
+	 * without creating the geometry.
+	 *
+	 * @param wkb well-known binary
+	 * @param wkid WKID of the spatial reference of the geometry
+	 * @param geomref writable to be set to the hive geometry bytes, reusing its buffer
+	 * @return false if the geometry has to be imported by the geometry API, in which
+	 * case geomref is left as is
+	 */
+	public static boolean transcode(BytesWritable wkb, int wkid, BytesWritable geomref) {
+		byte [] bytes = wkb.getBytes();
+		int length = wkb.getLength();
+
+		switch (getType(wkb)) {
+		case WKB_POINT:
+			return transcodePoint(bytes, length, bytes[0] == 1, wkid, geomref);
+		case WKB_LINESTRING:
+			return transcodeLineString(bytes, length, bytes[0] == 1, wkid, geomref);
+		case WKB_POLYGON:
+			return transcodePolygon(bytes, length, bytes[0] == 1, wkid, geomref);
+		default:
+			return false;
+		}
+	}
+
+	private static boolean transcodePoint(byte [] bytes, int length, boolean littleEndian, int wkid, BytesWritable geomref) {
+		if (length < WKB_HEADER_SIZE + WKB_POINT_SIZE) {
+			return false;
+		}
+
+		GeometryUtils.writePoint(geomref, wkid, readDouble(bytes, WKB_HEADER_SIZE, littleEndian),
+				readDouble(bytes, WKB_HEADER_SIZE + 8, littleEndian));
+		return true;
+	}
+
+	private static boolean transcodeLineString(byte [] bytes, int length, boolean littleEndian, int wkid, BytesWritable geomref) {
+		int offset = WKB_HEADER_SIZE + 4;
+		if (length < offset) {
+			return false;
+		}
+
+		int count = readInt(bytes, WKB_HEADER_SIZE, littleEndian);
+		if (count < 2 || count > (length - offset) / WKB_POINT_SIZE || hasNaN(bytes, offset, count, littleEndian)) {
+			return false;
+		}
+
+		int shapeOffset = GeometryUtils.SHAPE_OFFSET;
+		int pointOffset = shapeOffset + SHAPE_PARTS_OFFSET + 4;
+
+		geomref.setSize(pointOffset + count * WKB_POINT_SIZE);
+		byte [] shape = geomref.getBytes();
+
+		GeometryUtils.writeInt(shape, shapeOffset, SHAPE_POLYLINE);
+		GeometryUtils.writeInt(shape, shapeOffset + 36, 1);
+		GeometryUtils.writeInt(shape, shapeOffset + 40, count);
+		GeometryUtils.writeInt(shape, shapeOffset + SHAPE_PARTS_OFFSET, 0);
+
+		for (int i = 0; i < count; i++) {
+			copyPoint(bytes, offset + i * WKB_POINT_SIZE, littleEndian, shape, pointOffset + i * WKB_POINT_SIZE);
+		}
+
+		writeBoundingBox(shape, shapeOffset, pointOffset, count);
+		GeometryUtils.writeHeader(shape, wkid, GeometryUtils.OGCType.ST_LINESTRING);
+		return true;
+	}
+
+	/*
+	 * Like the import of the geometry API, the closing vertex of a ring is optional, the
+	 * first ring is oriented clockwise (exterior) and the others counterclockwise (holes),
+	 * and reversing a ring keeps its first vertex.  The shape repeats the first vertex
+	 * at the end of each ring.  Rings that cross themselves may be oriented differently
+	 * by the geometry API, and are left to it.
+	 */
+	private static boolean transcodePolygon(byte [] bytes, int length, boolean littleEndian, int wkid, BytesWritable geomref) {
+		if (length < WKB_HEADER_SIZE + 4) {
+			return false;
+		}
+
+		int ringCount = readInt(bytes, WKB_HEADER_SIZE, littleEndian);
+		if (ringCount < 1 || ringCount > (length - WKB_HEADER_SIZE - 4) / 4) {
+			return false;
+		}
+
+		// validate the rings and count the points of the shape
+		int offset = WKB_HEADER_SIZE + 4;
+		int pointCount = 0;
+		for (int ring = 0; ring < ringCount; ring++) {
+			int count = offset + 4 <= length ? readInt(bytes, offset, littleEndian) : 0;
+			offset += 4;
+
+			if (count < 3 || count > (length - offset) / WKB_POINT_SIZE || hasNaN(bytes, offset, count, littleEndian)) {
+				return false;
+			}
+
+			int vertexCount = getVertexCount(bytes, offset, count, littleEndian);
+			if (vertexCount < 3 || isDegenerate(bytes, offset, vertexCount, littleEndian) ||
+					!isOrientedByArea(bytes, offset, vertexCount, littleEndian)) {
+				return false;
+			}
+
+			pointCount += vertexCount + 1;
+			offset += count * WKB_POINT_SIZE;
+		}
+
+		int shapeOffset = GeometryUtils.SHAPE_OFFSET;
+		int pointOffset = shapeOffset + SHAPE_PARTS_OFFSET + 4 * ringCount;
+
+		geomref.setSize(pointOffset + pointCount * WKB_POINT_SIZE);
+		byte [] shape = geomref.getBytes();
+
+		GeometryUtils.writeInt(shape, shapeOffset, SHAPE_POLYGON);
+		GeometryUtils.writeInt(shape, shapeOffset + 36, ringCount);
+		GeometryUtils.writeInt(shape, shapeOffset + 40, pointCount);
+
+		offset = WKB_HEADER_SIZE + 4;
+		int point = 0;
+		for (int ring = 0; ring < ringCount; ring++) {
+			int count = readInt(bytes, offset, littleEndian);
+			offset += 4;
+
+			int vertexCount = getVertexCount(bytes, offset, count, littleEndian);
+			double area = getSignedArea(bytes, offset, vertexCount, littleEndian);
+			boolean reverse = ring == 0 ? area > 0 : area < 0;
+
+			GeometryUtils.writeInt(shape, shapeOffset + SHAPE_PARTS_OFFSET + 4 * ring, point);
+
+			copyPoint(bytes, offset, littleEndian, shape, pointOffset + point++ * WKB_POINT_SIZE);
+			for (int i = 1; i < vertexCount; i++) {
+				int vertex = reverse ? vertexCount - i : i;
+				copyPoint(bytes, offset + vertex * WKB_POINT_SIZE, littleEndian, shape, pointOffset + point++ * WKB_POINT_SIZE);
+			}
+			copyPoint(bytes, offset, littleEndian, shape, pointOffset + point++ * WKB_POINT_SIZE);
+
+			offset += count * WKB_POINT_SIZE;
+		}
+
+		writeBoundingBox(shape, shapeOffset, pointOffset, pointCount);
+		GeometryUtils.writeHeader(shape, wkid, GeometryUtils.OGCType.ST_POLYGON);
+		return true;
+	}
+
+	/**
+	 * Transcodes hive geometry bytes of a 2D point, multipoint, polyline or polygon to
+	 * little endian WKB, without creating the geometry.  The WKB is the same as the one
+	 * exported by the geometry API: single part polylines and polygons are exported
+	 * as line strings and polygons, and rings are reversed to be counterclockwise.
+	 * 
+	 * @param geomref hive geometry bytes
+	 * @param wkb writable to be set to the WKB, reusing its buffer
+	 * @return false if the geometry has to be exported by the geometry API, in which
+	 * case wkb is left as is
+	 */
+	public static boolean exportToWKB(BytesWritable geomref, BytesWritable wkb) {
+		byte [] bytes = geomref.getBytes();
+		int length = geomref.getLength();
+
+		int shapeOffset = GeometryUtils.SHAPE_OFFSET;
+		if (length < shapeOffset + 4) {
+			return false;
+		}
+
+		switch (GeometryUtils.readInt(bytes, shapeOffset)) {
+		case SHAPE_POINT:
+			return exportPoint(geomref, wkb);
+		case SHAPE_MULTIPOINT:
+			return exportMultiPoint(bytes, length, shapeOffset, wkb);
+		case SHAPE_POLYLINE:
+			return exportPolyline(bytes, length, shapeOffset, wkb);
+		case SHAPE_POLYGON:
+			return exportPolygon(bytes, length, shapeOffset, wkb);
+		default:
+			return false;
+		}
+	}
+
+	private static boolean exportPoint(BytesWritable geomref, BytesWritable wkb) {
+		double x = GeometryUtils.getPointX(geomref);
+		double y = GeometryUtils.getPointY(geomref);
+
+		// an empty point has no data for both coordinates
+		if (Double.isNaN(x) != Double.isNaN(y)) {
+			return false;
+		}
+
+		wkb.setSize(WKB_HEADER_SIZE + WKB_POINT_SIZE);
+		byte [] out = wkb.getBytes();
+		writeHeader(out, 0, WKB_POINT);
+		GeometryUtils.writeDouble(out, WKB_HEADER_SIZE, x);
+		GeometryUtils.writeDouble(out, WKB_HEADER_SIZE + 8, y);
+		return true;
+	}
+
+	/*
+	 * A multipoint of one point is left to the geometry API, which may write it as a point
+	 */
+	private static boolean exportMultiPoint(byte [] bytes, int length, int shapeOffset, BytesWritable wkb) {
+		int pointOffset = shapeOffset + 40;
+		if (length < pointOffset) {
+			return false;
+		}
+
+		int count = GeometryUtils.readInt(bytes, shapeOffset + 36);
+		if (count < 2 || count > (length - pointOffset) / WKB_POINT_SIZE || hasNaN(bytes, pointOffset, count, true)) {
+			return false;
+		}
+
+		wkb.setSize(WKB_HEADER_SIZE + 4 + count * (WKB_HEADER_SIZE + WKB_POINT_SIZE));
+		byte [] out = wkb.getBytes();
+		writeHeader(out, 0, WKB_MULTIPOINT);
+		GeometryUtils.writeInt(out, WKB_HEADER_SIZE, count);
+
+		int offset = WKB_HEADER_SIZE + 4;
+		for (int i = 0; i < count; i++) {
+			writeHeader(out, offset, WKB_POINT);
+			System.arraycopy(bytes, pointOffset + i * WKB_POINT_SIZE, out, offset + WKB_HEADER_SIZE, WKB_POINT_SIZE);
+			offset += WKB_HEADER_SIZE + WKB_POINT_SIZE;
+		}
+		return true;
+	}
+
+	private static boolean exportPolyline(byte [] bytes, int length, int shapeOffset, BytesWritable wkb) {
+		if (length < shapeOffset + SHAPE_PARTS_OFFSET) {
+			return false;
+		}
+
+		int partCount = GeometryUtils.readInt(bytes, shapeOffset + 36);
+		int pointCount = GeometryUtils.readInt(bytes, shapeOffset + 40);
+		int pointOffset = shapeOffset + SHAPE_PARTS_OFFSET + 4 * partCount;
+
+		if (!isValidMultiPath(bytes, length, shapeOffset, partCount, pointCount, 2)) {
+			return false;
+		}
+
+		// a line string, or a multi line string of line strings
+		int size = partCount == 1 ? WKB_HEADER_SIZE + 4 : WKB_HEADER_SIZE + 4 + partCount * (WKB_HEADER_SIZE + 4);
+		wkb.setSize(size + pointCount * WKB_POINT_SIZE);
+		byte [] out = wkb.getBytes();
+
+		int offset = 0;
+		if (partCount > 1) {
+			writeHeader(out, 0, WKB_MULTILINESTRING);
+			GeometryUtils.writeInt(out, WKB_HEADER_SIZE, partCount);
+			offset = WKB_HEADER_SIZE + 4;
+		}
+
+		for (int part = 0; part < partCount; part++) {
+			int start = getPartStart(bytes, shapeOffset, partCount, pointCount, part);
+			int count = getPartStart(bytes, shapeOffset, partCount, pointCount, part + 1) - start;
+
+			writeHeader(out, offset, WKB_LINESTRING);
+			GeometryUtils.writeInt(out, offset + WKB_HEADER_SIZE, count);
+			offset += WKB_HEADER_SIZE + 4;
+
+			System.arraycopy(bytes, pointOffset + start * WKB_POINT_SIZE, out, offset, count * WKB_POINT_SIZE);
+			offset += count * WKB_POINT_SIZE;
+		}
+		return true;
+	}
+
+	/*
+	 * Each exterior ring (clockwise in the shape) starts a polygon, followed by its holes
+	 */
+	private static boolean exportPolygon(byte [] bytes, int length, int shapeOffset, BytesWritable wkb) {
+		if (length < shapeOffset + SHAPE_PARTS_OFFSET) {
+			return false;
+		}
+
+		int ringCount = GeometryUtils.readInt(bytes, shapeOffset + 36);
+		int pointCount = GeometryUtils.readInt(bytes, shapeOffset + 40);
+		int pointOffset = shapeOffset + SHAPE_PARTS_OFFSET + 4 * ringCount;
+
+		if (!isValidMultiPath(bytes, length, shapeOffset, ringCount, pointCount, 4)) {
+			return false;
+		}
+
+		int polygonCount = 0;
+		for (int ring = 0; ring < ringCount; ring++) {
+			int start = getPartStart(bytes, shapeOffset, ringCount, pointCount, ring);
+			int count = getPartStart(bytes, shapeOffset, ringCount, pointCount, ring + 1) - start;
+			int ringOffset = pointOffset + start * WKB_POINT_SIZE;
+
+			if (getVertexCount(bytes, ringOffset, count, true) != count - 1 ||
+					isDegenerate(bytes, ringOffset, count - 1, true)) {
+				return false;
+			}
+
+			if (getSignedArea(bytes, ringOffset, count - 1, true) < 0) {
+				polygonCount++;
+			} else if (ring == 0) {
+				return false;
+			}
+		}
+
+		// a polygon, or a multi polygon of polygons
+		int size = polygonCount == 1 ? WKB_HEADER_SIZE + 4 : WKB_HEADER_SIZE + 4 + polygonCount * (WKB_HEADER_SIZE + 4);
+		wkb.setSize(size + 4 * ringCount + pointCount * WKB_POINT_SIZE);
+		byte [] out = wkb.getBytes();
+
+		int offset = 0;
+		if (polygonCount > 1) {
+			writeHeader(out, 0, WKB_MULTIPOLYGON);
+			GeometryUtils.writeInt(out, WKB_HEADER_SIZE, polygonCount);
+			offset = WKB_HEADER_SIZE + 4;
+		}
+
+		int polygonOffset = offset;
+		int polygonRingCount = 0;
+		for (int ring = 0; ring < ringCount; ring++) {
+			int start = getPartStart(bytes, shapeOffset, ringCount, pointCount, ring);
+			int count = getPartStart(bytes, shapeOffset, ringCount, pointCount, ring + 1) - start;
+			int ringOffset = pointOffset + start * WKB_POINT_SIZE;
+
+			if (getSignedArea(bytes, ringOffset, count - 1, true) < 0) {
+				if (ring > 0) {
+					GeometryUtils.writeInt(out, polygonOffset + WKB_HEADER_SIZE, polygonRingCount);
+				}
+				polygonOffset = offset;
+				polygonRingCount = 0;
+				writeHeader(out, offset, WKB_POLYGON);
+				offset += WKB_HEADER_SIZE + 4;
+			}
+
+			polygonRingCount++;
+			GeometryUtils.writeInt(out, offset, count);
+			offset += 4;
+
+			// the ring in reverse, from the closing vertex back to the first vertex
+			for (int i = count - 1; i >= 0; i--) {
+				System.arraycopy(bytes, ringOffset + i * WKB_POINT_SIZE, out, offset, WKB_POINT_SIZE);
+				offset += WKB_POINT_SIZE;
+			}
+		}
+		GeometryUtils.writeInt(out, polygonOffset + WKB_HEADER_SIZE, polygonRingCount);
+		return true;
+	}
+
+	/*
+	 * Checks the part and point counts of a polyline or polygon shape against its length
+	 */
+	private static boolean isValidMultiPath(byte [] bytes, int length, int shapeOffset, int partCount, int pointCount, int minPartSize) {
+		if (partCount < 1 || partCount > (length - shapeOffset - SHAPE_PARTS_OFFSET) / 4) {
+			return false;
+		}
+
+		int pointOffset = shapeOffset + SHAPE_PARTS_OFFSET + 4 * partCount;
+		if (pointCount < 0 || pointCount > (length - pointOffset) / WKB_POINT_SIZE ||
+				hasNaN(bytes, pointOffset, pointCount, true)) {
+			return false;
+		}
+
+		for (int part = 0; part < partCount; part++) {
+			int start = getPartStart(bytes, shapeOffset, partCount, pointCount, part);
+			int end = getPartStart(bytes, shapeOffset, partCount, pointCount, part + 1);
+			if (start < 0 || end - start < minPartSize) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int getPartStart(byte [] bytes, int shapeOffset, int partCount, int pointCount, int part) {
+		return part == partCount ? pointCount : GeometryUtils.readInt(bytes, shapeOffset + SHAPE_PARTS_OFFSET + 4 * part);
+	}
+
+	/*
+	 * Writes the little endian byte order and the geometry type
+	 */
+	private static void writeHeader(byte [] bytes, int offset, int type) {
+		bytes[offset] = 1;
+		GeometryUtils.writeInt(bytes, offset + 1, type);
+	}
+
+	/*
+	 * Number of vertices of the ring without the closing vertex
+	 */
+	private static int getVertexCount(byte [] bytes, int offset, int count, boolean littleEndian) {
+		int last = offset + (count - 1) * WKB_POINT_SIZE;
+		boolean closed = readDouble(bytes, offset, littleEndian) == readDouble(bytes, last, littleEndian) &&
+				readDouble(bytes, offset + 8, littleEndian) == readDouble(bytes, last + 8, littleEndian);
+		return closed ? count - 1 : count;
+	}
+
+	/*
+	 * Twice the area of the ring, positive when counterclockwise
+	 */
+	private static double getSignedArea(byte [] bytes, int offset, int vertexCount, boolean littleEndian) {
+		double x0 = readDouble(bytes, offset, littleEndian);
+		double y0 = readDouble(bytes, offset + 8, littleEndian);
+		double area = 0;
+
+		double x1 = 0, y1 = 0;
+		for (int i = 1; i < vertexCount; i++) {
+			double x2 = readDouble(bytes, offset + i * WKB_POINT_SIZE, littleEndian) - x0;
+			double y2 = readDouble(bytes, offset + i * WKB_POINT_SIZE + 8, littleEndian) - y0;
+			area += x1 * y2 - x2 * y1;
+			x1 = x2;
+			y1 = y2;
+		}
+
+		return area;
+	}
+
+	private static boolean isDegenerate(byte [] bytes, int offset, int vertexCount, boolean littleEndian) {
+		double xmin = Double.POSITIVE_INFINITY, ymin = Double.POSITIVE_INFINITY;
+		double xmax = Double.NEGATIVE_INFINITY, ymax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < vertexCount; i++) {
+			double x = readDouble(bytes, offset + i * WKB_POINT_SIZE, littleEndian);
+			double y = readDouble(bytes, offset + i * WKB_POINT_SIZE + 8, littleEndian);
+			xmin = Math.min(xmin, x);
+			xmax = Math.max(xmax, x);
+			ymin = Math.min(ymin, y);
+			ymax = Math.max(ymax, y);
+		}
+
+		double area = Math.abs(getSignedArea(bytes, offset, vertexCount, littleEndian));
+		return !(area > 2 * MIN_RELATIVE_RING_AREA * (xmax - xmin) * (ymax - ymin));
+	}
+
+	/*
+	 * The geometry API takes the orientation of a ring from the turn at its highest
+	 * vertex (the first with the largest y, then x), which only agrees with the sign
+	 * of the area for rings that do not cross themselves.  Rings where they disagree,
+	 * or where the turn is too flat to tell, are left to the geometry API.
+	 */
+	private static boolean isOrientedByArea(byte [] bytes, int offset, int vertexCount, boolean littleEndian) {
+		int highest = 0;
+		double xmax = readDouble(bytes, offset, littleEndian);
+		double ymax = readDouble(bytes, offset + 8, littleEndian);
+		for (int i = 1; i < vertexCount; i++) {
+			double x = readDouble(bytes, offset + i * WKB_POINT_SIZE, littleEndian);
+			double y = readDouble(bytes, offset + i * WKB_POINT_SIZE + 8, littleEndian);
+			if (y > ymax || (y == ymax && x > xmax)) {
+				highest = i;
+				xmax = x;
+				ymax = y;
+			}
+		}
+
+		int prev = offset + ((highest + vertexCount - 1) % vertexCount) * WKB_POINT_SIZE;
+		int next = offset + ((highest + 1) % vertexCount) * WKB_POINT_SIZE;
+		double x = xmax;
+		double dx1 = x - readDouble(bytes, prev, littleEndian);
+		double dy1 = ymax - readDouble(bytes, prev + 8, littleEndian);
+		double dx2 = readDouble(bytes, next, littleEndian) - x;
+		double dy2 = readDouble(bytes, next + 8, littleEndian) - ymax;
+
+		double turn = dx1 * dy2 - dy1 * dx2;  // positive when counterclockwise
+		double scale = (Math.abs(dx1) + Math.abs(dy1)) * (Math.abs(dx2) + Math.abs(dy2));
+		if (!(Math.abs(turn) > MIN_RELATIVE_TURN * scale)) {
+			return false;
+		}
+
+		return turn > 0 == getSignedArea(bytes, offset, vertexCount, littleEndian) > 0;
+	}
+
+	private static boolean hasNaN(byte [] bytes, int offset, int count, boolean littleEndian) {
+		for (int i = 0; i < 2 * count; i++) {
+			if (Double.isNaN(readDouble(bytes, offset + i * 8, littleEndian))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void copyPoint(byte [] bytes, int offset, boolean littleEndian, byte [] shape, int shapeOffset) {
+		if (littleEndian) {
+			System.arraycopy(bytes, offset, shape, shapeOffset, WKB_POINT_SIZE);
+		} else {
+			GeometryUtils.writeDouble(shape, shapeOffset, readDouble(bytes, offset, false));
+			GeometryUtils.writeDouble(shape, shapeOffset + 8, readDouble(bytes, offset + 8, false));
+		}
+	}
+
+	/*
+	 * Writes the bounding box of the shape points, in the order of the points
+	 */
+	private static void writeBoundingBox(byte [] shape, int shapeOffset, int pointOffset, int count) {
+		double xmin = GeometryUtils.readDouble(shape, pointOffset);
+		double ymin = GeometryUtils.readDouble(shape, pointOffset + 8);
+		double xmax = xmin, ymax = ymin;
+
+		for (int i = 1; i < count; i++) {
+			double x = GeometryUtils.readDouble(shape, pointOffset + i * WKB_POINT_SIZE);
+			double y = GeometryUtils.readDouble(shape, pointOffset + i * WKB_POINT_SIZE + 8);
+			if (x < xmin) {
+				xmin = x;
+			} else if (x > xmax) {
+				xmax = x;
+			}
+			if (y < ymin) {
+				ymin = y;
+			} else if (y > ymax) {
+				ymax = y;
+			}
+		}
+
+		GeometryUtils.writeDouble(shape, shapeOffset + 4, xmin);
+		GeometryUtils.writeDouble(shape, shapeOffset + 12, ymin);
+		GeometryUtils.writeDouble(shape, shapeOffset + 20, xmax);
+		GeometryUtils.writeDouble(shape, shapeOffset + 28, ymax);
+	}
+
+	private static int readInt(byte [] bytes, int offset, boolean littleEndian) {
+		if (littleEndian) {
+			return GeometryUtils.readInt(bytes, offset);
+		}
+
+		return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16) |
+				((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+	}
+
+	private static double readDouble(byte [] bytes, int offset, boolean littleEndian) {
+		if (littleEndian) {
+			return GeometryUtils.readDouble(bytes, offset);
+		}
+
+		long bits = 0;
+		for (int i = 0; i < 8; i++) {
+			bits = (bits << 8) | (bytes[offset + i] & 0xff);
+		}
+		return Double.longBitsToDouble(bits);
+	}
+}
@@ -0,0 +1,511 @@
+package com.esri.hadoop.hive;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Writes and reads OGC well-known text (WKT) without creating the geometry.
+ *
+ * Hive geometry bytes of 2D points, multipoints of more than one point, polylines
+ * and polygons are written as the same WKT as the geometry API exports, straight
+ * into a reused text.  2D points, line strings and polygons are read from the bytes of the
+ * text into WKB, which is transcoded to hive geometry bytes by {@link WKBUtils}.
+ * Other geometries, including polygons with rings that cross themselves, are left
+ * to the geometry API.
+ *
+ * The buffers are reused from row to row, so an instance must not be shared
+ * between threads.
+ */
+public class WKTUtils {
+
+	private static final byte [] POINT = { 'P', 'O', 'I', 'N', 'T' };
+	private static final byte [] LINESTRING = { 'L', 'I', 'N', 'E', 'S', 'T', 'R', 'I', 'N', 'G' };
+	private static final byte [] POLYGON = { 'P', 'O', 'L', 'Y', 'G', 'O', 'N' };
+
+	// powers of ten that are exact doubles
+	private static final double [] POW10 = new double [23];
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++) {
+			POW10[i] = POW10[i - 1] * 10;
+		}
+	}
+
+	// doubles with up to this many significant digits are written and read exactly
+	private static final int MAX_FAST_DIGITS = 15;
+	private static final double MAX_FAST_VALUE = 1e15;
+
+	// the geometry API writes smaller values in scientific notation
+	private static final double MIN_PLAIN_VALUE = 1e-4;
+
+	private final BytesWritable wkb = new BytesWritable();
+
+	private byte [] text = new byte [256];
+	private int length;
+
+	// position in the text being read
+	private int position;
+
+	/**
+	 * Writes the WKT of the geometry, as exported by the geometry API for the OGC
+	 * type of the geometry bytes.
+	 *
+	 * @param geomref hive geometry bytes
+	 * @param wkt text to be set to the WKT, reusing its buffer
+	 * @return false if the geometry has to be exported by the geometry API, in which
+	 * case wkt is left as is
+	 */
+	public boolean exportToWKT(BytesWritable geomref, Text wkt) {
+		if (!WKBUtils.exportToWKB(geomref, wkb)) {
+			return false;
+		}
+
+		byte [] bytes = wkb.getBytes();
+		int type = GeometryUtils.readInt(bytes, 1);
+		int offset = WKBUtils.WKB_HEADER_SIZE;
+		length = 0;
+
+		switch (GeometryUtils.getType(geomref)) {
+		case ST_POINT:
+			if (type != WKBUtils.WKB_POINT) {
+				return false;
+			}
+			append("POINT ");
+			if (Double.isNaN(GeometryUtils.readDouble(bytes, offset))) {
+				append("EMPTY");
+			} else {
+				append('(');
+				appendPoint(bytes, offset);
+				append(')');
+			}
+			break;
+		case ST_MULTIPOINT:
+			if (type != WKBUtils.WKB_MULTIPOINT) {
+				return false;
+			}
+			append("MULTIPOINT (");
+			int count = GeometryUtils.readInt(bytes, offset);
+			offset += 4 + WKBUtils.WKB_HEADER_SIZE;
+			for (int i = 0; i < count; i++) {
+				append(i > 0 ? ", (" : "(");
+				appendPoint(bytes, offset);
+				append(')');
+				offset += WKBUtils.WKB_HEADER_SIZE + WKBUtils.WKB_POINT_SIZE;
+			}
+			append(')');
+			break;
+		case ST_LINESTRING:
+			if (type != WKBUtils.WKB_LINESTRING) {
+				return false;
+			}
+			append("LINESTRING ");
+			appendPoints(bytes, offset);
+			break;
+		case ST_MULTILINESTRING:
+			append("MULTILINESTRING ");
+			if (type == WKBUtils.WKB_LINESTRING) {
+				append('(');
+				appendPoints(bytes, offset);
+				append(')');
+			} else {
+				appendParts(bytes, offset, false);
+			}
+			break;
+		case ST_POLYGON:
+			if (type != WKBUtils.WKB_POLYGON) {
+				return false;
+			}
+			append("POLYGON ");
+			appendRings(bytes, offset);
+			break;
+		case ST_MULTIPOLYGON:
+			append("MULTIPOLYGON ");
+			if (type == WKBUtils.WKB_POLYGON) {
+				append('(');
+				appendRings(bytes, offset);
+				append(')');
+			} else {
+				appendParts(bytes, offset, true);
+			}
+			break;
+		default:
+			return false;
+		}
+
+		wkt.set(text, 0, length);
+		return true;
+	}
+
+	/**
+	 * Reads a 2D point, line string or polygon from the WKT, without decoding the
+	 * text, and transcodes it to hive geometry bytes.
+	 *
+	 * @param wkt well-known text
+	 * @param wkid spatial reference of the geometry
+	 * @param geomref writable to be set to the hive geometry bytes, reusing its buffer
+	 * @return false if the WKT has to be read by the geometry API
+	 */
+	public boolean importFromWKT(Text wkt, int wkid, BytesWritable geomref) {
+		return parse(wkt.getBytes(), wkt.getLength()) && WKBUtils.transcode(wkb, wkid, geomref);
+	}
+
+	/*
+	 * Parses the text to little endian WKB
+	 */
+	private boolean parse(byte [] bytes, int end) {
+		position = 0;
+		skipWhitespace(bytes, end);
+
+		int type;
+		if (matchKeyword(bytes, end, POINT)) {
+			type = WKBUtils.WKB_POINT;
+		} else if (matchKeyword(bytes, end, LINESTRING)) {
+			type = WKBUtils.WKB_LINESTRING;
+		} else if (matchKeyword(bytes, end, POLYGON)) {
+			type = WKBUtils.WKB_POLYGON;
+		} else {
+			return false;
+		}
+
+		// EMPTY, Z and M are left to the geometry API
+		skipWhitespace(bytes, end);
+		if (!match(bytes, end, '(')) {
+			return false;
+		}
+
+		wkb.setSize(WKBUtils.WKB_HEADER_SIZE);
+		byte [] header = wkb.getBytes();
+		header[0] = 1;
+		GeometryUtils.writeInt(header, 1, type);
+
+		boolean parsed;
+		switch (type) {
+		case WKBUtils.WKB_POINT:
+			parsed = parsePoint(bytes, end) && match(bytes, end, ')');
+			break;
+		case WKBUtils.WKB_LINESTRING:
+			parsed = parsePoints(bytes, end);
+			break;
+		default:
+			int countOffset = wkb.getLength();
+			int count = 0;
+			wkb.setSize(countOffset + 4);
+			do {
+				count++;
+				parsed = match(bytes, end, '(') && parsePoints(bytes, end);
+			} while (parsed && match(bytes, end, ','));
+			parsed = parsed && match(bytes, end, ')');
+			GeometryUtils.writeInt(wkb.getBytes(), countOffset, count);
+		}
+
+		return parsed && position == end;
+	}
+
+	/*
+	 * Parses the points up to the closing parenthesis, after the count of points
+	 */
+	private boolean parsePoints(byte [] bytes, int end) {
+		int countOffset = wkb.getLength();
+		int count = 0;
+		wkb.setSize(countOffset + 4);
+
+		do {
+			if (!parsePoint(bytes, end)) {
+				return false;
+			}
+			count++;
+		} while (match(bytes, end, ','));
+
+		GeometryUtils.writeInt(wkb.getBytes(), countOffset, count);
+		return match(bytes, end, ')');
+	}
+
+	private boolean parsePoint(byte [] bytes, int end) {
+		skipWhitespace(bytes, end);
+		double x = parseNumber(bytes, end);
+
+		// the coordinates are separated by whitespace
+		int start = position;
+		skipWhitespace(bytes, end);
+		if (position == start) {
+			return false;
+		}
+
+		double y = parseNumber(bytes, end);
+		if (Double.isNaN(x) || Double.isNaN(y)) {
+			return false;
+		}
+
+		int offset = wkb.getLength();
+		wkb.setSize(offset + WKBUtils.WKB_POINT_SIZE);
+		GeometryUtils.writeDouble(wkb.getBytes(), offset, x);
+		GeometryUtils.writeDouble(wkb.getBytes(), offset + 8, y);
+		return true;
+	}
+
+	/*
+	 * Parses a number of the form -d.dE-d, or returns NaN
+	 */
+	private double parseNumber(byte [] bytes, int end) {
+		int start = position;
+		boolean negative = accept(bytes, end, '-');
+
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+
+		// the mantissa only matters up to MAX_FAST_DIGITS significant digits
+		int integerStart = position;
+		while (position < end && isDigit(bytes[position])) {
+			int digit = bytes[position++] - '0';
+			if (digits > 0 || digit > 0) {
+				mantissa = mantissa * 10 + digit;
+				digits++;
+			}
+		}
+		if (position == integerStart) {
+			return Double.NaN;
+		}
+
+		if (position < end && bytes[position] == '.') {
+			int fractionStart = ++position;
+			while (position < end && isDigit(bytes[position])) {
+				int digit = bytes[position++] - '0';
+				if (digits > 0 || digit > 0) {
+					mantissa = mantissa * 10 + digit;
+					digits++;
+				}
+				scale--;
+			}
+			if (position == fractionStart) {
+				return Double.NaN;
+			}
+		}
+
+		int exponent = 0;
+		if (position < end && (bytes[position] == 'e' || bytes[position] == 'E')) {
+			position++;
+			boolean negativeExponent = accept(bytes, end, '-');
+			if (!negativeExponent) {
+				accept(bytes, end, '+');
+			}
+			int exponentStart = position;
+			while (position < end && isDigit(bytes[position])) {
+				exponent = Math.min(exponent * 10 + bytes[position++] - '0', 1000);
+			}
+			if (position == exponentStart) {
+				return Double.NaN;
+			}
+			exponent = negativeExponent ? -exponent : exponent;
+		}
+
+		// a decimal of up to 15 digits times an exact power of ten rounds correctly
+		int power = scale + exponent;
+		if (digits <= MAX_FAST_DIGITS && Math.abs(power) < POW10.length) {
+			double value = power >= 0 ? mantissa * POW10[power] : mantissa / POW10[-power];
+			return negative ? -value : value;
+		}
+
+		try {
+			return Double.parseDouble(Text.decode(bytes, start, position - start));
+		} catch (Exception e) {
+			return Double.NaN;
+		}
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	/*
+	 * Case insensitive keyword, followed by whitespace or a parenthesis
+	 */
+	private boolean matchKeyword(byte [] bytes, int end, byte [] keyword) {
+		if (end - position < keyword.length) {
+			return false;
+		}
+
+		for (int i = 0; i < keyword.length; i++) {
+			if ((bytes[position + i] & ~0x20) != keyword[i]) {
+				return false;
+			}
+		}
+
+		int next = position + keyword.length;
+		if (next < end && bytes[next] != '(' && !isWhitespace(bytes[next])) {
+			return false;
+		}
+
+		position = next;
+		return true;
+	}
+
+	/*
+	 * Skips whitespace and the expected character, if found
+	 */
+	private boolean match(byte [] bytes, int end, char c) {
+		skipWhitespace(bytes, end);
+		if (accept(bytes, end, c)) {
+			skipWhitespace(bytes, end);
+			return true;
+		}
+		return false;
+	}
+
+	private boolean accept(byte [] bytes, int end, char c) {
+		if (position < end && bytes[position] == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void skipWhitespace(byte [] bytes, int end) {
+		while (position < end && isWhitespace(bytes[position])) {
+			position++;
+		}
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+
+	/*
+	 * Points of a line string or ring, after the count of points
+	 */
+	private int appendPoints(byte [] bytes, int offset) {
+		int count = GeometryUtils.readInt(bytes, offset);
+		offset += 4;
+
+		append('(');
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				append(", ");
+			}
+			appendPoint(bytes, offset);
+			offset += WKBUtils.WKB_POINT_SIZE;
+		}
+		append(')');
+		return offset;
+	}
+
+	private int appendRings(byte [] bytes, int offset) {
+		int count = GeometryUtils.readInt(bytes, offset);
+		offset += 4;
+
+		append('(');
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				append(", ");
+			}
+			offset = appendPoints(bytes, offset);
+		}
+		append(')');
+		return offset;
+	}
+
+	/*
+	 * Line strings or polygons of a multi line string or multi polygon
+	 */
+	private void appendParts(byte [] bytes, int offset, boolean polygons) {
+		int count = GeometryUtils.readInt(bytes, offset);
+		offset += 4;
+
+		append('(');
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				append(", ");
+			}
+			offset += WKBUtils.WKB_HEADER_SIZE;
+			offset = polygons ? appendRings(bytes, offset) : appendPoints(bytes, offset);
+		}
+		append(')');
+	}
+
+	private void appendPoint(byte [] bytes, int offset) {
+		appendDouble(GeometryUtils.readDouble(bytes, offset));
+		append(' ');
+		appendDouble(GeometryUtils.readDouble(bytes, offset + 8));
+	}
+
+	/*
+	 * Writes the double as the geometry API does, which formats it with %.17g and
+	 * removes trailing zeros from plain notation.  Up to 15 significant digits, the
+	 * shortest decimal of the double is unique, and written without formatting.
+	 */
+	private void appendDouble(double value) {
+		if (value == 0) {
+			append(1 / value < 0 ? "-0" : "0");
+			return;
+		}
+
+		double abs = Math.abs(value);
+		if (abs >= MIN_PLAIN_VALUE && abs < MAX_FAST_VALUE) {
+			for (int decimals = 0; decimals < POW10.length && abs * POW10[decimals] < MAX_FAST_VALUE; decimals++) {
+				long mantissa = (long) Math.rint(abs * POW10[decimals]);
+				if (mantissa / POW10[decimals] == abs) {
+					if (value < 0) {
+						append('-');
+					}
+					appendDecimal(mantissa, decimals);
+					return;
+				}
+			}
+		}
+
+		String formatted = String.format("%.17g", value);
+		if (formatted.indexOf('.') >= 0 && formatted.indexOf('e') < 0 && formatted.indexOf('E') < 0) {
+			int last = formatted.length() - 1;
+			while (formatted.charAt(last) == '0') {
+				last--;
+			}
+			formatted = formatted.substring(0, formatted.charAt(last) == '.' ? last : last + 1);
+		}
+		append(formatted);
+	}
+
+	/*
+	 * Writes mantissa / 10^decimals in plain notation
+	 */
+	private void appendDecimal(long mantissa, int decimals) {
+		int digits = 1;
+		for (long bound = 10; digits < 19 && mantissa >= bound; bound *= 10) {
+			digits++;
+		}
+
+		// leading zeros of a value below one
+		int width = Math.max(digits, decimals + 1);
+		ensureCapacity(width + 1);
+
+		int point = width - decimals;
+		int index = length + width + (decimals > 0 ? 1 : 0);
+		length = index;
+		for (int i = width - 1; i >= 0; i--) {
+			if (decimals > 0 && i == point - 1) {
+				text[--index] = '.';
+			}
+			text[--index] = (byte) ('0' + mantissa % 10);
+			mantissa /= 10;
+		}
+	}
+
+	private void append(char c) {
+		ensureCapacity(1);
+		text[length++] = (byte) c;
+	}
+
+	private void append(String s) {
+		ensureCapacity(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			text[length++] = (byte) s.charAt(i);
+		}
+	}
+
+	private void ensureCapacity(int extra) {
+		if (length + extra > text.length) {
+			byte [] grown = new byte [Math.max(text.length * 2, length + extra)];
+			System.arraycopy(text, 0, grown, 0, length);
+			text = grown;
+		}
+	}
+}
@@ -1,15 +1,16 @@
 package com.esri.hadoop.hive.serde;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.SerDeStats;
@@ -27,11 +28,13 @@ import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
+import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerationException;
 import org.codehaus.jackson.JsonGenerator;
@@ -50,11 +53,16 @@ abstract public class BaseJsonSerDe implements SerDe {
 
 	static protected JsonFactory jsonFactory = new JsonFactory();
 
+	// set by Hive 0.13 and above, when it has to read all columns regardless of the column IDs
+	static final String READ_ALL_COLUMNS = "hive.io.file.read.all.columns";
+
 	protected int numColumns;
 	protected int geometryColumn = -1;
 	protected ArrayList<String> columnNames;
 	protected ArrayList<ObjectInspector> columnOIs;
-	protected boolean [] columnSet; 
+	protected boolean [] columnSet;  // columns read by the query
+	protected boolean parseGeometry;  // geometry column is read by the query
+	protected HashMap<String, Integer> columnNumbers;  // index of each attribute column read, by name
 	protected StructObjectInspector rowOI; // contains the type information for the fields returned
 	protected String attrLabel = "attributes";  // "properties"
 	
@@ -66,6 +74,19 @@ abstract public class BaseJsonSerDe implements SerDe {
 	 */
 	ArrayList<Writable> rowBase; 
 	ArrayList<Writable> row;
+
+	/* attributeNumbers caches the column index of each attribute name, as it appears in the
+	 * JSON, that is read by the query, so that these names are neither lower-cased nor looked
+	 * up more than once.  Other names are not cached, as they are not bounded by the columns.
+	 */
+	HashMap<String, Integer> attributeNumbers;
+
+	// number of records that failed to parse, logged instead of failing the query
+	protected long parseErrors = 0;
+
+	// serialized records are written as UTF-8 into outputBuffer, then copied to the reused serializedText
+	private final DataOutputBuffer outputBuffer = new DataOutputBuffer();
+	private final Text serializedText = new Text();
 	
 	@Override
 	public void initialize(Configuration cfg, Properties tbl) throws SerDeException {
@@ -110,6 +131,30 @@ abstract public class BaseJsonSerDe implements SerDe {
 			}
 		}
 
+		// Hive lists the columns the query reads - an empty list means all of them
+		List<Integer> readColumns = cfg == null ? null : ColumnProjectionUtils.getReadColumnIDs(cfg);
+		boolean readAll = readColumns == null ||
+				cfg.getBoolean(READ_ALL_COLUMNS, readColumns.isEmpty());
+		if (readAll) {
+			Arrays.fill(columnSet, true);
+		} else {
+			for (Integer c : readColumns) {
+				if (c >= 0 && c < numColumns) {
+					columnSet[c] = true;
+				}
+			}
+		}
+
+		parseGeometry = geometryColumn > -1 && columnSet[geometryColumn];
+
+		columnNumbers = new HashMap<String, Integer>();
+		for (int c = 0; c < numColumns; c++) {
+			if (columnSet[c] && c != geometryColumn) {
+				columnNumbers.put(columnNames.get(c), c);
+			}
+		}
+		attributeNumbers = new HashMap<String, Integer>();
+
 		// standardStruct uses ArrayList to store the row.
 		rowOI = ObjectInspectorFactory.getStandardStructObjectInspector(
 				columnNames, columnOIs);
@@ -146,8 +191,10 @@ abstract public class BaseJsonSerDe implements SerDe {
 		for (int i=0;i<numColumns;i++)
 			row.set(i, null);
 		
+		JsonParser parser = null;
 		try {
-			JsonParser parser = jsonFactory.createJsonParser(json.toString());
+			// parse the UTF-8 bytes as they are; closing the parser recycles its buffers
+			parser = jsonFactory.createJsonParser(json.getBytes(), 0, json.getLength());
 
 			JsonToken token = parser.nextToken();
 
@@ -155,7 +202,7 @@ abstract public class BaseJsonSerDe implements SerDe {
 
 				if (token == JsonToken.START_OBJECT) {
 					if ("geometry".equals(parser.getCurrentName())) {
-						if (geometryColumn > -1) {
+						if (parseGeometry) {
 							// create geometry and insert into geometry field
 							OGCGeometry ogcGeom = parseGeom(parser);
 							row.set(geometryColumn, ogcGeom == null ? null :
@@ -166,38 +213,51 @@ abstract public class BaseJsonSerDe implements SerDe {
 						}
 					} else if (attrLabel.equals(parser.getCurrentName())) {
 
-						token = parser.nextToken();
+						if (columnNumbers.isEmpty()) {
+							// no attribute in select field set
+							parser.skipChildren();
+						} else {
+							token = parser.nextToken();
 
-						while (token != JsonToken.END_OBJECT && token != null) {
+							while (token != JsonToken.END_OBJECT && token != null) {
 
-							// hive makes all column names in the queries column list lower case
-							String name = parser.getText().toLowerCase();
+								// figure out which column index corresponds with the attribute name
+								int fieldIndex = getAttributeNumber(parser.getCurrentName());
 
-							parser.nextToken();
+								parser.nextToken();
 
-							// figure out which column index corresponds with the attribute name
-							int fieldIndex = columnNames.indexOf(name);
+								if (fieldIndex >= 0) {
+									setRowFieldFromParser(fieldIndex, parser);
+								} else {
+									// not in select field set, skip the value whatever it is
+									parser.skipChildren();
+								}
 
-							if (fieldIndex >= 0) {
-								setRowFieldFromParser(fieldIndex, parser);
+								token = parser.nextToken();
 							}
-
-							token = parser.nextToken();
 						}
-
-						token = parser.nextToken();
 					}
 				}
 
 				token = parser.nextToken();
 			}
 
-		} catch (JsonParseException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			// keep whatever was parsed, and log the first error in full then every time the count doubles
+			parseErrors++;
+			if (parseErrors == 1) {
+				LOG.error("Error parsing JSON record", e);
+			} else if ((parseErrors & (parseErrors - 1)) == 0) {
+				LOG.error(parseErrors + " JSON records failed to parse, last: " + e.getMessage());
+			}
+		} finally {
+			if (parser != null) {
+				try {
+					parser.close();
+				} catch (IOException e) {
+					// nothing to release
+				}
+			}
 		}
 
 		return row;
@@ -227,10 +287,10 @@ abstract public class BaseJsonSerDe implements SerDe {
 		// get list of writables, one for each field in the row
 		List<Object> fieldWritables = structOI.getStructFieldsDataAsList(obj);
 
-		StringWriter writer = new StringWriter();
+		outputBuffer.reset();
 
 		try {
-			JsonGenerator jsonGen = jsonFactory.createJsonGenerator(writer);
+			JsonGenerator jsonGen = jsonFactory.createJsonGenerator(outputBuffer, JsonEncoding.UTF8);
 
 			jsonGen.writeStartObject();
 
@@ -264,7 +324,7 @@ abstract public class BaseJsonSerDe implements SerDe {
 					else  // SparkSQL, #97
 						bytesWritable = new BytesWritable((byte[])got);  // idea: avoid extra object
 					OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(bytesWritable);
-					jsonGen.writeRaw(",\"geometry\":" + outGeom(ogcGeometry));
+					writeGeom(ogcGeometry, jsonGen);
 				}
 			}
 
@@ -280,7 +340,8 @@ abstract public class BaseJsonSerDe implements SerDe {
 			return null;
 		}
 
-		return new Text(writer.toString());
+		serializedText.set(outputBuffer.getData(), 0, outputBuffer.getLength());
+		return serializedText;
 	}
 
 
@@ -316,12 +377,80 @@ abstract public class BaseJsonSerDe implements SerDe {
 	private void generateJsonFromWritable(Writable value, int fieldIndex, String label,
 										  PrimitiveObjectInspector poi, JsonGenerator jsonGen)
 		throws JsonProcessingException, IOException {
-		jsonGen.writeObjectField(label, poi.getPrimitiveJavaObject(value));
+		// write the value straight from the Writable, without a Java object in between
+		switch (poi.getPrimitiveCategory()) {
+		case BYTE:
+			jsonGen.writeNumberField(label, ((ByteWritable)value).get());
+			break;
+		case SHORT:
+			jsonGen.writeNumberField(label, ((ShortWritable)value).get());
+			break;
+		case INT:
+			jsonGen.writeNumberField(label, ((IntWritable)value).get());
+			break;
+		case LONG:
+			jsonGen.writeNumberField(label, ((LongWritable)value).get());
+			break;
+		case DOUBLE:
+			jsonGen.writeNumberField(label, ((DoubleWritable)value).get());
+			break;
+		case FLOAT:
+			jsonGen.writeNumberField(label, ((FloatWritable)value).get());
+			break;
+		case BOOLEAN:
+			jsonGen.writeBooleanField(label, ((BooleanWritable)value).get());
+			break;
+		case STRING:
+			Text text = (Text)value;
+			jsonGen.writeFieldName(label);
+			jsonGen.writeUTF8String(text.getBytes(), 0, text.getLength());
+			break;
+		default:
+			jsonGen.writeObjectField(label, poi.getPrimitiveJavaObject(value));
+			break;
+		}
+	}
+
+	/**
+	 * Gets the index of the column read for the attribute, or -1 if the query does not read it.
+	 * 
+	 * @param name attribute name, as in the JSON
+	 * @return column index
+	 */
+	private int getAttributeNumber(String name) {
+		Integer fieldIndex = attributeNumbers.get(name);
+		if (fieldIndex == null) {
+			// hive makes all column names in the queries column list lower case
+			fieldIndex = columnNumbers.get(name.toLowerCase());
+			if (fieldIndex == null) {
+				return -1;
+			}
+			attributeNumbers.put(name, fieldIndex);
+		}
+		return fieldIndex;
 	}
 
     // Write OGCGeometry to JSON
 	abstract protected String outGeom(OGCGeometry geom);
 
+	/**
+	 * Writes the geometry field to the generator.  Serdes that stream the geometry
+	 * straight to the generator override this.
+	 * 
+	 * @param geom geometry of the row
+	 * @param jsonGen JsonGenerator, in the object of the row
+	 * @throws IOException
+	 */
+	protected void writeGeom(OGCGeometry geom, JsonGenerator jsonGen) throws IOException {
+		String json = outGeom(geom);
+		jsonGen.writeFieldName("geometry");
+		if (json == null) {
+			jsonGen.writeNull();
+		} else {
+			jsonGen.writeRawValue(json);
+		}
+	}
+
     // Parse OGCGeometry from JSON
 	abstract protected OGCGeometry parseGeom(JsonParser parser);
 
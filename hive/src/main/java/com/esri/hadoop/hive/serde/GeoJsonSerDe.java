@@ -1,47 +1,56 @@
 package com.esri.hadoop.hive.serde;
 
 import java.io.IOException;
+import java.io.StringWriter;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonParser;
-import org.codehaus.jackson.JsonProcessingException;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.json.JSONException;
 
 import com.esri.core.geometry.ogc.OGCGeometry;
+import com.esri.hadoop.hive.GeoJsonUtils;
 
 
 public class GeoJsonSerDe extends BaseJsonSerDe {
 
 	static final Log LOG = LogFactory.getLog(GeoJsonSerDe.class.getName());
 
-    ObjectMapper mapper = null;
+	// geometries are streamed from and to the JSON tokens
+	private final GeoJsonUtils geoJsonUtils = new GeoJsonUtils();
 
 	public GeoJsonSerDe() {
 		super();
 		attrLabel = "properties";
-		mapper = new ObjectMapper();
 	}
 
 	@Override
 	protected String outGeom(OGCGeometry geom) {
-		return geom.asGeoJson();
+		StringWriter writer = new StringWriter();
+		try {
+			JsonGenerator jsonGen = jsonFactory.createJsonGenerator(writer);
+			geoJsonUtils.write(geom, jsonGen);
+			jsonGen.close();
+		} catch (IOException e) {
+			LOG.error("Error generating GeoJSON", e);
+			return null;
+		}
+		return writer.toString();
+	}
+
+	@Override
+	protected void writeGeom(OGCGeometry geom, JsonGenerator jsonGen) throws IOException {
+		jsonGen.writeFieldName("geometry");
+		geoJsonUtils.write(geom, jsonGen);
 	}
 
 	@Override
 	protected OGCGeometry parseGeom(JsonParser parser) {
 		try {
-			JsonNode node = mapper.readTree(parser);
-			return OGCGeometry.fromGeoJson(node.toString());
-		} catch (JsonProcessingException e1) {
-			e1.printStackTrace();			// TODO Auto-generated catch block
-		} catch (IOException e1) {
-			e1.printStackTrace();			// TODO Auto-generated catch block
-		} catch (JSONException e) {
-			e.printStackTrace();			// TODO Auto-generated catch block
+			return geoJsonUtils.read(parser);
+		} catch (IOException e) {
+			LOG.error("Error parsing GeoJSON geometry", e);
+			return null;
 		}
-		return null;  // ?
 	}
 }
@@ -0,0 +1,114 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import java.lang.ref.WeakReference;
+
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredJavaObject;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredObject;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+import com.esri.core.geometry.OperatorContains;
+import com.esri.core.geometry.Point;
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.Geometry.GeometryAccelerationDegree;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestAcceleratedGeometryPool {
+
+	private static Polygon square(double offset) {
+		Polygon polygon = new Polygon();
+		polygon.startPath(offset, offset);
+		polygon.lineTo(offset, offset + 4);
+		polygon.lineTo(offset + 4, offset + 4);
+		polygon.lineTo(offset + 4, offset);
+		return polygon;
+	}
+
+	private static OGCGeometry ogcSquare(double offset) {
+		BytesWritable geomref = GeometryUtils.geometryToEsriShapeBytesWritable(square(offset), 0,
+				GeometryUtils.OGCType.ST_POLYGON);
+		return GeometryUtils.deserialize(geomref);
+	}
+
+	@Test
+	public void testThresholdAndEviction() {
+		AcceleratedGeometryPool pool = new AcceleratedGeometryPool(OperatorContains.local(),
+				GeometryAccelerationDegree.enumMedium);
+		pool.setLimits(3, 1);
+
+		OGCGeometry first = ogcSquare(0);
+		OGCGeometry second = ogcSquare(10);
+
+		assertFalse(pool.use(first));
+		assertFalse(pool.use(first));
+		assertTrue(pool.use(first));
+		assertTrue(pool.use(first));
+		assertEquals(1, pool.getAccelerationCount());
+
+		// an equal geometry is a different instance, and is counted separately
+		assertFalse(pool.use(ogcSquare(0)));
+
+		pool.use(second);
+		pool.use(second);
+		assertTrue(pool.use(second));
+		assertEquals(1, pool.size());
+		assertEquals(1, pool.getDeaccelerationCount());
+
+		pool.clear();
+		assertEquals(0, pool.size());
+		assertEquals(2, pool.getDeaccelerationCount());
+	}
+
+	@Test
+	public void testCandidatesNotHeld() {
+		AcceleratedGeometryPool pool = new AcceleratedGeometryPool(OperatorContains.local(),
+				GeometryAccelerationDegree.enumMedium);
+
+		// geometries that are counted but not accelerated can be collected
+		OGCGeometry geometry = ogcSquare(0);
+		assertFalse(pool.use(geometry));
+		WeakReference<OGCGeometry> reference = new WeakReference<OGCGeometry>(geometry);
+		geometry = null;
+		for (int i = 0; i < 10 && reference.get() != null; i++) {
+			System.gc();
+		}
+		assertNull(reference.get());
+		assertEquals(0, pool.size());
+	}
+
+	@Test
+	public void testRelationalRepeatedGeometry() throws Exception {
+		ST_Contains contains = new ST_Contains();
+		ObjectInspector binaryOI = PrimitiveObjectInspectorFactory.writableBinaryObjectInspector;
+		contains.initialize(new ObjectInspector [] { binaryOI, binaryOI });
+		contains.getAcceleratedGeometries().setLimits(2, 4);
+
+		// large enough to be interned, so that the same instance repeats
+		Polygon polygon = new Polygon();
+		polygon.startPath(0, 0);
+		for (int i = 1; i < 100; i++) {
+			polygon.lineTo(i * 0.01, 4 - i * 0.01);
+		}
+		polygon.lineTo(4, 0);
+		BytesWritable polygonBytes = GeometryUtils.geometryToEsriShapeBytesWritable(polygon, 0,
+				GeometryUtils.OGCType.ST_POLYGON);
+
+		for (int i = 0; i < 4; i++) {
+			BytesWritable pointBytes = GeometryUtils.geometryToEsriShapeBytesWritable(new Point(2.5, 0.5 + i * 0.1), 0,
+					GeometryUtils.OGCType.ST_POINT);
+			DeferredObject [] args = { new DeferredJavaObject(new BytesWritable(polygonBytes.getBytes())),
+					new DeferredJavaObject(pointBytes) };
+			assertEquals(Boolean.TRUE, contains.evaluate(args));
+		}
+
+		AcceleratedGeometryPool pool = contains.getAcceleratedGeometries();
+		assertEquals(1, pool.size());
+
+		contains.close();
+		assertEquals(0, pool.size());
+	}
+}
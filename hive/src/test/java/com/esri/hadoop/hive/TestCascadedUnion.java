@@ -0,0 +1,97 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.esri.core.geometry.Envelope;
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.GeometryEngine;
+import com.esri.core.geometry.Point;
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.SpatialReference;
+
+public class TestCascadedUnion {
+
+	private static ArrayList<Geometry> squares(Random random, int count) {
+		ArrayList<Geometry> squares = new ArrayList<Geometry>();
+		for (int i = 0; i < count; i++) {
+			double x = random.nextInt(100), y = random.nextInt(100);
+			Polygon square = new Polygon();
+			square.addEnvelope(new Envelope(x, y, x + 1 + random.nextInt(3), y + 1 + random.nextInt(3)), false);
+			squares.add(square);
+		}
+		return squares;
+	}
+
+	private static void assertUnion(ArrayList<Geometry> geometries, long bufferBytes) {
+		SpatialReference spatialRef = SpatialReference.create(4326);
+		Geometry expected = GeometryEngine.union(geometries.toArray(new Geometry[0]), spatialRef);
+
+		CascadedUnion union = new CascadedUnion(bufferBytes);
+		union.setSpatialReference(spatialRef);
+		for (Geometry geometry : geometries) {
+			union.add(geometry);
+		}
+		Geometry geometry = union.getUnion();
+
+		assertEquals(expected.calculateArea2D(), geometry.calculateArea2D(), 1e-9);
+		assertTrue(GeometryEngine.equals(expected, geometry, spatialRef));
+	}
+
+	@Test
+	public void testUnion() {
+		Random random = new Random(21);
+
+		// everything in one flush, and a flush every few geometries
+		assertUnion(squares(random, 500), CascadedUnion.DEFAULT_BUFFER_BYTES);
+		assertUnion(squares(random, 500), 1000);
+		assertUnion(squares(random, 1), 0);
+
+		ArrayList<Geometry> points = new ArrayList<Geometry>();
+		for (int i = 0; i < 50; i++) {
+			points.add(new Point(random.nextInt(10), random.nextInt(10)));
+		}
+		points.add(new Point());
+		assertUnion(points, 500);
+	}
+
+	@Test
+	public void testClear() {
+		CascadedUnion union = new CascadedUnion();
+		assertTrue(union.isEmpty());
+		assertNull(union.getUnion());
+
+		union.add(new Point(1, 2));
+		assertFalse(union.isEmpty());
+		assertEquals(new Point(1, 2), union.getUnion());
+
+		union.clear();
+		assertTrue(union.isEmpty());
+		assertNull(union.getUnion());
+	}
+
+	@Test
+	public void testHilbertKey() {
+		// the curve visits every cell of a 4 by 4 corner once, moving to an adjacent cell each step
+		HashSet<Long> keys = new HashSet<Long>();
+		int [] xs = new int[16], ys = new int[16];
+		for (int x = 0; x < 4; x++) {
+			for (int y = 0; y < 4; y++) {
+				long key = CascadedUnion.getHilbertKey(x, y);
+				assertTrue(key < 16);
+				keys.add(key);
+				xs[(int)key] = x;
+				ys[(int)key] = y;
+			}
+		}
+		assertEquals(16, keys.size());
+		for (int i = 1; i < 16; i++) {
+			assertEquals(1, Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]));
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.junit.Test;
+
+import com.esri.core.geometry.ogc.OGCGeometry;
+import com.esri.core.geometry.ogc.OGCGeometryCollection;
+
+public class TestGeoJsonUtils {
+
+	private static final JsonFactory jsonFactory = new JsonFactory();
+
+	private static OGCGeometry read(GeoJsonUtils geoJsonUtils, String json) throws Exception {
+		JsonParser parser = jsonFactory.createJsonParser(json);
+		parser.nextToken();
+		return geoJsonUtils.read(parser);
+	}
+
+	private static String write(GeoJsonUtils geoJsonUtils, OGCGeometry geometry) throws Exception {
+		StringWriter writer = new StringWriter();
+		JsonGenerator generator = jsonFactory.createJsonGenerator(writer);
+		geoJsonUtils.write(geometry, generator);
+		generator.close();
+		return writer.toString();
+	}
+
+	private static String position(Random random) {
+		return "[" + (random.nextDouble() * 360 - 180) + "," + random.nextInt(90) + "]";
+	}
+
+	private static String positions(Random random, int count) {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < count; i++) {
+			builder.append(i > 0 ? "," : "").append(position(random));
+		}
+		return builder.append(']').toString();
+	}
+
+	private static String rings(Random random) {
+		// an exterior ring and a hole, either closed or not, in either orientation
+		double x = random.nextInt(100), y = random.nextInt(100);
+		String exterior = "[" + x + "," + y + "],[" + (x + 10) + "," + y + "],[" + (x + 10) + "," + (y + 10) + "],[" + x + "," + (y + 10) + "]";
+		String hole = "[" + (x + 2) + "," + (y + 2) + "],[" + (x + 2) + "," + (y + 4) + "],[" + (x + 4) + "," + (y + 4) + "]";
+		if (random.nextBoolean()) {
+			exterior = "[" + x + "," + (y + 10) + "],[" + (x + 10) + "," + (y + 10) + "],[" + (x + 10) + "," + y + "],[" + x + "," + y + "]";
+		}
+		if (random.nextBoolean()) {
+			exterior += ",[" + exterior.substring(1, exterior.indexOf(']')) + "]";
+		}
+		return "[[" + exterior + "],[" + hole + "]]";
+	}
+
+	private static void assertRead(GeoJsonUtils geoJsonUtils, String json) throws Exception {
+		OGCGeometry expected = OGCGeometry.fromGeoJson(json);
+		OGCGeometry geometry = read(geoJsonUtils, json);
+
+		assertEquals(json, expected.geometryType(), geometry.geometryType());
+		assertEquals(json, GeometryUtils.geometryToEsriShapeBytesWritable(expected),
+				GeometryUtils.geometryToEsriShapeBytesWritable(geometry));
+
+		// the library writes the same GeoJSON
+		assertEquals(json, expected.asGeoJson(), write(geoJsonUtils, geometry));
+	}
+
+	@Test
+	public void testRead() throws Exception {
+		Random random = new Random(17);
+		GeoJsonUtils geoJsonUtils = new GeoJsonUtils();
+
+		for (int i = 0; i < 200; i++) {
+			assertRead(geoJsonUtils, "{\"type\":\"Point\",\"coordinates\":" + position(random) + "}");
+			assertRead(geoJsonUtils, "{\"coordinates\":" + positions(random, 1 + random.nextInt(4)) + ",\"type\":\"MultiPoint\"}");
+			assertRead(geoJsonUtils, "{\"type\":\"LineString\",\"coordinates\":" + positions(random, 2 + random.nextInt(4)) + "}");
+			assertRead(geoJsonUtils, "{\"type\":\"MultiLineString\",\"coordinates\":[" + positions(random, 2) + "," + positions(random, 3) + "]}");
+			assertRead(geoJsonUtils, "{\"type\":\"Polygon\",\"bbox\":[0,0,1,1],\"coordinates\":" + rings(random) + "}");
+			assertRead(geoJsonUtils, "{\"type\":\"MultiPolygon\",\"coordinates\":[" + rings(random) + "," + rings(random) + "]}");
+		}
+
+		assertRead(geoJsonUtils, "{\"type\":\"Point\",\"coordinates\":[]}");
+		assertRead(geoJsonUtils, "{\"type\":\"LineString\",\"coordinates\":[]}");
+		assertRead(geoJsonUtils, "{\"type\":\"point\",\"coordinates\":[\"1\",2]}");
+	}
+
+	/*
+	 * The geometry API fails to write some of these polygons, e.g. when the exterior
+	 * ring has no area
+	 */
+	private static void assertReadSelfIntersecting(GeoJsonUtils geoJsonUtils, String json) throws Exception {
+		OGCGeometry expected = OGCGeometry.fromGeoJson(json);
+		OGCGeometry geometry = read(geoJsonUtils, json);
+
+		assertEquals(json, expected.geometryType(), geometry.geometryType());
+		assertEquals(json, GeometryUtils.geometryToEsriShapeBytesWritable(expected),
+				GeometryUtils.geometryToEsriShapeBytesWritable(geometry));
+
+		String expectedJson = expected.asGeoJson();
+		if (expectedJson != null) {
+			assertEquals(json, expectedJson, write(geoJsonUtils, geometry));
+		}
+	}
+
+	@Test
+	public void testSelfIntersecting() throws Exception {
+		GeoJsonUtils geoJsonUtils = new GeoJsonUtils();
+
+		// negative area, but clockwise at the highest vertex
+		String json = "{\"type\":\"Polygon\",\"coordinates\":[[[2,12],[17.7195,6],[10.7852,17],[16,19],[17,13.2672]]]}";
+		assertReadSelfIntersecting(geoJsonUtils, json);
+		assertTrue(read(geoJsonUtils, json).getEsriGeometry().calculateArea2D() < 0);
+
+		Random random = new Random(18);
+		for (int i = 0; i < 500; i++) {
+			assertReadSelfIntersecting(geoJsonUtils, "{\"type\":\"Polygon\",\"coordinates\":" + randomRings(random) + "}");
+			assertReadSelfIntersecting(geoJsonUtils, "{\"type\":\"MultiPolygon\",\"coordinates\":[" + randomRings(random) + "," +
+					randomRings(random) + "]}");
+		}
+	}
+
+	private static String randomRings(Random random) {
+		StringBuilder rings = new StringBuilder("[");
+		for (int ring = 0, count = 1 + random.nextInt(3); ring < count; ring++) {
+			rings.append(ring > 0 ? "," : "").append('[');
+			for (int j = 0, points = 3 + random.nextInt(6); j < points; j++) {
+				rings.append(j > 0 ? "," : "").append('[').append(random.nextBoolean() ? random.nextInt(5) : random.nextDouble() * 20)
+						.append(',').append(random.nextBoolean() ? random.nextInt(5) : random.nextDouble() * 20).append(']');
+			}
+			rings.append(']');
+		}
+		return rings.append(']').toString();
+	}
+
+	@Test
+	public void testCollectionAndZ() throws Exception {
+		GeoJsonUtils geoJsonUtils = new GeoJsonUtils();
+
+		String json = "{\"type\":\"GeometryCollection\",\"geometries\":[" +
+				"{\"type\":\"Point\",\"coordinates\":[1.0,2.0,3.0]}," +
+				"{\"type\":\"LineString\",\"coordinates\":[[0.0,0.0],[1.0,1.0]]}," +
+				"{\"type\":\"GeometryCollection\",\"geometries\":[]}]}";
+		OGCGeometry collection = read(geoJsonUtils, json);
+		assertEquals("GeometryCollection", collection.geometryType());
+		assertEquals(3, ((OGCGeometryCollection) collection).numGeometries());
+		assertEquals(json, write(geoJsonUtils, collection));
+
+		String line = "{\"type\":\"LineString\",\"coordinates\":[[0.0,0.0,5.0],[1.0,1.0,6.0]]}";
+		assertEquals(line, write(geoJsonUtils, read(geoJsonUtils, line)));
+	}
+
+	@Test
+	public void testInvalid() throws Exception {
+		GeoJsonUtils geoJsonUtils = new GeoJsonUtils();
+		String [] invalid = { "{\"coordinates\":[1,2]}", "{\"type\":\"Point\"}", "{\"type\":\"Point\",\"coordinates\":[[1,2]]}",
+				"{\"type\":\"LineString\",\"coordinates\":[[1,2],[[3,4]]]}", "{\"type\":\"Point\",\"coordinates\":[1]}",
+				"{\"type\":\"Feature\",\"coordinates\":[1,2]}", "[1,2]" };
+		for (String json : invalid) {
+			try {
+				read(geoJsonUtils, json);
+				fail(json);
+			} catch (JsonParseException e) {
+				// expected
+			}
+		}
+	}
+}
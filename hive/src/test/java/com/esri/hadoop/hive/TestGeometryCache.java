@@ -0,0 +1,82 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestGeometryCache {
+
+	private static BytesWritable squareBytes(double offset) {
+		Polygon polygon = new Polygon();
+		polygon.startPath(offset, offset);
+		polygon.lineTo(offset, offset + 1);
+		polygon.lineTo(offset + 1, offset + 1);
+		polygon.lineTo(offset + 1, offset);
+		return GeometryUtils.geometryToEsriShapeBytesWritable(polygon, 0, GeometryUtils.OGCType.ST_POLYGON);
+	}
+
+	@Test
+	public void testHitOnRecycledBytes() {
+		GeometryCache cache = new GeometryCache(10, 1024 * 1024, 0);
+		BytesWritable geomref = squareBytes(0);
+		OGCGeometry geometry = OGCGeometry.fromText("polygon ((0 0, 0 1, 1 1, 1 0, 0 0))");
+
+		assertNull(cache.get(geomref));
+		cache.put(geomref, geometry);
+
+		// same content in a different (recycled) writable
+		BytesWritable recycled = new BytesWritable();
+		recycled.set(geomref);
+		assertSame(geometry, cache.get(recycled));
+
+		// same writable with different content
+		recycled.set(squareBytes(5));
+		assertNull(cache.get(recycled));
+
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testEviction() {
+		GeometryCache cache = new GeometryCache(2, 1024 * 1024, 0);
+		BytesWritable first = squareBytes(0), second = squareBytes(1), third = squareBytes(2);
+		OGCGeometry geometry = OGCGeometry.fromText("point (0 0)");
+
+		cache.put(first, geometry);
+		cache.put(second, geometry);
+		assertNotNull(cache.get(first));  // first is now most recently used
+		cache.put(third, geometry);
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNotNull(cache.get(first));
+		assertNull(cache.get(second));
+
+		// byte bound
+		cache.setLimits(10, first.getLength(), 0);
+		assertEquals(1, cache.size());
+		assertEquals(first.getLength(), cache.getTotalBytes());
+	}
+
+	@Test
+	public void testConfigure() {
+		GeometryCache cache = new GeometryCache();
+		BytesWritable geomref = squareBytes(0);
+		assertFalse(cache.accepts(geomref));  // smaller than default minimum
+
+		Configuration conf = new Configuration();
+		conf.setInt(GeometryCache.CONF_MIN_GEOMETRY_BYTES, 0);
+		cache.configure(conf);
+		assertTrue(cache.accepts(geomref));
+
+		conf.setInt(GeometryCache.CONF_MAX_ENTRIES, 0);
+		cache.configure(conf);
+		assertFalse(cache.accepts(geomref));
+	}
+}
@@ -0,0 +1,165 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+import com.esri.core.geometry.Envelope;
+import com.esri.core.geometry.GeometryEngine;
+import com.esri.core.geometry.MultiPoint;
+import com.esri.core.geometry.Point;
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.Polyline;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestGeometryUtils {
+
+	private final static double Epsilon = 0.0001;
+
+	private static BytesWritable polygonBytes(int wkid) {
+		Polygon polygon = new Polygon();
+		polygon.startPath(1, 2);
+		polygon.lineTo(1, 5);
+		polygon.lineTo(4, 5);
+		polygon.lineTo(4, 2);
+		return GeometryUtils.geometryToEsriShapeBytesWritable(polygon, wkid, GeometryUtils.OGCType.ST_POLYGON);
+	}
+
+	@Test
+	public void testHeader() {
+		// the WKID and type, directly followed by the Esri shape
+		BytesWritable geomref = polygonBytes(4326);
+		Polygon polygon = (Polygon)GeometryUtils.geometryFromEsriShape(polygonBytes(0)).getEsriGeometry();
+		assertEquals(5 + GeometryEngine.geometryToEsriShape(polygon).length, geomref.getLength());
+		assertEquals(GeometryUtils.OGCType.ST_POLYGON.getIndex(), geomref.getBytes()[4]);
+		assertEquals(4326, GeometryUtils.getWKID(geomref));
+		assertEquals(GeometryUtils.OGCType.ST_POLYGON, GeometryUtils.getType(geomref));
+
+		OGCGeometry ogcGeometry = GeometryUtils.geometryFromEsriShape(geomref);
+		assertNotNull(ogcGeometry);
+		assertEquals("Polygon", ogcGeometry.geometryType());
+		assertEquals(9, ogcGeometry.getEsriGeometry().calculateArea2D(), Epsilon);
+	}
+
+	@Test
+	public void testSetTypeAndWKID() {
+		BytesWritable geomref = polygonBytes(0);
+		GeometryUtils.setType(geomref, GeometryUtils.OGCType.ST_MULTIPOLYGON);
+		GeometryUtils.setWKID(geomref, 3857);
+		assertEquals(GeometryUtils.OGCType.ST_MULTIPOLYGON, GeometryUtils.getType(geomref));
+		assertEquals(3857, GeometryUtils.getWKID(geomref));
+	}
+
+	@Test
+	public void testPointHeader() {
+		BytesWritable geomref = GeometryUtils.geometryToEsriShapeBytesWritable(new Point(1.5, 2.5), 0,
+				GeometryUtils.OGCType.ST_POINT);
+		assertEquals(GeometryUtils.OGCType.ST_POINT, GeometryUtils.getType(geomref));
+	}
+
+	@Test
+	public void testGetEnvelopeFromShape() {
+		Envelope envelope = new Envelope();
+
+		BytesWritable geomref = GeometryUtils.geometryToEsriShapeBytesWritable(new Point(1.5, 2.5), 0,
+				GeometryUtils.OGCType.ST_POINT);
+		assertTrue(GeometryUtils.getEnvelope(geomref, envelope));
+		assertEquals(1.5, envelope.getXMin(), Epsilon);
+		assertEquals(2.5, envelope.getYMax(), Epsilon);
+
+		Polyline polyline = new Polyline();
+		polyline.startPath(3, -1);
+		polyline.lineTo(-2, 7);
+		geomref = GeometryUtils.geometryToEsriShapeBytesWritable(polyline, 0, GeometryUtils.OGCType.ST_LINESTRING);
+		assertTrue(GeometryUtils.getEnvelope(geomref, envelope));
+		assertEquals(-2, envelope.getXMin(), Epsilon);
+		assertEquals(-1, envelope.getYMin(), Epsilon);
+		assertEquals(3, envelope.getXMax(), Epsilon);
+		assertEquals(7, envelope.getYMax(), Epsilon);
+
+		MultiPoint multiPoint = new MultiPoint();
+		multiPoint.add(10, 20);
+		multiPoint.add(30, 5);
+		geomref = GeometryUtils.geometryToEsriShapeBytesWritable(multiPoint, 0, GeometryUtils.OGCType.ST_MULTIPOINT);
+		assertTrue(GeometryUtils.getEnvelope(geomref, envelope));
+		assertEquals(10, envelope.getXMin(), Epsilon);
+		assertEquals(5, envelope.getYMin(), Epsilon);
+		assertEquals(30, envelope.getXMax(), Epsilon);
+		assertEquals(20, envelope.getYMax(), Epsilon);
+
+		geomref = GeometryUtils.geometryToEsriShapeBytesWritable(new Polygon(), 0, GeometryUtils.OGCType.ST_POLYGON);
+		assertTrue(GeometryUtils.getEnvelope(geomref, envelope));
+		assertTrue(envelope.isEmpty());
+	}
+
+	@Test
+	public void testEnvelopeAccessors() {
+		BytesWritable geomref = polygonBytes(0);
+		assertEquals(1, new ST_MinX().evaluate(geomref).get(), Epsilon);
+		assertEquals(2, new ST_MinY().evaluate(geomref).get(), Epsilon);
+		assertEquals(4, new ST_MaxX().evaluate(geomref).get(), Epsilon);
+		assertEquals(5, new ST_MaxY().evaluate(geomref).get(), Epsilon);
+	}
+
+	@Test
+	public void testPointAccessors() {
+		BytesWritable geomref = new ST_Point().evaluate(new DoubleWritable(1.5), new DoubleWritable(2.5),
+				new DoubleWritable(3.5), new DoubleWritable(4.5));
+		assertTrue(GeometryUtils.hasZ(geomref));
+		assertTrue(GeometryUtils.hasM(geomref));
+		assertEquals(1.5, new ST_X().evaluate(geomref).get(), Epsilon);
+		assertEquals(2.5, new ST_Y().evaluate(geomref).get(), Epsilon);
+		assertEquals(3.5, new ST_Z().evaluate(geomref).get(), Epsilon);
+		assertEquals(4.5, new ST_M().evaluate(geomref).get(), Epsilon);
+		assertEquals(4, new ST_CoordDim().evaluate(geomref).get());
+
+		Point measured = new Point(1, 2);
+		measured.setM(5);
+		geomref = GeometryUtils.geometryToEsriShapeBytesWritable(measured, 0, GeometryUtils.OGCType.ST_POINT);
+		assertFalse(GeometryUtils.hasZ(geomref));
+		assertNull(new ST_Z().evaluate(geomref));
+		assertEquals(5, new ST_M().evaluate(geomref).get(), Epsilon);
+		assertEquals(3, new ST_CoordDim().evaluate(geomref).get());
+
+		geomref = new ST_Point().evaluate(new DoubleWritable(1.5), new DoubleWritable(2.5));
+		assertNull(new ST_M().evaluate(geomref));
+		assertEquals(2, new ST_CoordDim().evaluate(geomref).get());
+
+		geomref = polygonBytes(0);
+		assertNull(new ST_X().evaluate(geomref));
+		assertEquals(2, new ST_CoordDim().evaluate(geomref).get());
+	}
+
+	@Test
+	public void testWritePoint() {
+		double [][] points = { { 1.5, -2.5, 3, 4 }, { Double.NaN, 2, 3, 4 }, { 1, 2, Double.NaN, Double.NaN } };
+		BytesWritable geomref = new BytesWritable();
+
+		for (double [] coordinates : points) {
+			for (int variant = 0; variant < 4; variant++) {
+				boolean hasZ = (variant & 1) != 0;
+				boolean hasM = (variant & 2) != 0;
+
+				Point point = new Point(coordinates[0], coordinates[1]);
+				if (hasZ) {
+					point.setZ(coordinates[2]);
+				}
+				if (hasM) {
+					point.setM(coordinates[3]);
+				}
+				BytesWritable expected = GeometryUtils.geometryToEsriShapeBytesWritable(point, 4326, GeometryUtils.OGCType.ST_POINT);
+
+				// the buffer is reused, from longer to shorter points
+				GeometryUtils.writePoint(geomref, 4326, coordinates[0], coordinates[1], hasZ, coordinates[2], hasM, coordinates[3]);
+				assertEquals(expected, geomref);
+			}
+		}
+
+		GeometryUtils.writePoint(geomref, 0, 1.5, 2.5);
+		assertEquals(GeometryUtils.OGCType.ST_POINT, GeometryUtils.getType(geomref));
+		assertEquals(1.5, GeometryUtils.getPointX(geomref), Epsilon);
+		assertEquals(2.5, ((Point)GeometryUtils.geometryFromEsriShape(geomref).getEsriGeometry()).getY(), Epsilon);
+	}
+}
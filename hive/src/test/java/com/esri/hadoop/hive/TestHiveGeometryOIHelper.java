@@ -0,0 +1,50 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredJavaObject;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredObject;
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestHiveGeometryOIHelper {
+
+	private static BytesWritable squareBytes(double offset) {
+		Polygon polygon = new Polygon();
+		polygon.startPath(offset, offset);
+		polygon.lineTo(offset, offset + 1);
+		polygon.lineTo(offset + 1, offset + 1);
+		polygon.lineTo(offset + 1, offset);
+		return GeometryUtils.geometryToEsriShapeBytesWritable(polygon, 0, GeometryUtils.OGCType.ST_POLYGON);
+	}
+
+	@Test
+	public void testInterning() throws Exception {
+		HiveGeometryOIHelper helper = HiveGeometryOIHelper.create(GeometryUtils.geometryTransportObjectInspector, 0);
+		assertFalse(helper.isConstant());
+
+		Configuration conf = new Configuration();
+		conf.setInt(HiveGeometryOIHelper.CONF_INTERN_MIN_GEOMETRY_BYTES, 0);
+		helper.configure(conf);
+
+		// the source recycles one writable for all rows
+		BytesWritable recycled = new BytesWritable();
+		DeferredObject [] args = { new DeferredJavaObject(recycled) };
+
+		recycled.set(squareBytes(0));
+		OGCGeometry first = helper.getGeometry(args);
+		recycled.set(squareBytes(5));
+		OGCGeometry second = helper.getGeometry(args);
+		recycled.set(squareBytes(0));
+		OGCGeometry third = helper.getGeometry(args);
+
+		assertNotSame(first, second);
+		assertSame(first, third);
+		assertEquals(2, helper.getInternedGeometries().size());
+		assertEquals(1, helper.getInternedGeometries().getHitCount());
+	}
+}
@@ -0,0 +1,124 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.GeometryEngine;
+import com.esri.core.geometry.MultiPoint;
+import com.esri.core.geometry.Point;
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.Polyline;
+import com.esri.core.geometry.SpatialReference;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestIncrementalConvexHull {
+
+	private static final SpatialReference spatialRef = SpatialReference.create(4326);
+
+	private static BytesWritable geomref(Geometry geometry) {
+		return GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.createFromEsriGeometry(geometry, spatialRef));
+	}
+
+	private static void assertHull(Geometry expected, Geometry hull) {
+		assertTrue(GeometryEngine.geometryToJson(spatialRef, hull), GeometryEngine.equals(expected, hull, spatialRef));
+	}
+
+	@Test
+	public void testPoints() {
+		// enough points to rebuild the hull many times
+		Random random = new Random(23);
+		IncrementalConvexHull hull = new IncrementalConvexHull();
+		MultiPoint points = new MultiPoint();
+		for (int i = 0; i < 20000; i++) {
+			Point point = new Point(random.nextGaussian(), random.nextGaussian());
+			points.add(point);
+			assertTrue(hull.add(geomref(point)));
+		}
+		assertHull(GeometryEngine.convexHull(points), hull.getHull());
+
+		// points on a circle are all on the hull
+		hull.clear();
+		points = new MultiPoint();
+		for (int i = 0; i < 5000; i++) {
+			Point point = new Point(Math.cos(i * 0.001), Math.sin(i * 0.001));
+			points.add(point);
+			hull.add(point);
+		}
+		Geometry result = hull.getHull();
+		assertHull(GeometryEngine.convexHull(points), result);
+		assertEquals(5000, ((Polygon)result).getPointCount());
+	}
+
+	@Test
+	public void testShapes() {
+		Random random = new Random(24);
+		IncrementalConvexHull fromBytes = new IncrementalConvexHull();
+		IncrementalConvexHull fromGeometries = new IncrementalConvexHull();
+		Geometry [] geometries = new Geometry[300];
+		for (int i = 0; i < geometries.length; i++) {
+			double x = 100 * random.nextGaussian(), y = 100 * random.nextGaussian();
+			if (i % 3 == 0) {
+				Polygon polygon = new Polygon();
+				polygon.startPath(x, y);
+				polygon.lineTo(x, y + 1 + random.nextInt(10));
+				polygon.lineTo(x + 1 + random.nextInt(10), y);
+				geometries[i] = polygon;
+			} else if (i % 3 == 1) {
+				Polyline line = new Polyline();
+				line.startPath(x, y);
+				line.lineTo(x + random.nextInt(10), y - random.nextInt(10));
+				line.startPath(x - 5, y);
+				line.lineTo(x, y + 5);
+				geometries[i] = line;
+			} else {
+				MultiPoint points = new MultiPoint();
+				points.add(x, y);
+				points.add(x + random.nextInt(10), y + random.nextInt(10));
+				geometries[i] = points;
+			}
+			assertTrue(fromBytes.add(geomref(geometries[i])));
+			fromGeometries.add(geometries[i]);
+		}
+
+		Geometry expected = GeometryEngine.convexHull(geometries, true)[0];
+		assertHull(expected, fromBytes.getHull());
+		assertHull(expected, fromGeometries.getHull());
+	}
+
+	@Test
+	public void testDegenerate() {
+		IncrementalConvexHull hull = new IncrementalConvexHull();
+		assertTrue(hull.isEmpty());
+		assertNull(hull.getHull());
+
+		// empty geometries add nothing
+		assertTrue(hull.add(geomref(new Point())));
+		hull.add(new Polygon());
+		assertNull(hull.getHull());
+
+		hull.add(new Point(1, 2));
+		hull.add(new Point(1, 2));
+		assertEquals(new Point(1, 2), hull.getHull());
+
+		// collinear vertices give a line between the outermost ones
+		hull.add(new Point(3, 4));
+		hull.add(new Point(2, 3));
+		Polyline line = new Polyline();
+		line.startPath(1, 2);
+		line.lineTo(3, 4);
+		assertHull(line, hull.getHull());
+
+		hull.add(new Point(3, 2));
+		assertEquals(3, ((Polygon)hull.getHull()).getPointCount());
+		assertTrue(hull.getHull().calculateArea2D() > 0);  // clockwise
+
+		hull.clear();
+		assertTrue(hull.isEmpty());
+		assertNull(hull.getHull());
+	}
+}
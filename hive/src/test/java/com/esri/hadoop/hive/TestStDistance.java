@@ -0,0 +1,128 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredJavaObject;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredObject;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import com.esri.core.geometry.Point;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestStDistance {
+
+	private final static double Epsilon = 0.0001;
+
+	private static BytesWritable point(double x, double y, int wkid) {
+		return GeometryUtils.geometryToEsriShapeBytesWritable(new Point(x, y), wkid, GeometryUtils.OGCType.ST_POINT);
+	}
+
+	@Test
+	public void testDistance() throws Exception {
+		ST_Distance distance = new ST_Distance();
+		ObjectInspector binaryOI = PrimitiveObjectInspectorFactory.writableBinaryObjectInspector;
+		ObjectInspector constantOI = PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(
+				PrimitiveCategory.BINARY, point(0, 0, 0));
+		ObjectInspector resultOI = distance.initialize(new ObjectInspector [] { constantOI, binaryOI });
+		assertEquals(PrimitiveObjectInspectorFactory.writableDoubleObjectInspector, resultOI);
+
+		DeferredObject [] args = { new DeferredJavaObject(null), new DeferredJavaObject(point(3, 4, 0)) };
+		assertEquals(5, ((DoubleWritable)distance.evaluate(args)).get(), Epsilon);
+
+		args[1] = new DeferredJavaObject(point(6, 8, 0));
+		assertEquals(10, ((DoubleWritable)distance.evaluate(args)).get(), Epsilon);
+
+		// mismatched spatial references
+		args[1] = new DeferredJavaObject(point(6, 8, 4326));
+		assertNull(distance.evaluate(args));
+
+		args[1] = new DeferredJavaObject(null);
+		assertNull(distance.evaluate(args));
+	}
+
+	@Test
+	public void testEmptyBytes() throws Exception {
+		// empty binaries hold no geometry, like nulls
+		ObjectInspector binaryOI = PrimitiveObjectInspectorFactory.writableBinaryObjectInspector;
+		DeferredObject [] args = { new DeferredJavaObject(new BytesWritable()), new DeferredJavaObject(point(3, 4, 0)) };
+
+		ST_Distance distance = new ST_Distance();
+		distance.initialize(new ObjectInspector [] { binaryOI, binaryOI });
+		assertNull(distance.evaluate(args));
+
+		ST_Intersection intersection = new ST_Intersection();
+		intersection.initialize(new ObjectInspector [] { binaryOI, binaryOI });
+		assertNull(intersection.evaluate(args));
+
+		ObjectInspector distanceOI = PrimitiveObjectInspectorFactory.writableDoubleObjectInspector;
+		ST_Buffer buffer = new ST_Buffer();
+		buffer.initialize(new ObjectInspector [] { binaryOI, distanceOI });
+		assertNull(buffer.evaluate(new DeferredObject [] { args[0], new DeferredJavaObject(new DoubleWritable(1)) }));
+
+		ObjectInspector constantOI = PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(
+				PrimitiveCategory.BINARY, new BytesWritable());
+		distance = new ST_Distance();
+		distance.initialize(new ObjectInspector [] { constantOI, binaryOI });
+		assertNull(distance.evaluate(args));
+	}
+
+	@Test
+	public void testConstantPoint() throws Exception {
+		ObjectInspector binaryOI = PrimitiveObjectInspectorFactory.writableBinaryObjectInspector;
+		ObjectInspector constantOI = PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(
+				PrimitiveCategory.BINARY, point(-71.1, 42.3, 4326));
+
+		ST_Distance constant = new ST_Distance();
+		constant.initialize(new ObjectInspector [] { binaryOI, constantOI });
+		ST_Distance reference = new ST_Distance();
+		reference.initialize(new ObjectInspector [] { binaryOI, binaryOI });
+
+		BytesWritable [] geometries = { point(-71.2, 42.5, 4326), point(1e7, -3.3, 4326), point(-71.1, 42.3, 4326),
+				GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.fromText("LINESTRING (0 0, 1 1)").getEsriGeometry(),
+						4326, GeometryUtils.OGCType.ST_LINESTRING) };
+		for (BytesWritable geometry : geometries) {
+			DeferredObject [] args = { new DeferredJavaObject(geometry), new DeferredJavaObject(null) };
+			DeferredObject [] referenceArgs = { new DeferredJavaObject(geometry), new DeferredJavaObject(point(-71.1, 42.3, 4326)) };
+			// exactly the same as the distance of the deserialized geometries
+			assertEquals(((DoubleWritable)reference.evaluate(referenceArgs)).get(), ((DoubleWritable)constant.evaluate(args)).get(), 0);
+		}
+	}
+
+	@Test
+	public void testBin() throws Exception {
+		ST_Bin bin = new ST_Bin();
+		ObjectInspector binSizeOI = PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(
+				PrimitiveCategory.DOUBLE, new DoubleWritable(0.5));
+		ObjectInspector resultOI = bin.initialize(new ObjectInspector [] { binSizeOI, PrimitiveObjectInspectorFactory.writableBinaryObjectInspector });
+		assertEquals(PrimitiveObjectInspectorFactory.writableLongObjectInspector, resultOI);
+
+		DeferredObject [] args = { new DeferredJavaObject(new DoubleWritable(0.5)), new DeferredJavaObject(point(10.3, -4.2, 0)) };
+		assertEquals(new BinUtils(0.5).getId(10.3, -4.2), ((LongWritable)bin.evaluate(args)).get());
+
+		args[1] = new DeferredJavaObject(GeometryUtils.geometryToEsriShapeBytesWritable(
+				OGCGeometry.fromText("LINESTRING (0 0, 1 1)").getEsriGeometry(), 0, GeometryUtils.OGCType.ST_LINESTRING));
+		assertNull(bin.evaluate(args));
+	}
+
+	@Test
+	public void testAccessor() throws Exception {
+		ST_X x = new ST_X();
+		ObjectInspector constantOI = PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(
+				PrimitiveCategory.BINARY, point(1.5, 2.5, 0));
+		ObjectInspector resultOI = x.initialize(new ObjectInspector [] { constantOI });
+		assertEquals(PrimitiveObjectInspectorFactory.writableDoubleObjectInspector, resultOI);
+		assertEquals(1.5, ((DoubleWritable)x.evaluate(new DeferredObject [] { new DeferredJavaObject(null) })).get(), Epsilon);
+
+		ST_GeometryType type = new ST_GeometryType();
+		resultOI = type.initialize(new ObjectInspector [] { PrimitiveObjectInspectorFactory.writableBinaryObjectInspector });
+		assertEquals(PrimitiveObjectInspectorFactory.writableStringObjectInspector, resultOI);
+		assertEquals(new Text("ST_POINT"), type.evaluate(new DeferredObject [] { new DeferredJavaObject(point(1, 2, 0)) }));
+	}
+}
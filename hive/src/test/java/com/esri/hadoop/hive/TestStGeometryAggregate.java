@@ -0,0 +1,196 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.hadoop.hive.ql.exec.UDFArgumentTypeException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.Mode;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+import com.esri.core.geometry.Envelope;
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.GeometryEngine;
+import com.esri.core.geometry.MultiPoint;
+import com.esri.core.geometry.Point;
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.SpatialReference;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestStGeometryAggregate {
+
+	private static final SpatialReference spatialRef = SpatialReference.create(4326);
+
+	private static final ObjectInspector [] geometryOIs = { GeometryUtils.geometryTransportObjectInspector };
+
+	private static BytesWritable geomref(Geometry geometry, SpatialReference spatialRef) {
+		return GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.createFromEsriGeometry(geometry, spatialRef));
+	}
+
+	private static ArrayList<BytesWritable> squares(Random random, int count) {
+		ArrayList<BytesWritable> rows = new ArrayList<BytesWritable>();
+		for (int i = 0; i < count; i++) {
+			double x = random.nextInt(20), y = random.nextInt(20);
+			Polygon square = new Polygon();
+			square.addEnvelope(new Envelope(x, y, x + 10, y + 10), false);
+			rows.add(geomref(square, spatialRef));
+		}
+		return rows;
+	}
+
+	private static GenericUDAFEvaluator evaluator(ST_GeometryAggregate aggregate, Mode mode) throws Exception {
+		GenericUDAFEvaluator evaluator = aggregate.getEvaluator(new TypeInfo[] { TypeInfoFactory.binaryTypeInfo });
+		evaluator.init(mode, geometryOIs);
+		return evaluator;
+	}
+
+	/*
+	 * Aggregates all rows in COMPLETE mode, then again in two PARTIAL1 halves merged in FINAL mode
+	 * with a reused buffer, and checks that both give the same geometry.
+	 */
+	private static OGCGeometry aggregate(ST_GeometryAggregate aggregate, ArrayList<BytesWritable> rows) throws Exception {
+		GenericUDAFEvaluator complete = evaluator(aggregate, Mode.COMPLETE);
+		AggregationBuffer buffer = complete.getNewAggregationBuffer();
+		for (BytesWritable row : rows) {
+			complete.iterate(buffer, new Object[] { row });
+		}
+		assertTrue(((GenericUDAFEvaluator.AbstractAggregationBuffer)buffer).estimate() > 0);
+		OGCGeometry expected = GeometryUtils.geometryFromEsriShape((BytesWritable)complete.terminate(buffer));
+
+		GenericUDAFEvaluator partial1 = evaluator(aggregate, Mode.PARTIAL1);
+		ArrayList<BytesWritable> partials = new ArrayList<BytesWritable>();
+		buffer = partial1.getNewAggregationBuffer();
+		for (int half = 0; half < 2; half++) {
+			partial1.reset(buffer);
+			for (int i = half; i < rows.size(); i += 2) {
+				partial1.iterate(buffer, new Object[] { rows.get(i) });
+			}
+			BytesWritable partial = (BytesWritable)partial1.terminatePartial(buffer);
+			partials.add(new BytesWritable(Arrays.copyOf(partial.getBytes(), partial.getLength())));
+		}
+
+		GenericUDAFEvaluator merger = evaluator(aggregate, Mode.FINAL);
+		buffer = merger.getNewAggregationBuffer();
+		for (BytesWritable partial : partials) {
+			merger.merge(buffer, partial);
+		}
+		OGCGeometry merged = GeometryUtils.geometryFromEsriShape((BytesWritable)merger.terminate(buffer));
+
+		assertEquals(4326, GeometryUtils.getWKID(merged));
+		assertTrue(merged.asText(), merged.isEmpty() ? expected.isEmpty() : merged.equals(expected));  // empties are never equal
+		return merged;
+	}
+
+	@Test
+	public void testUnion() throws Exception {
+		ArrayList<BytesWritable> rows = squares(new Random(22), 200);
+		ArrayList<Geometry> geometries = new ArrayList<Geometry>();
+		for (BytesWritable row : rows) {
+			geometries.add(GeometryUtils.geometryFromEsriShape(row).getEsriGeometry());
+		}
+		Geometry expected = GeometryEngine.union(geometries.toArray(new Geometry[0]), spatialRef);
+
+		OGCGeometry union = aggregate(new ST_Aggr_Union(), rows);
+		assertTrue(GeometryEngine.equals(expected, union.getEsriGeometry(), spatialRef));
+	}
+
+	@Test
+	public void testConvexHull() throws Exception {
+		Random random = new Random(23);
+		ArrayList<BytesWritable> rows = new ArrayList<BytesWritable>();
+		MultiPoint points = new MultiPoint();
+		for (int i = 0; i < 2500; i++) {
+			Point point = new Point(random.nextGaussian(), random.nextGaussian());
+			points.add(point);
+			rows.add(geomref(point, spatialRef));
+		}
+
+		OGCGeometry hull = aggregate(new ST_Aggr_ConvexHull(), rows);
+		assertTrue(GeometryEngine.equals(GeometryEngine.convexHull(points), hull.getEsriGeometry(), spatialRef));
+	}
+
+	@Test
+	public void testIntersection() throws Exception {
+		ArrayList<BytesWritable> rows = new ArrayList<BytesWritable>();
+		for (int i = 0; i < 10; i++) {
+			Polygon square = new Polygon();
+			square.addEnvelope(new Envelope(i, 0, i + 10, 10), false);
+			rows.add(geomref(square, spatialRef));
+		}
+
+		OGCGeometry intersection = aggregate(new ST_Aggr_Intersection(), rows);
+		assertEquals(10, intersection.getEsriGeometry().calculateArea2D(), 1e-9);
+
+		// a disjoint row empties the intersection, and the rows after it do not matter
+		rows.add(geomref(new Point(50, 50), spatialRef));
+		rows.addAll(squares(new Random(24), 50));
+		intersection = aggregate(new ST_Aggr_Intersection(), rows);
+		assertTrue(intersection.isEmpty());
+
+		// geometries closer than the tolerance still intersect
+		rows.clear();
+		rows.add(geomref(new Point(10, 10), spatialRef));
+		rows.add(geomref(new Point(10.000000001, 10), spatialRef));
+		intersection = aggregate(new ST_Aggr_Intersection(), rows);
+		assertEquals(Geometry.Type.Point, intersection.getEsriGeometry().getType());
+		assertEquals(10, ((Point)intersection.getEsriGeometry()).getX(), 1e-8);
+
+		rows.clear();
+		Polygon square = new Polygon();
+		square.addEnvelope(new Envelope(0, 0, 1, 1), false);
+		rows.add(geomref(square, spatialRef));
+		square = new Polygon();
+		square.addEnvelope(new Envelope(1.000000001, 0, 2, 1), false);
+		rows.add(geomref(square, spatialRef));
+		intersection = aggregate(new ST_Aggr_Intersection(), rows);
+		assertFalse(intersection.isEmpty());
+	}
+
+	@Test
+	public void testExtent() throws Exception {
+		ArrayList<BytesWritable> rows = squares(new Random(25), 100);
+		rows.add(geomref(new Point(-5, 40), spatialRef));
+		rows.add(geomref(new Point(), spatialRef));
+
+		OGCGeometry extent = aggregate(new ST_Aggr_Extent(), rows);
+		Envelope envelope = new Envelope();
+		extent.getEsriGeometry().queryEnvelope(envelope);
+		assertEquals(new Envelope(-5, 0, 29, 40), envelope);
+
+		// the partial is the WKID and the four coordinates
+		GenericUDAFEvaluator partial1 = evaluator(new ST_Aggr_Extent(), Mode.PARTIAL1);
+		AggregationBuffer buffer = partial1.getNewAggregationBuffer();
+		partial1.iterate(buffer, new Object[] { rows.get(0) });
+		assertEquals(36, ((BytesWritable)partial1.terminatePartial(buffer)).getLength());
+	}
+
+	@Test
+	public void testSkipped() throws Exception {
+		GenericUDAFEvaluator evaluator = evaluator(new ST_Aggr_Union(), Mode.COMPLETE);
+		AggregationBuffer buffer = evaluator.getNewAggregationBuffer();
+		assertNull(evaluator.terminate(buffer));
+
+		// nulls and geometries in another spatial reference are left out
+		evaluator.iterate(buffer, new Object[] { null });
+		evaluator.iterate(buffer, new Object[] { geomref(new Point(1, 2), spatialRef) });
+		evaluator.iterate(buffer, new Object[] { geomref(new Point(3, 4), null) });
+		OGCGeometry result = GeometryUtils.geometryFromEsriShape((BytesWritable)evaluator.terminate(buffer));
+		assertEquals("POINT (1 2)", result.asText());
+
+		evaluator.reset(buffer);
+		assertNull(evaluator.terminate(buffer));
+	}
+
+	@Test(expected = UDFArgumentTypeException.class)
+	public void testNotGeometry() throws Exception {
+		new ST_Aggr_Union().getEvaluator(new TypeInfo[] { TypeInfoFactory.stringTypeInfo });
+	}
+}
@@ -0,0 +1,177 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredJavaObject;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredObject;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+import com.esri.core.geometry.Geometry;
+import com.esri.core.geometry.OperatorSimpleRelation;
+import com.esri.core.geometry.Point;
+import com.esri.core.geometry.Polygon;
+import com.esri.core.geometry.Geometry.GeometryAccelerationDegree;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestStGeometryRelational {
+
+	private static final ObjectInspector binaryOI = PrimitiveObjectInspectorFactory.writableBinaryObjectInspector;
+
+	private static BytesWritable polygonBytes() {
+		Polygon polygon = new Polygon();
+		polygon.startPath(0, 0);
+		polygon.lineTo(0, 4);
+		polygon.lineTo(4, 4);
+		polygon.lineTo(4, 0);
+		return GeometryUtils.geometryToEsriShapeBytesWritable(polygon, 0, GeometryUtils.OGCType.ST_POLYGON);
+	}
+
+	private static BytesWritable squareBytes(double x, double y, double size) {
+		Polygon polygon = new Polygon();
+		polygon.startPath(x, y);
+		polygon.lineTo(x, y + size);
+		polygon.lineTo(x + size, y + size);
+		polygon.lineTo(x + size, y);
+		return GeometryUtils.geometryToEsriShapeBytesWritable(polygon, 4326, GeometryUtils.OGCType.ST_POLYGON);
+	}
+
+	private static BytesWritable pointBytes(double x, double y) {
+		return GeometryUtils.geometryToEsriShapeBytesWritable(new Point(x, y), 0, GeometryUtils.OGCType.ST_POINT);
+	}
+
+	private static ObjectInspector constantOI(BytesWritable geomref) {
+		return PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(PrimitiveCategory.BINARY, geomref);
+	}
+
+	/*
+	 * The geometry API has no public query for acceleration
+	 */
+	private static boolean isAccelerated(Geometry geometry) throws Exception {
+		Method getImpl = Geometry.class.getDeclaredMethod("_getImpl");
+		getImpl.setAccessible(true);
+		Object impl = getImpl.invoke(geometry);
+
+		Method getAccelerators = impl.getClass().getMethod("_getAccelerators");
+		getAccelerators.setAccessible(true);
+		Object accelerators = getAccelerators.invoke(impl);
+		if (accelerators == null) {
+			return false;
+		}
+
+		// de-acceleration releases the accelerators but keeps their holder
+		for (String name : new String [] { "getRasterizedGeometry", "getQuadTree" }) {
+			Method getAccelerator = accelerators.getClass().getMethod(name);
+			getAccelerator.setAccessible(true);
+			if (getAccelerator.invoke(accelerators) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static ST_GeometryRelational [] relations() {
+		return new ST_GeometryRelational [] { new ST_Contains(), new ST_Crosses(), new ST_Disjoint(),
+				new ST_Equals(), new ST_Intersects(), new ST_Overlaps(), new ST_Touches(), new ST_Within() };
+	}
+
+	private static Object evaluate(ST_GeometryRelational relation, BytesWritable geom1, BytesWritable geom2) throws Exception {
+		return relation.evaluate(new DeferredObject [] { new DeferredJavaObject(geom1), new DeferredJavaObject(geom2) });
+	}
+
+	private static void assertAcceleratedUntilClosed(ST_GeometryRelational relation) throws Exception {
+		String name = relation.getClass().getSimpleName();
+		OGCGeometry accelerated = relation.getAcceleratedGeometry();
+		assertNotNull(name, accelerated);
+		assertTrue(name, isAccelerated(accelerated.getEsriGeometry()));
+
+		relation.close();
+		assertNull(name, relation.getAcceleratedGeometry());
+		assertFalse(name, isAccelerated(accelerated.getEsriGeometry()));
+	}
+
+	@Test
+	public void testConstantFirstArgument() throws Exception {
+		for (ST_GeometryRelational relation : relations()) {
+			relation.initialize(new ObjectInspector [] { constantOI(polygonBytes()), binaryOI });
+			// equal envelopes pass the envelope filter of every relation
+			evaluate(relation, polygonBytes(), polygonBytes());
+			assertNull(relation.getAcceleratedGeometries());
+			assertAcceleratedUntilClosed(relation);
+		}
+	}
+
+	@Test
+	public void testConstantSecondArgument() throws Exception {
+		ST_GeometryRelational [] swapped = relations();
+		ST_GeometryRelational [] reference = relations();
+
+		for (int i = 0; i < swapped.length; i++) {
+			ST_GeometryRelational relation = swapped[i];
+			relation.initialize(new ObjectInspector [] { binaryOI, constantOI(polygonBytes()) });
+			reference[i].initialize(new ObjectInspector [] { binaryOI, binaryOI });
+
+			// the inverse relation gives the same results as the relation
+			for (double x = -1; x <= 5; x += 1) {
+				BytesWritable point = pointBytes(x, 2);
+				assertEquals(relation.getClass().getSimpleName() + " " + x,
+						evaluate(reference[i], point, polygonBytes()), evaluate(relation, point, polygonBytes()));
+			}
+			assertEquals(evaluate(reference[i], polygonBytes(), polygonBytes()), evaluate(relation, polygonBytes(), polygonBytes()));
+
+			if (relation instanceof ST_Crosses) {
+				// no inverse, geometry 1 is pooled instead
+				assertNull(relation.getAcceleratedGeometry());
+				assertNotNull(relation.getAcceleratedGeometries());
+				relation.close();
+			} else {
+				assertNull(relation.getAcceleratedGeometries());
+				assertAcceleratedUntilClosed(relation);
+			}
+			reference[i].close();
+		}
+	}
+
+	@Test
+	public void testEnvelopeFilter() throws Exception {
+		BytesWritable [] geometries = { squareBytes(0, 0, 4), squareBytes(0, 0, 4), squareBytes(1, 1, 2),
+				squareBytes(4, 0, 4), squareBytes(4, 4, 1), squareBytes(2, 2, 4), squareBytes(10, 10, 1),
+				squareBytes(-1, -1, 6), pointBytes(2, 2), pointBytes(4, 2), pointBytes(4.5, 2), pointBytes(0, 0) };
+
+		for (ST_GeometryRelational relation : relations()) {
+			relation.initialize(new ObjectInspector [] { binaryOI, binaryOI });
+			OperatorSimpleRelation operator = relation.getRelationOperator();
+
+			for (BytesWritable geom1 : geometries) {
+				for (BytesWritable geom2 : geometries) {
+					OGCGeometry ogc1 = GeometryUtils.deserialize(geom1);
+					OGCGeometry ogc2 = GeometryUtils.deserialize(geom2);
+					boolean expected = operator.execute(ogc1.getEsriGeometry(), ogc2.getEsriGeometry(),
+							ogc1.getEsriSpatialReference(), null);
+					assertEquals(relation.getClass().getSimpleName() + " " + ogc1.asText() + " " + ogc2.asText(),
+							expected, evaluate(relation, geom1, geom2));
+				}
+			}
+			relation.close();
+		}
+	}
+
+	@Test
+	public void testAccelerationDegree() {
+		assertEquals(GeometryAccelerationDegree.enumMedium, ST_GeometryRelational.getAccelerationDegree(null));
+
+		Configuration conf = new Configuration(false);
+		conf.set(ST_GeometryRelational.CONF_ACCELERATION_DEGREE, "Hot");
+		assertEquals(GeometryAccelerationDegree.enumHot, ST_GeometryRelational.getAccelerationDegree(conf));
+		conf.set(ST_GeometryRelational.CONF_ACCELERATION_DEGREE, "mild");
+		assertEquals(GeometryAccelerationDegree.enumMild, ST_GeometryRelational.getAccelerationDegree(conf));
+		conf.set(ST_GeometryRelational.CONF_ACCELERATION_DEGREE, "warm");
+		assertEquals(GeometryAccelerationDegree.enumMedium, ST_GeometryRelational.getAccelerationDegree(conf));
+	}
+}
@@ -0,0 +1,85 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+public class TestStPolygon {
+
+	private static DoubleWritable [] coordinates(double ... values) {
+		DoubleWritable [] writables = new DoubleWritable [values.length];
+		for (int i = 0; i < values.length; i++) {
+			writables[i] = new DoubleWritable(values[i]);
+		}
+		return writables;
+	}
+
+	private static String ring(double ... values) {
+		StringBuilder builder = new StringBuilder("(");
+		for (int i = 0; i < values.length; i += 2) {
+			builder.append(i > 0 ? ", " : "").append(values[i]).append(' ').append(values[i + 1]);
+		}
+		if (values[0] != values[values.length - 2] || values[1] != values[values.length - 1]) {
+			builder.append(", ").append(values[0]).append(' ').append(values[1]);
+		}
+		return builder.append(')').toString();
+	}
+
+	@Test
+	public void testNumberPairs() throws Exception {
+		ST_Polygon polygon = new ST_Polygon();
+		double [][] rings = {
+				{ 1, 1, 1, 4, 4, 4, 4, 1 },          // clockwise
+				{ 1, 1, 4, 1, 4, 4, 1, 4 },          // counterclockwise
+				{ 0, 0, 1, 0, 1, 1, 0, 0 },          // closed
+				{ 0, 0, 0.1, 0.2, 1e10, 3, 5, 5 },
+				{ 0, 0, 1, 1, 2, 2 },                // collinear
+				{ 0, 0, 1, 0, 1, 1, 0, 1, 0, 0, 0, 0 } };
+
+		for (double [] ring : rings) {
+			BytesWritable expected = polygon.evaluate(new Text("polygon (" + ring(ring) + ")"));
+			assertEquals(Arrays.toString(ring), expected, polygon.evaluate(coordinates(ring)));
+		}
+
+		assertNull(polygon.evaluate(coordinates(1, 1, 1, 4, 4)));
+	}
+
+	@Test
+	public void testSelfIntersecting() throws Exception {
+		ST_Polygon polygon = new ST_Polygon();
+		// negative area, but clockwise at the highest vertex
+		double [] ring = { 1, 1, 2, 9.2026, -5.8737, -3.3188, 0.4549, 11.9143, -4.5322, -0.6009, 3, 3, -8.6082, -7.3537, 1, 1 };
+		assertEquals(polygon.evaluate(new Text("polygon (" + ring(ring) + ")")), polygon.evaluate(coordinates(ring)));
+
+		Random random = new Random(13);
+		for (int i = 0; i < 2000; i++) {
+			ring = new double[2 * (3 + random.nextInt(8))];
+			for (int j = 0; j < ring.length; j++) {
+				ring[j] = random.nextBoolean() ? random.nextInt(5) : random.nextDouble() * 20 - 10;
+			}
+			BytesWritable expected = polygon.evaluate(new Text("polygon (" + ring(ring) + ")"));
+			assertEquals(Arrays.toString(ring), expected, polygon.evaluate(coordinates(ring)));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testMultiPolygon() throws Exception {
+		ST_MultiPolygon multiPolygon = new ST_MultiPolygon();
+		double [] ring1 = { 1, 1, 1, 4, 4, 4, 4, 1 };
+		double [] ring2 = { 10, 1, 14, 1, 14, 5, 10, 5 };
+		List<DoubleWritable> list1 = Arrays.asList(coordinates(ring1));
+		List<DoubleWritable> list2 = Arrays.asList(coordinates(ring2));
+
+		BytesWritable expected = multiPolygon.evaluate(new Text("multipolygon ((" + ring(ring1) + "), (" + ring(ring2) + "))"));
+		assertEquals(expected, multiPolygon.evaluate(list1, list2));
+		assertEquals("ST_MULTIPOLYGON", new ST_GeometryType().evaluate(multiPolygon.evaluate(list1, list2)).toString());
+	}
+}
@@ -0,0 +1,103 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import org.apache.hadoop.hive.ql.exec.UDFArgumentException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredJavaObject;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredObject;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestStRelate {
+
+	private static final ObjectInspector binaryOI = PrimitiveObjectInspectorFactory.writableBinaryObjectInspector;
+	private static final ObjectInspector stringOI = PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+
+	private static BytesWritable geometry(String wkt) {
+		return GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.fromText(wkt));
+	}
+
+	private static ObjectInspector constant(PrimitiveCategory category, Object value) {
+		return PrimitiveObjectInspectorFactory.getPrimitiveWritableConstantObjectInspector(category, value);
+	}
+
+	@Test
+	public void testValidRelation() {
+		assertTrue(ST_Relate.isValidRelation("T*F**F***"));
+		assertTrue(ST_Relate.isValidRelation("0T01F12*2"));
+		assertTrue(ST_Relate.isValidRelation("tt*f*****"));
+		assertFalse(ST_Relate.isValidRelation("T*F**F**"));
+		assertFalse(ST_Relate.isValidRelation("T*F**F**X"));
+	}
+
+	@Test
+	public void testConstantGeometries() throws Exception {
+		BytesWritable polygon = geometry("POLYGON ((1 1, 1 4, 4 4, 4 1, 1 1))");
+		String [] geometries = { "POINT (2 3)", "POINT (8 8)", "POINT (1 2)", "LINESTRING (0 2, 2 2)",
+				"POLYGON ((2 0, 2 1, 3 1, 2 0))" };
+		String [] relations = { "T*F**F***", "****T****", "T********", "F***T****", "FF*FF****", "****t****", "tt*******" };
+
+		for (String relation : relations) {
+			Text text = new Text(relation);
+
+			// constant first geometry, constant second geometry, nothing constant
+			ST_Relate first = new ST_Relate();
+			first.initialize(new ObjectInspector [] { constant(PrimitiveCategory.BINARY, polygon), binaryOI,
+					constant(PrimitiveCategory.STRING, text) });
+			ST_Relate second = new ST_Relate();
+			second.initialize(new ObjectInspector [] { binaryOI, constant(PrimitiveCategory.BINARY, polygon),
+					constant(PrimitiveCategory.STRING, text) });
+			ST_Relate none = new ST_Relate();
+			none.initialize(new ObjectInspector [] { binaryOI, binaryOI, stringOI });
+
+			for (String wkt : geometries) {
+				BytesWritable other = geometry(wkt);
+				boolean expected = OGCGeometry.fromText("POLYGON ((1 1, 1 4, 4 4, 4 1, 1 1))").relate(OGCGeometry.fromText(wkt), relation);
+				boolean inverse = OGCGeometry.fromText(wkt).relate(OGCGeometry.fromText("POLYGON ((1 1, 1 4, 4 4, 4 1, 1 1))"), relation);
+
+				DeferredObject [] args = { new DeferredJavaObject(polygon), new DeferredJavaObject(other), new DeferredJavaObject(text) };
+				assertEquals(relation + " " + wkt, expected, ((BooleanWritable)first.evaluate(args)).get());
+				assertEquals(relation + " " + wkt, expected, ((BooleanWritable)none.evaluate(args)).get());
+
+				args = new DeferredObject [] { new DeferredJavaObject(other), new DeferredJavaObject(polygon), new DeferredJavaObject(text) };
+				assertEquals(relation + " " + wkt, inverse, ((BooleanWritable)second.evaluate(args)).get());
+			}
+
+			first.close();
+			second.close();
+			none.close();
+		}
+	}
+
+	@Test(expected = UDFArgumentException.class)
+	public void testInvalidConstantRelation() throws Exception {
+		new ST_Relate().initialize(new ObjectInspector [] { binaryOI, binaryOI,
+				constant(PrimitiveCategory.STRING, new Text("T*F")) });
+	}
+
+	@Test
+	public void testDisjointIntersection() throws Exception {
+		ST_Intersection intersection = new ST_Intersection();
+		intersection.initialize(new ObjectInspector [] { binaryOI, binaryOI });
+
+		String [] geometries = { "POINT (100 100)", "LINESTRING (100 100, 101 101)",
+				"MULTIPOLYGON (((100 100, 101 100, 101 101, 100 100)))" };
+		for (String wkt : geometries) {
+			BytesWritable geometry1 = geometry(wkt);
+			BytesWritable geometry2 = geometry("POLYGON ((0 0, 1 0, 1 1, 0 0))");
+			BytesWritable computed = GeometryUtils.geometryToEsriShapeBytesWritable(
+					OGCGeometry.fromText(wkt).intersection(OGCGeometry.fromText("POLYGON ((0 0, 1 0, 1 1, 0 0))")));
+
+			Object result = intersection.evaluate(new DeferredObject [] { new DeferredJavaObject(geometry1),
+					new DeferredJavaObject(geometry2) });
+			assertEquals(wkt, computed, result);
+		}
+	}
+}
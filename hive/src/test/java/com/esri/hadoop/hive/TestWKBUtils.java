@@ -0,0 +1,207 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.junit.Test;
+
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestWKBUtils {
+
+	private static BytesWritable wkb(boolean littleEndian, int type, double [] ... parts) {
+		int size = 9;
+		for (double [] part : parts) {
+			size += 4 + 8 * part.length;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		buffer.put((byte) (littleEndian ? 1 : 0)).putInt(type);
+		if (type == WKBUtils.WKB_POINT) {
+			buffer.putDouble(parts[0][0]).putDouble(parts[0][1]);
+		} else if (type == WKBUtils.WKB_LINESTRING) {
+			buffer.putInt(parts[0].length / 2);
+			for (double value : parts[0]) {
+				buffer.putDouble(value);
+			}
+		} else {
+			buffer.putInt(parts.length);
+			for (double [] part : parts) {
+				buffer.putInt(part.length / 2);
+				for (double value : part) {
+					buffer.putDouble(value);
+				}
+			}
+		}
+
+		// stale bytes after the WKB, as in a recycled writable
+		BytesWritable writable = new BytesWritable(new byte [buffer.position() + 16]);
+		writable.set(buffer.array(), 0, buffer.position());
+		return writable;
+	}
+
+	private static double [] ring(Random random, boolean closed) {
+		int count = 3 + random.nextInt(6);
+		double [] ring = new double [2 * (count + (closed ? 1 : 0))];
+		double cx = random.nextDouble() * 360 - 180, cy = random.nextDouble() * 180 - 90;
+		double direction = random.nextBoolean() ? 1 : -1;
+		for (int i = 0; i < count; i++) {
+			double angle = direction * 2 * Math.PI * i / count;
+			double radius = 1 + random.nextDouble();
+			ring[2 * i] = cx + radius * Math.cos(angle);
+			ring[2 * i + 1] = cy + radius * Math.sin(angle);
+		}
+		if (closed) {
+			ring[2 * count] = ring[0];
+			ring[2 * count + 1] = ring[1];
+		}
+		return ring;
+	}
+
+	private static void assertTranscoded(BytesWritable wkb, int wkid) {
+		OGCGeometry geometry = OGCGeometry.fromBinary(WKBUtils.wrap(wkb));
+		BytesWritable expected = GeometryUtils.geometryToEsriShapeBytesWritable(geometry.getEsriGeometry(), wkid,
+				GeometryUtils.OGCTypeLookup[WKBUtils.getType(wkb)]);
+
+		BytesWritable geomref = new BytesWritable();
+		assertTrue(WKBUtils.transcode(wkb, wkid, geomref));
+		assertEquals(expected, geomref);
+	}
+
+	@Test
+	public void testTranscode() {
+		Random random = new Random(42);
+
+		for (int i = 0; i < 200; i++) {
+			boolean littleEndian = random.nextBoolean();
+
+			assertTranscoded(wkb(littleEndian, WKBUtils.WKB_POINT, new double [] { random.nextDouble(), -random.nextDouble() }), 4326);
+			assertTranscoded(wkb(littleEndian, WKBUtils.WKB_LINESTRING, ring(random, false)), 0);
+
+			double [][] rings = new double [1 + random.nextInt(3)][];
+			for (int j = 0; j < rings.length; j++) {
+				rings[j] = ring(random, random.nextBoolean());
+			}
+			assertTranscoded(wkb(littleEndian, WKBUtils.WKB_POLYGON, rings), 4326);
+		}
+
+		assertTranscoded(wkb(true, WKBUtils.WKB_POINT, new double [] { Double.NaN, Double.NaN }), 0);
+	}
+
+	@Test
+	public void testSelfIntersecting() {
+		// the geometry API orients rings that cross themselves by the turn at their highest
+		// vertex, so they are only transcoded if that agrees with their area
+		Random random = new Random(43);
+		int transcoded = 0;
+		for (int i = 0; i < 2000; i++) {
+			double [][] rings = new double [1 + random.nextInt(3)][];
+			for (int j = 0; j < rings.length; j++) {
+				rings[j] = new double [2 * (3 + random.nextInt(8))];
+				for (int k = 0; k < rings[j].length; k++) {
+					rings[j][k] = random.nextInt(2) == 0 ? random.nextInt(5) : random.nextDouble() * 20 - 10;
+				}
+			}
+
+			BytesWritable wkb = wkb(random.nextBoolean(), WKBUtils.WKB_POLYGON, rings);
+			if (WKBUtils.transcode(wkb, 0, new BytesWritable())) {
+				assertTranscoded(wkb, 0);
+				transcoded++;
+			}
+		}
+		assertTrue(transcoded > 0);
+
+		BytesWritable geomref = new BytesWritable();
+		assertFalse(WKBUtils.transcode(wkb(true, WKBUtils.WKB_POLYGON, new double [] { 1, 1, 2, 9.2026, -5.8737, -3.3188,
+				0.4549, 11.9143, -4.5322, -0.6009, 3, 3, -8.6082, -7.3537, 1, 1 }), 0, geomref));
+		assertEquals(0, geomref.getLength());
+	}
+
+	@Test
+	public void testNotTranscoded() {
+		BytesWritable geomref = new BytesWritable();
+
+		// degenerate ring, multi-part geometry and truncated WKB
+		assertFalse(WKBUtils.transcode(wkb(true, WKBUtils.WKB_POLYGON, new double [] { 0, 0, 1, 1, 2, 2, 0, 0 }), 0, geomref));
+		assertFalse(WKBUtils.transcode(wkb(true, WKBUtils.WKB_MULTIPOINT, new double [] { 0, 0 }), 0, geomref));
+		BytesWritable truncated = wkb(false, WKBUtils.WKB_LINESTRING, new double [] { 0, 0, 1, 1 });
+		truncated.setSize(truncated.getLength() - 1);
+		assertFalse(WKBUtils.transcode(truncated, 0, geomref));
+		assertEquals(0, geomref.getLength());
+	}
+
+	private static String wkt(double [] coordinates) {
+		StringBuilder builder = new StringBuilder("(");
+		for (int i = 0; i < coordinates.length; i += 2) {
+			builder.append(i > 0 ? ", " : "").append(coordinates[i]).append(' ').append(coordinates[i + 1]);
+		}
+		return builder.append(')').toString();
+	}
+
+	private static void assertExported(String wkt) {
+		OGCGeometry geometry = OGCGeometry.fromText(wkt);
+		BytesWritable geomref = GeometryUtils.geometryToEsriShapeBytesWritable(geometry);
+		ByteBuffer expected = GeometryUtils.geometryFromEsriShape(geomref).asBinary();
+
+		// stale bytes in the reused writable
+		BytesWritable wkb = new BytesWritable(new byte [1000]);
+		assertTrue(wkt, WKBUtils.exportToWKB(geomref, wkb));
+		assertEquals(wkt, new BytesWritable(expected.array()), wkb);
+		assertEquals(wkt, expected.limit(), wkb.getLength());
+	}
+
+	@Test
+	public void testExport() {
+		Random random = new Random(7);
+
+		for (int i = 0; i < 200; i++) {
+			double [] line = ring(random, false);
+			double [] ring1 = ring(random, true), ring2 = ring(random, true), ring3 = ring(random, true);
+
+			assertExported("point (" + line[0] + " " + line[1] + ")");
+			assertExported("multipoint " + wkt(line));
+			assertExported("linestring " + wkt(line));
+			assertExported("multilinestring (" + wkt(line) + ", " + wkt(ring1) + ")");
+			assertExported("polygon (" + wkt(ring1) + ")");
+			assertExported("polygon (" + wkt(ring1) + ", " + wkt(ring2) + ", " + wkt(ring3) + ")");
+			assertExported("multipolygon ((" + wkt(ring1) + ", " + wkt(ring2) + "), (" + wkt(ring3) + "))");
+		}
+
+		assertExported("point empty");
+	}
+
+	@Test
+	public void testNotExported() {
+		BytesWritable wkb = new BytesWritable();
+
+		assertFalse(WKBUtils.exportToWKB(GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.fromText("point z (1 2 3)")), wkb));
+		assertFalse(WKBUtils.exportToWKB(GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.fromText("linestring empty")), wkb));
+		assertFalse(WKBUtils.exportToWKB(GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.fromText("polygon ((0 0, 1 1, 2 2, 0 0))")), wkb));
+		assertEquals(0, wkb.getLength());
+
+		BytesWritable polygon = GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.fromText("polygon ((0 0, 1 0, 1 1, 0 0))"));
+		polygon.setSize(polygon.getLength() - 1);
+		assertFalse(WKBUtils.exportToWKB(polygon, wkb));
+
+		// left to the geometry API, whatever it writes for a single point
+		OGCGeometry multiPoint = OGCGeometry.fromText("multipoint ((1 2))");
+		BytesWritable geomref = GeometryUtils.geometryToEsriShapeBytesWritable(multiPoint);
+		assertFalse(WKBUtils.exportToWKB(geomref, wkb));
+		ByteBuffer expected = multiPoint.asBinary();
+		assertEquals(new BytesWritable(Arrays.copyOf(expected.array(), expected.limit())), new ST_AsBinary().evaluate(geomref));
+	}
+
+	@Test
+	public void testConstructors() throws Exception {
+		BytesWritable polygon = wkb(true, WKBUtils.WKB_POLYGON, new double [] { 0, 0, 1, 0, 1, 1, 0, 0 });
+		assertEquals("ST_POLYGON", new ST_GeometryType().evaluate(new ST_PolyFromWKB().evaluate(polygon)).toString());
+		assertNull(new ST_PointFromWKB().evaluate(polygon));
+		assertNotNull(new ST_GeomFromWKB().evaluate(polygon, 4326));
+		assertEquals(4326, GeometryUtils.getWKID(new ST_GeomFromWKB().evaluate(polygon, 4326)));
+	}
+}
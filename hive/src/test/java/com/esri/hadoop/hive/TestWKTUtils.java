@@ -0,0 +1,174 @@
+package com.esri.hadoop.hive;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import com.esri.core.geometry.GeometryEngine;
+import com.esri.core.geometry.SpatialReference;
+import com.esri.core.geometry.WktExportFlags;
+import com.esri.core.geometry.ogc.OGCGeometry;
+
+public class TestWKTUtils {
+
+	private static double coordinate(Random random) {
+		switch (random.nextInt(6)) {
+		case 0:
+			return random.nextDouble() * 360 - 180;
+		case 1:
+			return Math.round(random.nextDouble() * 1e8) / Math.pow(10, random.nextInt(9));
+		case 2:
+			return -random.nextInt(1000);
+		case 3:
+			return random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+		case 4:
+			return Math.round(random.nextGaussian() * 1e6) / 1e6;
+		default:
+			return random.nextBoolean() ? 0.0 : -0.0;
+		}
+	}
+
+	private static String points(Random random, int count, boolean closed) {
+		StringBuilder builder = new StringBuilder("(");
+		String first = null;
+		for (int i = 0; i < count; i++) {
+			String point = coordinate(random) + " " + coordinate(random);
+			first = first == null ? point : first;
+			builder.append(i > 0 ? ", " : "").append(point);
+		}
+		if (closed) {
+			builder.append(", ").append(first);
+		}
+		return builder.append(')').toString();
+	}
+
+	private static String ring(Random random) {
+		// a rectangle with a hole, so that rings are valid
+		double x = coordinate(random) % 1e6, y = coordinate(random) % 1e6;
+		double w = 1 + random.nextInt(100), h = 0.5 + random.nextInt(100);
+		return "((" + x + " " + y + ", " + (x + w) + " " + y + ", " + (x + w) + " " + (y + h) + ", " + x + " " + (y + h) + ")" +
+				", (" + (x + w / 4) + " " + (y + h / 4) + ", " + (x + w / 2) + " " + (y + h / 2) + ", " + (x + w / 4) + " " + (y + h / 2) + "))";
+	}
+
+	private static int getWktExportFlag(GeometryUtils.OGCType type) {
+		switch (type) {
+		case ST_POINT:
+			return WktExportFlags.wktExportPoint;
+		case ST_MULTIPOINT:
+			return WktExportFlags.wktExportMultiPoint;
+		case ST_LINESTRING:
+			return WktExportFlags.wktExportLineString;
+		case ST_MULTILINESTRING:
+			return WktExportFlags.wktExportMultiLineString;
+		case ST_POLYGON:
+			return WktExportFlags.wktExportPolygon;
+		default:
+			return WktExportFlags.wktExportMultiPolygon;
+		}
+	}
+
+	private static void assertExported(WKTUtils wktUtils, String wkt) {
+		BytesWritable geomref = GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.fromText(wkt));
+		String expected = GeometryEngine.geometryToWkt(GeometryUtils.geometryFromEsriShape(geomref).getEsriGeometry(),
+				getWktExportFlag(GeometryUtils.getType(geomref)));
+
+		Text text = new Text();
+		assertTrue(wkt, wktUtils.exportToWKT(geomref, text));
+		assertEquals(expected, text.toString());
+	}
+
+	private static void assertImported(WKTUtils wktUtils, String wkt, int wkid) {
+		OGCGeometry geometry = OGCGeometry.fromText(wkt);
+		geometry.setSpatialReference(wkid == GeometryUtils.WKID_UNKNOWN ? null : SpatialReference.create(wkid));
+		BytesWritable expected = GeometryUtils.geometryToEsriShapeBytesWritable(geometry);
+
+		BytesWritable geomref = new BytesWritable(new byte [1000]);
+		assertTrue(wkt, wktUtils.importFromWKT(new Text(wkt), wkid, geomref));
+		assertEquals(wkt, expected, geomref);
+	}
+
+	@Test
+	public void testExport() {
+		Random random = new Random(11);
+		WKTUtils wktUtils = new WKTUtils();
+
+		for (int i = 0; i < 300; i++) {
+			assertExported(wktUtils, "point (" + coordinate(random) + " " + coordinate(random) + ")");
+			assertExported(wktUtils, "multipoint " + points(random, 2 + random.nextInt(3), false));
+			assertExported(wktUtils, "linestring " + points(random, 2 + random.nextInt(4), false));
+			assertExported(wktUtils, "multilinestring (" + points(random, 2, false) + ")");
+			assertExported(wktUtils, "multilinestring (" + points(random, 2, false) + ", " + points(random, 3, false) + ")");
+			assertExported(wktUtils, "polygon " + ring(random));
+			assertExported(wktUtils, "multipolygon (" + ring(random) + ")");
+		}
+
+		assertExported(wktUtils, "point empty");
+		assertExported(wktUtils, "point (0.000123 -1234.5)");
+		assertExported(wktUtils, "point (0.00001 1e17)");
+		assertExported(wktUtils, "point (999999999999999 0.30000000000000004)");
+		assertExported(wktUtils, "multipolygon (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))");
+
+		// a single point multipoint is left to the geometry API
+		assertFalse(wktUtils.exportToWKT(GeometryUtils.geometryToEsriShapeBytesWritable(OGCGeometry.fromText("multipoint ((1 2))")), new Text()));
+	}
+
+	@Test
+	public void testImport() {
+		Random random = new Random(12);
+		WKTUtils wktUtils = new WKTUtils();
+
+		for (int i = 0; i < 300; i++) {
+			assertImported(wktUtils, "point (" + coordinate(random) + " " + coordinate(random) + ")", 4326);
+			assertImported(wktUtils, "LineString" + points(random, 2 + random.nextInt(4), false), 0);
+			assertImported(wktUtils, "polygon " + ring(random), 4326);
+		}
+
+		assertImported(wktUtils, "  POINT(1e5\t-2.50E-3)  ", 0);
+		assertImported(wktUtils, "polygon ((0 0, 1 0, 1 1))", 0);
+		assertImported(wktUtils, "point (123456789.123456789 0.1234567890123456789)", 0);
+		assertImported(wktUtils, "point (1e400 -0)", 0);
+	}
+
+	@Test
+	public void testSelfIntersecting() {
+		// rings that cross themselves are either imported like the geometry API does, or left to it
+		Random random = new Random(13);
+		WKTUtils wktUtils = new WKTUtils();
+		int imported = 0;
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder wkt = new StringBuilder("polygon (");
+			int rings = 1 + random.nextInt(3);
+			for (int j = 0; j < rings; j++) {
+				wkt.append(j > 0 ? ", " : "").append(points(random, 3 + random.nextInt(6), random.nextBoolean()));
+			}
+			wkt.append(')');
+
+			if (wktUtils.importFromWKT(new Text(wkt.toString()), 4326, new BytesWritable())) {
+				assertImported(wktUtils, wkt.toString(), 4326);
+				imported++;
+			}
+		}
+		assertTrue(imported > 0);
+
+		BytesWritable geomref = new BytesWritable();
+		assertFalse(wktUtils.importFromWKT(new Text("polygon ((1 1, 2 9.2026, -5.8737 -3.3188, 0.4549 11.9143, " +
+				"-4.5322 -0.6009, 3 3, -8.6082 -7.3537, 1 1))"), 0, geomref));
+		assertEquals(0, geomref.getLength());
+	}
+
+	@Test
+	public void testNotImported() {
+		WKTUtils wktUtils = new WKTUtils();
+		BytesWritable geomref = new BytesWritable();
+		String [] wkts = { "point empty", "point z (1 2 3)", "point (1 2 3)", "point (1 2) x", "point (.5 2)",
+				"point (- 1 2)", "multipoint ((1 2))", "linestring (0 0, 1 1,)", "polygon ((0 0, 1 1, 2 2, 0 0))", "pointx (1 2)" };
+		for (String wkt : wkts) {
+			assertFalse(wkt, wktUtils.importFromWKT(new Text(wkt), 0, geomref));
+		}
+		assertEquals(0, geomref.getLength());
+	}
+}
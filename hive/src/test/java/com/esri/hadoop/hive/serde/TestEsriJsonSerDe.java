@@ -4,10 +4,13 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Properties;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.hive.serde2.io.ByteWritable;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 import org.apache.hadoop.hive.serde2.io.ShortWritable;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.lazy.ByteArrayRef;
@@ -76,6 +79,27 @@ public class TestEsriJsonSerDe extends JsonSerDeTestingBase {
 		Assert.assertNotNull(jn.findValue("y"));
 	}
 
+	@Test
+	public void TestUnreadAttributes() throws Exception {
+		Configuration config = new Configuration();
+		Text value = new Text();
+
+		EsriJsonSerDe jserde = new EsriJsonSerDe();
+		Properties proptab = new Properties();
+		proptab.setProperty(HiveShims.serdeConstants.LIST_COLUMNS, "num");
+		proptab.setProperty(HiveShims.serdeConstants.LIST_COLUMN_TYPES, "int");
+		jserde.initialize(config, proptab);
+        StructObjectInspector rowOI = (StructObjectInspector)jserde.getObjectInspector();
+
+		// only the names of read columns are cached, however many other names show up
+		for (int i = 0; i < 100; i++) {
+			value.set("{\"attributes\":{\"Num\":" + i + ",\"id" + i + "\":" + i + "}}");
+			Object row = jserde.deserialize(value);
+			Assert.assertEquals(i, ((IntWritable)getField("num", row, rowOI)).get());
+		}
+		Assert.assertEquals(1, jserde.attributeNumbers.size());
+	}
+
 	@Test
 	public void TestIntParse() throws Exception {
 		Configuration config = new Configuration();
@@ -240,6 +264,81 @@ public class TestEsriJsonSerDe extends JsonSerDeTestingBase {
 		Assert.assertNull(fieldData);
 	}
 
+	@Test
+	public void TestReadColumns() throws Exception {
+		Configuration config = new Configuration();
+		ColumnProjectionUtils.setReadColumnIDs(config, Arrays.asList(1));
+		Text value = new Text();
+
+		SerDe jserde = new EsriJsonSerDe();
+		Properties proptab = new Properties();
+		proptab.setProperty(HiveShims.serdeConstants.LIST_COLUMNS, "num,text,shape");
+		proptab.setProperty(HiveShims.serdeConstants.LIST_COLUMN_TYPES, "int,string,binary");
+		jserde.initialize(config, proptab);
+        StructObjectInspector rowOI = (StructObjectInspector)jserde.getObjectInspector();
+
+        value.set("{\"attributes\":{\"num\":7,\"other\":{\"a\":[1,{\"text\":\"no\"}]},\"Text\":\"yes\"}," +
+        		"\"geometry\":{\"x\":15.0,\"y\":5.0}}");
+		Object row = jserde.deserialize(value);
+		Assert.assertNull(getField("num", row, rowOI));
+		Assert.assertEquals("yes", ((Text)getField("text", row, rowOI)).toString());
+		Assert.assertNull(getField("shape", row, rowOI));
+
+		ColumnProjectionUtils.setReadColumnIDs(config, Arrays.asList(0, 2));
+		jserde.initialize(config, proptab);
+		row = jserde.deserialize(value);
+		Assert.assertEquals(7, ((IntWritable)getField("num", row, rowOI)).get());
+		Assert.assertNull(getField("text", row, rowOI));
+		ckPoint(new Point(15.0, 5.0), (BytesWritable)getField("shape", row, rowOI));
+	}
+
+	@Test
+	public void TestParseError() throws Exception {
+		Text value = new Text();
+		Properties proptab = new Properties();
+		proptab.setProperty(HiveShims.serdeConstants.LIST_COLUMNS, "num,text");
+		proptab.setProperty(HiveShims.serdeConstants.LIST_COLUMN_TYPES, "int,string");
+		EsriJsonSerDe jserde = (EsriJsonSerDe)mkSerDe(proptab);
+        StructObjectInspector rowOI = (StructObjectInspector)jserde.getObjectInspector();
+
+        value.set("{\"attributes\":{\"num\":7,,");
+		Object row = jserde.deserialize(value);
+		Assert.assertEquals(7, ((IntWritable)getField("num", row, rowOI)).get());
+		Assert.assertEquals(1, jserde.parseErrors);
+
+        value.set("{\"attributes\":{\"text\":\"Gr\u00fc\u00dfe \u6771\u4eac\"}}");
+		row = jserde.deserialize(value);
+		Assert.assertNull(getField("num", row, rowOI));
+		Assert.assertEquals("Gr\u00fc\u00dfe \u6771\u4eac", ((Text)getField("text", row, rowOI)).toString());
+		Assert.assertEquals(1, jserde.parseErrors);
+	}
+
+	@Test
+	public void TestSerializeReuse() throws Exception {
+        ArrayList<Object> stuff = new ArrayList<Object>();
+		Properties proptab = new Properties();
+		proptab.setProperty(HiveShims.serdeConstants.LIST_COLUMNS, "num,text,shape");
+		proptab.setProperty(HiveShims.serdeConstants.LIST_COLUMN_TYPES, "double,string,binary");
+		SerDe jserde = mkSerDe(proptab);
+        StructObjectInspector rowOI = (StructObjectInspector)jserde.getObjectInspector();
+
+        addWritable(stuff, "say \"Gr\u00fc\u00dfe\"\\\n\u6771\u4eac");
+        stuff.add(0, new DoubleWritable(0.1));
+        addWritable(stuff, new Point(15.0, 5.0));
+		Writable jsw = jserde.serialize(stuff, rowOI);
+		JsonNode jn = new ObjectMapper().readTree(jsw.toString());
+		Assert.assertEquals("say \"Gr\u00fc\u00dfe\"\\\n\u6771\u4eac", jn.get("attributes").get("text").getTextValue());
+		Assert.assertEquals(0.1, jn.get("attributes").get("num").getDoubleValue(), 0);
+		Assert.assertEquals(15.0, jn.get("geometry").get("x").getDoubleValue(), 0);
+
+		// a shorter record must not keep bytes of the previous one
+		stuff.set(0, null);
+		stuff.set(1, new Text("x"));
+		stuff.set(2, null);
+		jsw = jserde.serialize(stuff, rowOI);
+		Assert.assertEquals("{\"attributes\":{\"num\":null,\"text\":\"x\"},\"geometry\":null}", jsw.toString());
+	}
+
 	@Test
 	public void TestColumnTypes() throws Exception {
         ArrayList<Object> stuff = new ArrayList<Object>();
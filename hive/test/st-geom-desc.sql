@@ -97,6 +97,7 @@ desc function extended ST_Intersection;
 desc function extended ST_Union;
 desc function extended ST_SymmetricDiff;
 desc function extended ST_Aggr_ConvexHull;
+desc function extended ST_Aggr_Extent;
 desc function extended ST_Aggr_Intersection;
 desc function extended ST_Aggr_Union;
 desc function extended ST_GeoSize;